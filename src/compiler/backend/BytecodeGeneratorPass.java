@@ -1,7 +1,9 @@
 package compiler.backend;
 
+import compiler.infra.Artifact;
 import compiler.infra.CompilerContext;
 import compiler.infra.CompilerPass;
+import compiler.infra.Tracer;
 import compiler.middle.tac.TACInstruction;
 import compiler.middle.tac.OpCode;
 
@@ -10,23 +12,33 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Label;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class BytecodeGeneratorPass implements CompilerPass {
     @Override
     public String name() { return "BytecodeGeneratorPass"; }
 
+    @Override
+    public Set<Artifact> reads() { return Set.of(Artifact.TAC); }
+
+    @Override
+    public Set<Artifact> produces() { return Set.of(Artifact.CLASS_FILES); }
+
     private Map<String, Integer> varMap = new HashMap<>();
     private Map<String, Boolean> varIsRef = new HashMap<>();
     private int nextVarIndex = 0;
     private Map<String, Label> labelMap = new HashMap<>();
+    private Tracer tracer = Tracer.disabled();
 
     @Override
     public void execute(CompilerContext context) throws Exception {
         List<TACInstruction> instructions = context.getTacInstructions();
         if (instructions == null) return;
+        tracer = context.getTracer();
 
         Map<String, List<TACInstruction>> classInstructions = new LinkedHashMap<>();
         String currentClass = "Main";
@@ -47,12 +59,30 @@ public class BytecodeGeneratorPass implements CompilerPass {
             classInstructions.computeIfAbsent(currentClass, k -> new ArrayList<>()).add(instr);
         }
 
+        Path outDir = context.getOutputDirectory();
+        if (outDir != null) {
+            Files.createDirectories(outDir);
+        } else {
+            outDir = Paths.get("");
+        }
         for (String className : classInstructions.keySet()) {
-            generateClass(className, classInstructions.get(className));
+            byte[] bytes;
+            Tracer.Span span = tracer.span("generateClass " + className);
+            try {
+                bytes = generateClass(className, classInstructions.get(className));
+            } finally {
+                span.close();
+            }
+            context.addClassFile(className, bytes);
+            writeClassFile(outDir, className, bytes);
         }
     }
 
-    private void generateClass(String className, List<TACInstruction> instrs) throws IOException {
+    private void writeClassFile(Path outDir, String className, byte[] bytes) throws IOException {
+        Files.write(outDir.resolve(className + ".class"), bytes);
+    }
+
+    private byte[] generateClass(String className, List<TACInstruction> instrs) {
         ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
         cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
 
@@ -100,7 +130,12 @@ public class BytecodeGeneratorPass implements CompilerPass {
                 insideMethod = true;
             } else if (instr.op == OpCode.FUNC_EXIT) {
                 methodInstrs.add(instr);
-                generateMethod(cw, className, methodInstrs);
+                Tracer.Span span = tracer.span("generateMethod " + methodInstrs.get(0).target);
+                try {
+                    generateMethod(cw, className, methodInstrs);
+                } finally {
+                    span.close();
+                }
                 methodInstrs.clear();
                 insideMethod = false;
             } else if (insideMethod) {
@@ -109,9 +144,7 @@ public class BytecodeGeneratorPass implements CompilerPass {
         }
 
         cw.visitEnd();
-        try (FileOutputStream fos = new FileOutputStream(className + ".class")) {
-            fos.write(cw.toByteArray());
-        }
+        return cw.toByteArray();
     }
 
     private void generateMethod(ClassWriter cw, String className, List<TACInstruction> instrs) {
@@ -0,0 +1,194 @@
+package compiler.cli;
+
+import compiler.infra.CompilerContext;
+import compiler.infra.CompilerOrchestrator;
+import compiler.infra.Diagnostics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-lived compiler process that keeps the pipeline loaded and JIT-warm.
+ * Clients (see {@link DaemonClient}) connect over a Unix domain socket and
+ * send one request per line; the daemon answers with the diagnostics.
+ *
+ * Protocol (UTF-8, one message per line):
+ *   request:  COMPILE &lt;tab&gt; absolute-source-path &lt;tab&gt; output-dir (may be empty)
+ *             SHUTDOWN
+ *   response: E &lt;tab&gt; error message      (zero or more)
+ *             W &lt;tab&gt; warning message    (zero or more)
+ *             DONE &lt;tab&gt; errors &lt;tab&gt; warnings
+ * Paths and messages are escaped (see {@link #escape}), so a tab or line break in
+ * them cannot split a field or a message.
+ */
+public class CompileDaemon {
+    static final String COMPILE = "COMPILE";
+    static final String SHUTDOWN = "SHUTDOWN";
+    static final String DONE = "DONE";
+
+    // small program touching every pass, used to load classes and warm up the JIT
+    private static final String WARMUP_SOURCE = """
+        class Warm {
+            int v;
+            int add(int x) { return this.v + x; }
+        }
+        void main() {
+            Warm w = new Warm();
+            int i = 0;
+            while (i < 10) { i = i + w.add(i); }
+            if (i > 3) { i = i - 1; } else { i = 0; }
+        }
+        """;
+    private static final int WARMUP_ROUNDS = 200;
+
+    private final Path socketPath;
+    private final CompilerOrchestrator pipeline = Main.newPipeline();
+    private final ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private volatile boolean running = true;
+
+    public CompileDaemon(Path socketPath) {
+        this.socketPath = socketPath;
+        pipeline.setVerbose(false);
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: java compiler.cli.CompileDaemon <socket-path>");
+            return;
+        }
+        try {
+            new CompileDaemon(Paths.get(args[0])).serve();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Warms up the pipeline, then accepts connections until a SHUTDOWN request arrives.
+     */
+    public void serve() throws IOException {
+        warmUp();
+        Files.deleteIfExists(socketPath);
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            System.out.println("Compiler daemon listening on " + socketPath);
+            while (running) {
+                SocketChannel client = server.accept();
+                workers.submit(() -> handle(client, server));
+            }
+        } catch (IOException e) {
+            if (running) throw e; // closed by SHUTDOWN otherwise
+        } finally {
+            workers.shutdown();
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    private void warmUp() {
+        Path scratch = null;
+        try {
+            scratch = Files.createTempDirectory("compiler-daemon-warmup");
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                CompilerContext context = new CompilerContext();
+                context.getDiagnostics().setConsoleEcho(false);
+                context.setOutputDirectory(scratch);
+                context.setSource(WARMUP_SOURCE.getBytes(StandardCharsets.UTF_8));
+                pipeline.runPasses(context);
+            }
+        } catch (IOException e) {
+            System.err.println("Warm-up skipped: " + e.getMessage());
+        } finally {
+            deleteRecursively(scratch);
+        }
+    }
+
+    private void handle(SocketChannel client, ServerSocketChannel server) {
+        try (client;
+             BufferedReader in = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(Channels.newWriter(client, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.equals(SHUTDOWN)) {
+                    running = false;
+                    server.close();
+                    return;
+                }
+                String[] parts = line.split("\t", -1);
+                if (parts.length < 2 || parts.length > 3 || !parts[0].equals(COMPILE)) {
+                    out.println("E\t" + escape("Malformed request: " + line));
+                    out.println(DONE + "\t1\t0");
+                    out.flush();
+                    continue;
+                }
+                compile(unescape(parts[1]), parts.length > 2 && !parts[2].isEmpty() ? unescape(parts[2]) : null, out);
+            }
+        } catch (IOException e) {
+            System.err.println("Client connection failed: " + e.getMessage());
+        }
+    }
+
+    private void compile(String sourceFile, String outputDir, PrintWriter out) {
+        CompilerContext context = new CompilerContext();
+        Diagnostics diag = context.getDiagnostics();
+        diag.setConsoleEcho(false);
+        context.setSourceName(sourceFile);
+        Path source = Paths.get(sourceFile);
+        context.setOutputDirectory(outputDir != null ? Paths.get(outputDir) : source.toAbsolutePath().getParent());
+        try {
+            context.setSource(source);
+            pipeline.runPasses(context);
+        } catch (IOException e) {
+            diag.reportError("Cannot read " + sourceFile + ": " + e.getMessage());
+        } catch (Throwable e) {
+            // whatever a pass throws, the client still gets an error and DONE
+            diag.reportError("Internal compiler error: " + e);
+        }
+        // the tree is garbage once the class files are written; only diagnostics are reported
+        context.release();
+
+        for (String e : diag.getErrors()) out.println("E\t" + escape(e));
+        for (String w : diag.getWarnings()) out.println("W\t" + escape(w));
+        out.println(DONE + "\t" + diag.getErrors().size() + "\t" + diag.getWarnings().size());
+        out.flush();
+    }
+
+    /** A protocol field: backslash, tab and line breaks written as \\, \t, \n and \r. */
+    static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n == 'r' ? '\r' : n);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (dir == null) return;
+        try (var files = Files.walk(dir)) {
+            files.sorted(java.util.Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException ignored) {
+            // best effort cleanup of the warm-up scratch directory
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package compiler.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * Thin client for {@link CompileDaemon}. Forwards source paths over the daemon's
+ * Unix domain socket and prints the diagnostics it streams back.
+ * Exits with 1 if any file had errors, 2 if the daemon could not be reached,
+ * closed the connection before finishing a file or sent a line it does not understand.
+ */
+public class DaemonClient {
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Does what main does, printing to out and err.
+     * @return the exit code
+     */
+    public static int run(String[] args, PrintStream stdout, PrintStream stderr) {
+        if (args.length < 2) {
+            stdout.println("Usage: java compiler.cli.DaemonClient <socket-path> [-d <output-dir>] <source-file>...");
+            stdout.println("       java compiler.cli.DaemonClient <socket-path> --shutdown");
+            return 0;
+        }
+
+        // classes land in the client's working directory unless -d is given, as with Main
+        String outputDir = Paths.get("").toAbsolutePath().toString();
+        int first = 1;
+        if (args[1].equals("-d") && args.length > 3) {
+            outputDir = Paths.get(args[2]).toAbsolutePath().toString();
+            first = 3;
+        }
+
+        int failed = 0;
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(args[0]));
+            BufferedReader in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+
+            if (args[1].equals("--shutdown")) {
+                out.println(CompileDaemon.SHUTDOWN);
+                out.flush();
+                return 0;
+            }
+
+            for (int i = first; i < args.length; i++) {
+                // the daemon has its own working directory, so always send absolute paths
+                String source = Paths.get(args[i]).toAbsolutePath().toString();
+                out.println(CompileDaemon.COMPILE + "\t" + CompileDaemon.escape(source) + "\t" + CompileDaemon.escape(outputDir));
+                out.flush();
+
+                String line;
+                boolean done = false;
+                while (!done && (line = in.readLine()) != null) {
+                    String[] parts = line.split("\t", -1);
+                    if (parts[0].equals(CompileDaemon.DONE) && parts.length == 3 && isCount(parts[1]) && isCount(parts[2])) {
+                        if (!parts[1].equals("0")) failed++;
+                        stdout.println(args[i] + ": " + parts[1] + " error(s), " + parts[2] + " warning(s)");
+                        done = true;
+                    } else if (parts[0].equals("E") && parts.length == 2) {
+                        stderr.println(CompileDaemon.unescape(parts[1]));
+                    } else if (parts[0].equals("W") && parts.length == 2) {
+                        stdout.println(CompileDaemon.unescape(parts[1]));
+                    } else {
+                        stderr.println(args[i] + ": protocol error: unexpected line from compiler daemon: " + line);
+                        return 2;
+                    }
+                }
+                if (!done) {
+                    stderr.println(args[i] + ": compiler daemon closed the connection before finishing");
+                    return 2;
+                }
+            }
+        } catch (IOException e) {
+            stderr.println("Cannot reach compiler daemon at " + args[0] + ": " + e.getMessage());
+            return 2;
+        }
+        return failed == 0 ? 0 : 1;
+    }
+
+    private static boolean isCount(String field) {
+        return !field.isEmpty() && field.chars().allMatch(c -> c >= '0' && c <= '9');
+    }
+}
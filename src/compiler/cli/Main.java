@@ -5,31 +5,88 @@ import compiler.frontend.SymbolTableBuilderPass;
 import compiler.frontend.TypeCheckingPass;
 import compiler.middle.tac.TACConversionPass;
 import compiler.backend.BytecodeGeneratorPass;
+import compiler.infra.Artifact;
+import compiler.infra.CompilationCache;
 import compiler.infra.CompilerContext;
 import compiler.infra.CompilerOrchestrator;
 import compiler.infra.CompilerPass;
 import compiler.infra.Diagnostics;
+import compiler.infra.Tracer;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class Main {
+    private static final String USAGE = "Usage: java Main [-d <output-dir>] [-j <threads>] [--trace <trace.json>] [--cache <dir>] [--ast-cache] <source-file>...\n"
+            + "       java Main --daemon <socket-path>";
+
     public static void main(String[] args) {
-        if (args.length < 1) {
-            System.out.println("Usage: java Main <source-file>");
+        if (args.length == 2 && args[0].equals("--daemon")) {
+            CompileDaemon.main(new String[] { args[1] });
             return;
         }
 
-        String sourceFile = args[0];
+        Path outputDir = null;
+        Path traceFile = null;
+        CompilationCache cache = null;
+        boolean astCache = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> sourceFiles = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-d") && i + 1 < args.length) {
+                outputDir = Paths.get(args[++i]);
+            } else if (args[i].equals("-j")) {
+                threads = i + 1 < args.length ? threadCount(args[++i]) : 0;
+                if (threads < 1) {
+                    System.err.println("-j needs a positive number of threads");
+                    System.out.println(USAGE);
+                    System.exit(2);
+                }
+            } else if (args[i].equals("--trace") && i + 1 < args.length) {
+                traceFile = Paths.get(args[++i]);
+            } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                cache = new CompilationCache(Paths.get(args[++i]));
+            } else if (args[i].equals("--ast-cache")) {
+                astCache = true;
+            } else {
+                sourceFiles.add(args[i]);
+            }
+        }
 
-        try (InputStream inputStream = new FileInputStream(sourceFile)) {
-            // Create the compiler context and set the input stream
+        if (sourceFiles.isEmpty()) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        Tracer tracer = new Tracer(traceFile != null);
+
+        if (sourceFiles.size() > 1) {
+            int status = compileBatch(sourceFiles, outputDir, threads, tracer, cache, astCache);
+            writeTrace(tracer, traceFile);
+            System.exit(status);
+        }
+
+        String sourceFile = sourceFiles.get(0);
+
+        try {
+            // Create the compiler context and map the source file as its input
             CompilerContext context = new CompilerContext();
-            context.setInputStream(inputStream);
+            context.setSource(Paths.get(sourceFile));
+            context.setSourceName(sourceFile);
+            context.setAstCaching(astCache);
+            context.setOutputDirectory(outputDir);
+            context.setTracer(tracer);
 
             // Create the compiler pass orchestrator and add passes
             CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+            orchestrator.setCache(cache);
 
             // Example passes (to be implemented by students) Note: you may choose to separate
             // your passes differently. E.g. you may make a LexerParserPass class because that makes more
@@ -44,8 +101,9 @@ public class Main {
             orchestrator.addPass(new TACConversionPass());
             orchestrator.addPass(new BytecodeGeneratorPass());
 
-            // Run the compiler passes
-            orchestrator.runPasses(context);
+            // Run the compiler passes needed to produce class files
+            orchestrator.runScheduled(context, EnumSet.of(Artifact.CLASS_FILES));
+            writeTrace(tracer, traceFile);
 
             // After running passes, print diagnostics summary or success
             Diagnostics diag = context.getDiagnostics();
@@ -68,4 +126,122 @@ public class Main {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /** The value of -j, or 0 if it is not a number. */
+    private static int threadCount(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Compiles every source file with its own CompilerContext on a shared pool.
+     * Each file's classes go to a subdirectory of its own (see {@link #outputDirectories}),
+     * since every source with top-level functions produces its own Main class.
+     * Diagnostics are printed per file in command-line order.
+     * @return the process exit code
+     */
+    private static int compileBatch(List<String> sourceFiles, Path outputDir, int threads, Tracer tracer,
+                                    CompilationCache cache, boolean astCache) {
+        List<Path> outputDirs;
+        try {
+            outputDirs = outputDirectories(sourceFiles, outputDir != null ? outputDir : Paths.get(""));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        List<CompilerContext> contexts = new ArrayList<>();
+        for (int i = 0; i < sourceFiles.size(); i++) {
+            String sourceFile = sourceFiles.get(i);
+            CompilerContext context = new CompilerContext();
+            context.setSourceName(sourceFile);
+            context.setAstCaching(astCache);
+            context.setOutputDirectory(outputDirs.get(i));
+            context.setTracer(tracer);
+            try {
+                context.setSource(Paths.get(sourceFile));
+            } catch (IOException e) {
+                context.getDiagnostics().reportError("Cannot read " + sourceFile + ": " + e.getMessage());
+            }
+            contexts.add(context);
+        }
+
+        CompilerOrchestrator orchestrator = newPipeline();
+        orchestrator.setCache(cache);
+        orchestrator.runBatch(contexts, threads);
+
+        int failed = 0;
+        for (CompilerContext context : contexts) {
+            Diagnostics diag = context.getDiagnostics();
+            if (diag.hasErrors()) {
+                failed++;
+                System.err.println(context.getSourceName() + ": " + diag.getSummary());
+                for (String e : diag.getErrors()) System.err.println(e);
+            } else {
+                System.out.println(context.getSourceName() + ": " + diag.getSummary());
+                for (String w : diag.getWarnings()) System.out.println(w);
+            }
+        }
+        System.out.println();
+        System.out.println("Compiled " + contexts.size() + " file(s), " + failed + " with errors.");
+        return failed == 0 ? 0 : 1;
+    }
+
+    private static void writeTrace(Tracer tracer, Path traceFile) {
+        if (traceFile == null) return;
+        try {
+            tracer.writeChromeTrace(traceFile);
+            System.out.println("Trace written to " + traceFile);
+        } catch (IOException e) {
+            System.err.println("Could not write trace: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the standard pipeline from pass factories so it can be reused
+     * across compilations and threads.
+     */
+    static CompilerOrchestrator newPipeline() {
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.addPass(FrontEndPass::new);
+        orchestrator.addPass(SymbolTableBuilderPass::new);
+        orchestrator.addPass(TypeCheckingPass::new);
+        orchestrator.addPass(TACConversionPass::new);
+        orchestrator.addPass(BytecodeGeneratorPass::new);
+        return orchestrator;
+    }
+
+    /**
+     * The directory under baseDir that each source file's classes are written to in a
+     * batch: the file's path relative to the working directory (or to its root, if it
+     * lies outside) without the extension, so a/Foo.src and b/Foo.src do not share one.
+     * @throws IllegalArgumentException if a file is listed twice, or two files would
+     *         still share a directory (Foo.src and Foo.txt)
+     */
+    public static List<Path> outputDirectories(List<String> sourceFiles, Path baseDir) {
+        Path cwd = Paths.get("").toAbsolutePath();
+        Map<Path, String> owners = new HashMap<>();
+        List<Path> dirs = new ArrayList<>();
+        for (String sourceFile : sourceFiles) {
+            Path file = Paths.get(sourceFile).toAbsolutePath().normalize();
+            Path relative = file.startsWith(cwd) ? cwd.relativize(file) : file.getRoot().relativize(file);
+            Path dir = baseDir.resolve(relative.resolveSibling(stem(relative)));
+            String owner = owners.putIfAbsent(dir, sourceFile);
+            if (owner != null) {
+                throw new IllegalArgumentException(Paths.get(owner).toAbsolutePath().normalize().equals(file)
+                    ? sourceFile + " is listed more than once"
+                    : owner + " and " + sourceFile + " would both be compiled into " + dir);
+            }
+            dirs.add(dir);
+        }
+        return dirs;
+    }
+
+    private static String stem(Path sourceFile) {
+        String name = sourceFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
@@ -0,0 +1,68 @@
+package compiler.frontend;
+
+import compiler.frontend.ast.AstArena;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares parsing with child lists allocated one ArrayList at a time against
+ * taking them from an AstArena. A compilation here is one parse whose tree, and
+ * arena, are dropped before the next; the benchmark reports the bytes allocated
+ * per compilation and the collections and collector time over a run of them.
+ *
+ * Usage: java compiler.frontend.ArenaBenchmark [classes] [compilations]
+ */
+public class ArenaBenchmark {
+    private static final int WARMUP = 20;
+
+    public static void main(String[] args) throws Exception {
+        int classes = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int compilations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        byte[] program = ParserBenchmark.classes(classes).getBytes(StandardCharsets.UTF_8);
+        TokenBuffer tokens = TokenBuffer.lex(new MappedCharStream(program));
+        System.out.printf("%.1f MB program, %d compilations%n%n", program.length / 1e6, compilations);
+        System.out.println("lists        MB/compile   collections   gc ms   total ms");
+        report("ArrayList", tokens, compilations, false);
+        report("arena", tokens, compilations, true);
+    }
+
+    private static void report(String name, TokenBuffer tokens, int compilations, boolean arena) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP; i++) parse(tokens, arena);
+        System.gc();
+
+        long collections = -collections(), gcMillis = -gcMillis();
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < compilations; i++) parse(tokens, arena);
+        long elapsed = System.nanoTime() - start;
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        collections += collections();
+        gcMillis += gcMillis();
+
+        System.out.printf("%-10s %12.2f %13d %7d %10.1f%n",
+            name, bytes / 1e6 / compilations, collections, gcMillis, elapsed / 1e6);
+    }
+
+    private static Object parse(TokenBuffer tokens, boolean arena) throws ParseException {
+        MyParser parser = new MyParser(tokens.tokenManager());
+        if (arena) parser.setArena(new AstArena());
+        return parser.Program();
+    }
+
+    private static long collections() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) total += gc.getCollectionCount();
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) total += gc.getCollectionTime();
+        return total;
+    }
+}
@@ -0,0 +1,650 @@
+package compiler.frontend;
+
+import compiler.frontend.ast.*;
+import compiler.infra.CompilerVersion;
+import compiler.infra.FileTable;
+import compiler.infra.LineMap;
+import compiler.infra.NameTable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Parsed ASTs kept on disk next to their sources, so an unchanged file is loaded
+ * instead of parsed.
+ *
+ * An entry is named by a content hash of the source (see {@link #key}) and lives
+ * in a .astcache directory beside it. It is memory-mapped and decoded in
+ * one pass; the source is not lexed at all, since the entry carries the source's
+ * line map too.
+ *
+ * Layout, big-endian:
+ * <pre>
+ * magic "ASTC"            4 bytes
+ * checksum                CRC-32C of everything after it
+ * compiler                CompilerVersion.ID of the compiler that wrote the entry
+ * line map                see LineMap.writeTo
+ * strings                 count, then per string: canonical flag, UTF-8 length, bytes
+ * nodes                   preorder: FlatAst kind, source offset (-1 for none), then
+ *                         string indices, child counts, optional-child flags, children
+ * </pre>
+ * Expressions carry their resolved type, and VarDeclNode and FunctionDeclNode their
+ * declared type, when the tree was type-checked: a tag for a built-in type, or a
+ * class's index in order of first mention, or the name of a type that resolved to
+ * nothing. A ClassDeclNode records its own index, so types referring to it come back
+ * as its ClassType, even when they appear before it.
+ *
+ * An entry that fails its checksum, was written by a different build of the
+ * compiler, or whose counts or indices do not fit, is a miss: the source is parsed
+ * again and the entry overwritten.
+ */
+public final class AstCache {
+    public static final String DIRECTORY = ".astcache";
+    private static final String SUFFIX = ".ast";
+    private static final int MAGIC = 'A' << 24 | 'S' << 16 | 'T' << 8 | 'C';
+
+    // type tags
+    private static final byte NO_TYPE = 0, CLASS_TYPE = 7, UNRESOLVED_TYPE = 8;
+    private static final Type[] BUILTINS = { null, Type.INT, Type.BOOLEAN, Type.VOID, Type.STRING, Type.NULL, Type.UNKNOWN };
+
+    private AstCache() { }
+
+    /** The entry for source, whose bytes are those between the buffer's position and limit. */
+    public static Path entryFor(Path source, ByteBuffer bytes) {
+        Path dir = source.toAbsolutePath().getParent().resolve(DIRECTORY);
+        return dir.resolve(key(bytes) + SUFFIX);
+    }
+
+    /**
+     * The content hash naming an entry: CRC-32C and CRC-32 of the bytes, and their
+     * length. Both checksums are hardware-assisted, so hashing costs a fraction of
+     * loading; a SHA-256 took a third of the load time of small files. Two unrelated
+     * 32-bit checksums are enough to tell versions of one file apart, though unlike
+     * CompilationCache keys they are no defence against crafted collisions.
+     */
+    static String key(ByteBuffer bytes) {
+        CRC32C crc32c = new CRC32C();
+        crc32c.update(bytes.duplicate());
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes.duplicate());
+        return String.format("%08x%08x-%x", crc32c.getValue(), crc32.getValue(), bytes.remaining());
+    }
+
+    /**
+     * Loads an entry, registering its line map with the FileTable under path.
+     * @return the tree, or null if there is no entry or it cannot be read
+     */
+    public static ASTNode load(Path entry, String path) throws IOException {
+        return load(entry, lines -> FileTable.register(path, lines));
+    }
+
+    /**
+     * Loads an entry, handing its line map to files to be registered; a line map
+     * that turns out to belong to a damaged entry is released again.
+     * @return the tree, or null if there is no entry or it cannot be read
+     */
+    public static ASTNode load(Path entry, ToIntFunction<LineMap> files) throws IOException {
+        MappedByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            return decode(bytes, files);
+        } catch (RuntimeException e) {
+            return null; // damaged or from another format; it will be rewritten
+        }
+    }
+
+    /**
+     * Writes an entry for the tree, whose locations point into lines. The entry is
+     * written to a temporary file and renamed into place, so a reader never sees
+     * half of one.
+     */
+    public static void store(Path entry, ASTNode root, LineMap lines) throws IOException {
+        Files.createDirectories(entry.getParent());
+        Path tmp = Files.createTempFile(entry.getParent(), "tmp-", SUFFIX);
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                encode(root, lines, out);
+            }
+            try {
+                Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Writes the tree and its line map in the entry format. */
+    public static void encode(ASTNode root, LineMap lines, OutputStream out) throws IOException {
+        Encoder encoder = new Encoder(FileTable.idOf(lines));
+        root.accept(encoder);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(encoder.nodes.size() + (1 << 12));
+        DataOutputStream data = new DataOutputStream(body);
+        data.writeLong(CompilerVersion.ID);
+        lines.writeTo(data);
+        data.writeInt(encoder.strings.size());
+        for (int i = 0; i < encoder.strings.size(); i++) {
+            byte[] utf8 = encoder.strings.get(i).getBytes(StandardCharsets.UTF_8);
+            data.writeBoolean(encoder.canonical.get(i));
+            data.writeInt(utf8.length);
+            data.write(utf8);
+        }
+        encoder.nodes.writeTo(data);
+        data.flush();
+
+        CRC32C checksum = new CRC32C();
+        byte[] bytes = body.toByteArray();
+        checksum.update(bytes);
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt((int) checksum.getValue());
+        header.write(bytes);
+        header.flush();
+    }
+
+    /**
+     * Reads a tree in the entry format, registering its line map with the FileTable under path.
+     * @throws RuntimeException if the entry is damaged or not in this format
+     */
+    public static ASTNode decode(ByteBuffer in, String path) {
+        return decode(in, lines -> FileTable.register(path, lines));
+    }
+
+    private static ASTNode decode(ByteBuffer in, ToIntFunction<LineMap> files) {
+        if (in.getInt() != MAGIC) throw new IllegalStateException("not an AST cache entry");
+        int expected = in.getInt();
+        CRC32C checksum = new CRC32C();
+        checksum.update(in.duplicate());
+        if ((int) checksum.getValue() != expected) throw new IllegalStateException("AST cache entry checksum mismatch");
+        if (in.getLong() != CompilerVersion.ID) throw new IllegalStateException("AST cache entry from another compiler build");
+
+        LineMap lines = LineMap.readFrom(in);
+        // a string takes at least a flag and a length
+        String[] strings = new String[count(in, 5)];
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < strings.length; i++) {
+            boolean canonical = in.get() != 0;
+            int length = count(in, 1);
+            if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            in.get(scratch, 0, length);
+            String s = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            strings[i] = canonical ? NameTable.intern(s) : s;
+        }
+        int file = files.applyAsInt(lines);
+        try {
+            Decoder decoder = new Decoder(in, strings, file, lines.length());
+            ASTNode root = decoder.node();
+            if (in.hasRemaining()) throw new IllegalStateException("trailing bytes after AST");
+            decoder.resolveForwardTypes();
+            return root;
+        } catch (RuntimeException e) {
+            FileTable.release(lines);
+            throw e;
+        }
+    }
+
+    /** Reads a count of items that take at least itemBytes each, checking it fits the rest of in. */
+    private static int count(ByteBuffer in, int itemBytes) {
+        int n = in.getInt();
+        if (n < 0 || n > in.remaining() / itemBytes) throw new IllegalStateException("count " + n + " out of range");
+        return n;
+    }
+
+    /** Writes nodes in preorder into a buffer while collecting the string table. */
+    private static final class Encoder implements ASTVisitor<Void> {
+        private final int file;
+        final List<String> strings = new ArrayList<>();
+        final List<Boolean> canonical = new ArrayList<>();
+        private final Map<String, Integer> stringIndex = new HashMap<>();
+        private final Map<ClassDeclNode, Integer> classes = new IdentityHashMap<>();
+        final ByteArrayOutputStream nodes = new ByteArrayOutputStream(1 << 16);
+
+        Encoder(int file) {
+            this.file = file;
+        }
+
+        private void header(ASTNode node, byte kind) {
+            long location = node.getLocation();
+            int offset = location != FileTable.NO_LOCATION && FileTable.fileOf(location) == file
+                ? FileTable.offsetOf(location) : -1;
+            writeByte(kind);
+            writeInt(offset);
+        }
+
+        private void expression(ExpressionNode node, byte kind) {
+            header(node, kind);
+            type(node.type);
+        }
+
+        private void type(Type type) {
+            if (type == null) {
+                writeByte(NO_TYPE);
+            } else if (type instanceof ClassType) {
+                writeByte(CLASS_TYPE);
+                writeInt(classIndex(((ClassType) type).declaration()));
+                name(type.name());
+            } else {
+                for (byte tag = 1; tag < BUILTINS.length; tag++) {
+                    if (BUILTINS[tag] == type) {
+                        writeByte(tag);
+                        return;
+                    }
+                }
+                writeByte(UNRESOLVED_TYPE);
+                name(type.name());
+            }
+        }
+
+        private int classIndex(ClassDeclNode node) {
+            return classes.computeIfAbsent(node, n -> classes.size());
+        }
+
+        /** A name, operator or type name; interned again when read. */
+        private void name(String s) {
+            string(s, true);
+        }
+
+        private void value(String s) {
+            string(s, false);
+        }
+
+        private void string(String s, boolean isName) {
+            Integer i = stringIndex.get(s);
+            if (i == null) {
+                i = strings.size();
+                stringIndex.put(s, i);
+                strings.add(s);
+                canonical.add(isName);
+            } else if (isName && !canonical.get(i)) {
+                canonical.set(i, true);
+            }
+            writeInt(i);
+        }
+
+        private void child(ASTNode node) {
+            node.accept(this);
+        }
+
+        private void optional(ASTNode node) {
+            writeByte(node != null ? 1 : 0);
+            if (node != null) node.accept(this);
+        }
+
+        private void list(List<? extends ASTNode> nodes) {
+            writeInt(nodes.size());
+            for (ASTNode node : nodes) node.accept(this);
+        }
+
+        private void writeByte(int b) {
+            nodes.write(b);
+        }
+
+        private void writeInt(int i) {
+            nodes.write(i >>> 24);
+            nodes.write(i >>> 16);
+            nodes.write(i >>> 8);
+            nodes.write(i);
+        }
+
+        @Override
+        public Void visitBlockNode(BlockNode node) {
+            header(node, FlatAst.BLOCK);
+            list(node.statements);
+            return null;
+        }
+
+        @Override
+        public Void visitClassDeclNode(ClassDeclNode node) {
+            header(node, FlatAst.CLASS_DECL);
+            name(node.className);
+            writeInt(classIndex(node));
+            list(node.fields);
+            list(node.methods);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionDeclNode(FunctionDeclNode node) {
+            header(node, FlatAst.FUNCTION_DECL);
+            name(node.returnType);
+            name(node.name);
+            type(node.declaredReturnType);
+            list(node.params);
+            child(node.body);
+            return null;
+        }
+
+        @Override
+        public Void visitVarDeclNode(VarDeclNode node) {
+            header(node, FlatAst.VAR_DECL);
+            name(node.type);
+            name(node.name);
+            type(node.declaredType);
+            optional(node.initializer);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignmentNode(AssignmentNode node) {
+            header(node, FlatAst.ASSIGNMENT);
+            child(node.target);
+            child(node.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitIfNode(IfNode node) {
+            header(node, FlatAst.IF);
+            child(node.cond);
+            child(node.thenBlock);
+            optional(node.elseBlock);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileNode(WhileNode node) {
+            header(node, FlatAst.WHILE);
+            child(node.cond);
+            child(node.body);
+            return null;
+        }
+
+        @Override
+        public Void visitForNode(ForNode node) {
+            header(node, FlatAst.FOR);
+            optional(node.init);
+            optional(node.cond);
+            optional(node.update);
+            child(node.body);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnNode(ReturnNode node) {
+            header(node, FlatAst.RETURN);
+            optional(node.expr);
+            return null;
+        }
+
+        @Override
+        public Void visitEmptyNode(EmptyNode node) {
+            header(node, FlatAst.EMPTY);
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryOpNode(BinaryOpNode node) {
+            expression(node, FlatAst.BINARY_OP);
+            name(node.op);
+            child(node.left);
+            child(node.right);
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryExprNode(BinaryExprNode node) {
+            expression(node, FlatAst.BINARY_EXPR);
+            name(node.op);
+            child(node.left);
+            child(node.right);
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryOpNode(UnaryOpNode node) {
+            expression(node, FlatAst.UNARY_OP);
+            name(node.op);
+            child(node.expr);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralNode(LiteralNode node) {
+            expression(node, FlatAst.LITERAL);
+            value(node.value);
+            return null;
+        }
+
+        @Override
+        public Void visitIdentifierNode(IdentifierNode node) {
+            expression(node, FlatAst.IDENTIFIER);
+            name(node.name);
+            return null;
+        }
+
+        @Override
+        public Void visitMethodCallNode(MethodCallNode node) {
+            expression(node, FlatAst.METHOD_CALL);
+            name(node.methodName);
+            optional(node.object);
+            list(node.args);
+            return null;
+        }
+
+        @Override
+        public Void visitMemberAccessNode(MemberAccessNode node) {
+            expression(node, FlatAst.MEMBER_ACCESS);
+            name(node.memberName);
+            child(node.object);
+            return null;
+        }
+
+        @Override
+        public Void visitNewExprNode(NewExprNode node) {
+            expression(node, FlatAst.NEW_EXPR);
+            name(node.className);
+            list(node.args);
+            return null;
+        }
+    }
+
+    /** Rebuilds nodes from the preorder stream. */
+    private static final class Decoder {
+        private final ByteBuffer in;
+        private final String[] strings;
+        private final int file;
+        private final int sourceLength;
+        private final List<ClassDeclNode> classes = new ArrayList<>();
+        private final Map<String, Type> unresolved = new HashMap<>();
+        // nodes whose class type was read before the class: node, class index, type name
+        private final List<Object> forward = new ArrayList<>();
+
+        Decoder(ByteBuffer in, String[] strings, int file, int sourceLength) {
+            this.in = in;
+            this.strings = strings;
+            this.file = file;
+            this.sourceLength = sourceLength;
+        }
+
+        ASTNode node() {
+            byte kind = in.get();
+            int offset = in.getInt();
+            if (offset < -1 || offset > sourceLength) throw new IllegalStateException("offset " + offset + " out of range");
+            ASTNode node = build(kind);
+            node.setLocation(offset < 0 ? FileTable.NO_LOCATION : FileTable.location(file, offset));
+            return node;
+        }
+
+        private ASTNode build(byte kind) {
+            switch (kind) {
+                case FlatAst.BLOCK:
+                    return new BlockNode(list(ASTNode.class));
+                case FlatAst.CLASS_DECL: {
+                    String name = string();
+                    int index = classIndex();
+                    List<VarDeclNode> fields = list(VarDeclNode.class);
+                    ClassDeclNode node = new ClassDeclNode(name, fields, list(FunctionDeclNode.class));
+                    while (classes.size() <= index) classes.add(null);
+                    classes.set(index, node);
+                    return node;
+                }
+                case FlatAst.FUNCTION_DECL: {
+                    String returnType = string();
+                    String name = string();
+                    Object type = type();
+                    List<VarDeclNode> params = list(VarDeclNode.class);
+                    FunctionDeclNode node = new FunctionDeclNode(returnType, name, params, (BlockNode) node());
+                    node.declaredReturnType = resolve(node, type);
+                    return node;
+                }
+                case FlatAst.VAR_DECL: {
+                    String type = string();
+                    String name = string();
+                    Object declared = type();
+                    VarDeclNode node = new VarDeclNode(type, name, optionalExpression());
+                    node.declaredType = resolve(node, declared);
+                    return node;
+                }
+                case FlatAst.ASSIGNMENT:
+                    return new AssignmentNode(expression(), expression());
+                case FlatAst.IF:
+                    return new IfNode(expression(), node(), optional());
+                case FlatAst.WHILE:
+                    return new WhileNode(expression(), node());
+                case FlatAst.FOR:
+                    return new ForNode(optional(), optionalExpression(), optional(), node());
+                case FlatAst.RETURN:
+                    return new ReturnNode(optionalExpression());
+                case FlatAst.EMPTY:
+                    return new EmptyNode();
+                default:
+                    return buildExpression(kind);
+            }
+        }
+
+        private ExpressionNode buildExpression(byte kind) {
+            Object type = type();
+            ExpressionNode node;
+            switch (kind) {
+                case FlatAst.BINARY_OP:
+                    node = new BinaryOpNode(string(), expression(), expression());
+                    break;
+                case FlatAst.BINARY_EXPR:
+                    node = new BinaryExprNode(string(), expression(), expression());
+                    break;
+                case FlatAst.UNARY_OP:
+                    node = new UnaryOpNode(string(), expression());
+                    break;
+                case FlatAst.LITERAL:
+                    node = new LiteralNode(string());
+                    break;
+                case FlatAst.IDENTIFIER:
+                    node = new IdentifierNode(string());
+                    break;
+                case FlatAst.METHOD_CALL: {
+                    String name = string();
+                    node = new MethodCallNode(optionalExpression(), name, list(ExpressionNode.class));
+                    break;
+                }
+                case FlatAst.MEMBER_ACCESS: {
+                    String member = string();
+                    node = new MemberAccessNode(expression(), member);
+                    break;
+                }
+                case FlatAst.NEW_EXPR:
+                    node = new NewExprNode(string(), list(ExpressionNode.class));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown node kind " + kind);
+            }
+            node.type = resolve(node, type);
+            return node;
+        }
+
+        private String string() {
+            int index = in.getInt();
+            if (index < 0 || index >= strings.length) throw new IllegalStateException("string " + index + " out of range");
+            return strings[index];
+        }
+
+        /** A class index; there are fewer classes than bytes in the entry, each mention taking several. */
+        private int classIndex() {
+            int index = in.getInt();
+            if (index < 0 || index >= in.limit()) throw new IllegalStateException("class " + index + " out of range");
+            return index;
+        }
+
+        /** A Type, or the index of a class not read yet, boxed. */
+        private Object type() {
+            byte tag = in.get();
+            if (tag == NO_TYPE) return null;
+            if (tag > 0 && tag < BUILTINS.length) return BUILTINS[tag];
+            if (tag == CLASS_TYPE) {
+                int index = classIndex();
+                String name = string();
+                ClassDeclNode decl = index < classes.size() ? classes.get(index) : null;
+                return decl != null ? decl.type() : new Object[] { index, name };
+            }
+            if (tag == UNRESOLVED_TYPE) return unresolved.computeIfAbsent(string(), Type::unresolved);
+            throw new IllegalStateException("Unknown type tag " + tag);
+        }
+
+        private Type resolve(ASTNode node, Object type) {
+            if (type instanceof Type || type == null) return (Type) type;
+            forward.add(node);
+            forward.add(type);
+            return null;
+        }
+
+        /** Sets the types that named a class declared later in the tree. */
+        void resolveForwardTypes() {
+            for (int i = 0; i < forward.size(); i += 2) {
+                Object[] ref = (Object[]) forward.get(i + 1);
+                int index = (Integer) ref[0];
+                ClassDeclNode decl = index < classes.size() ? classes.get(index) : null;
+                Type type = decl != null ? decl.type() : unresolved.computeIfAbsent((String) ref[1], Type::unresolved);
+                Object node = forward.get(i);
+                if (node instanceof ExpressionNode) ((ExpressionNode) node).type = type;
+                else if (node instanceof VarDeclNode) ((VarDeclNode) node).declaredType = type;
+                else ((FunctionDeclNode) node).declaredReturnType = type;
+            }
+        }
+
+        private ExpressionNode expression() {
+            return (ExpressionNode) node();
+        }
+
+        private ASTNode optional() {
+            return in.get() != 0 ? node() : null;
+        }
+
+        private ExpressionNode optionalExpression() {
+            return (ExpressionNode) optional();
+        }
+
+        private <N extends ASTNode> List<N> list(Class<N> type) {
+            // a node takes at least its kind and offset
+            int size = count(in, 5);
+            List<N> out = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) out.add(type.cast(node()));
+            return out;
+        }
+    }
+}
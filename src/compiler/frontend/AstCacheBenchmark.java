@@ -0,0 +1,61 @@
+package compiler.frontend;
+
+import compiler.frontend.ast.ASTNode;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares parsing a source file, as FrontEndPass does on a cache miss, with
+ * loading its tree from the AST cache, hash of the source included, for programs
+ * of growing size. The entries are written to a temporary directory.
+ *
+ * Usage: java compiler.frontend.AstCacheBenchmark [max-classes]
+ */
+public class AstCacheBenchmark {
+    private static final int RUNS = 30;
+
+    public static void main(String[] args) throws Exception {
+        int max = args.length > 0 ? Integer.parseInt(args[0]) : 40000;
+        Path dir = Files.createTempDirectory("astcache-bench");
+        Path file = dir.resolve("prog.src");
+
+        System.out.println("classes      MB  parse ms   load ms  speedup  entry MB");
+        for (int n = 2500; n <= max; n *= 4) {
+            Files.write(file, ParserBenchmark.classes(n).getBytes(StandardCharsets.UTF_8));
+            ByteBuffer source = map(file);
+            Path entry = AstCache.entryFor(file, source);
+
+            long parse = Long.MAX_VALUE;
+            ASTNode tree = null;
+            MappedCharStream stream = null;
+            for (int i = 0; i < 2 * RUNS; i++) { // the first half warms up
+                long start = System.nanoTime();
+                stream = new MappedCharStream(source.duplicate());
+                tree = ParallelParser.parse(TokenBuffer.lex(stream, ForkJoinPool.commonPool()), ForkJoinPool.commonPool());
+                if (i >= RUNS) parse = Math.min(parse, System.nanoTime() - start);
+            }
+            AstCache.store(entry, tree, stream.getLineMap());
+
+            long load = Long.MAX_VALUE;
+            for (int i = 0; i < 2 * RUNS; i++) {
+                long start = System.nanoTime();
+                AstCache.load(AstCache.entryFor(file, source), file.toString());
+                if (i >= RUNS) load = Math.min(load, System.nanoTime() - start);
+            }
+            System.out.printf("%7d %7.1f %9.2f %9.2f %7.1fx %9.1f%n", n, source.remaining() / 1e6,
+                parse / 1e6, load / 1e6, (double) parse / load, Files.size(entry) / 1e6);
+        }
+    }
+
+    private static ByteBuffer map(Path file) throws Exception {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package compiler.frontend;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Word-at-a-time scans over UTF-8 source bytes for the stretches the lexer skips:
+ * runs of blanks, the rest of a "//" comment, and the body of a block comment.
+ *
+ * Eight bytes are loaded as one little-endian long and compared against a byte
+ * pattern with a few arithmetic operations, so the first byte of interest falls
+ * out of a bit mask instead of a branch per character. The buffer may be on the
+ * heap or memory-mapped. Fewer than eight remaining bytes are scanned one at a time
+ * by the scalar versions, which are kept alongside for comparison.
+ */
+final class ByteScan {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private static final long SPACES = ' ' * ONES, TABS = '\t' * ONES, LFS = '\n' * ONES, CRS = '\r' * ONES;
+    private static final long STARS = '*' * ONES, SLASHES = '/' * ONES;
+
+    private ByteScan() { }
+
+    /** Little-endian view of bytes, as the scans expect. */
+    static ByteBuffer words(ByteBuffer bytes) {
+        return bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /** 0x80 in every byte of word equal to the byte repeated in pattern, and 0 elsewhere. */
+    private static long equal(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+
+    /** Index within the word of the lowest byte flagged in mask. */
+    private static int firstByte(long mask) {
+        return Long.numberOfTrailingZeros(mask) >>> 3;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    /** First index in from..end-1 that is not a space, tab or line break, or end. */
+    static int skipBlanks(ByteBuffer words, int from, int end) {
+        int i = from;
+        // most runs between tokens are a single space, which is not worth a word load
+        if (i < end && !isBlank(words.get(i))) return i;
+        for (; i + 8 <= end; i += 8) {
+            long w = words.getLong(i);
+            if (w == SPACES) continue; // indentation
+            long blank = equal(w, SPACES) | equal(w, TABS) | equal(w, LFS) | equal(w, CRS);
+            if (blank != HIGH_BITS) return i + firstByte(~blank & HIGH_BITS);
+        }
+        return skipBlanksScalar(words, i, end);
+    }
+
+    static int skipBlanksScalar(ByteBuffer words, int from, int end) {
+        int i = from;
+        while (i < end && isBlank(words.get(i))) i++;
+        return i;
+    }
+
+    /** First index in from..end-1 holding '\n' or '\r', or end. */
+    static int lineEnd(ByteBuffer words, int from, int end) {
+        int i = from;
+        for (; i + 8 <= end; i += 8) {
+            long w = words.getLong(i);
+            long breaks = equal(w, LFS) | equal(w, CRS);
+            if (breaks != 0) return i + firstByte(breaks);
+        }
+        return lineEndScalar(words, i, end);
+    }
+
+    static int lineEndScalar(ByteBuffer words, int from, int end) {
+        int i = from;
+        while (i < end && words.get(i) != '\n' && words.get(i) != '\r') i++;
+        return i;
+    }
+
+    /** Index of the '*' of the first "*&#47;" that starts in from..end-2, or -1. */
+    static int commentClose(ByteBuffer words, int from, int end) {
+        int i = from;
+        long carry = 0; // 0x80 in the low byte if the previous word ended in '*'
+        for (; i + 8 <= end; i += 8) {
+            long w = words.getLong(i);
+            long stars = equal(w, STARS);
+            long closes = ((stars << 8) | carry) & equal(w, SLASHES);
+            if (closes != 0) return i + firstByte(closes) - 1;
+            carry = stars >>> 56;
+        }
+        if (carry != 0 && i < end && words.get(i) == '/') return i - 1;
+        return commentCloseScalar(words, i, end);
+    }
+
+    static int commentCloseScalar(ByteBuffer words, int from, int end) {
+        for (int i = from; i + 1 < end; i++) {
+            if (words.get(i) == '*' && words.get(i + 1) == '/') return i;
+        }
+        return -1;
+    }
+}
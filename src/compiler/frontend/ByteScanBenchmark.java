@@ -0,0 +1,114 @@
+package compiler.frontend;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares the word-at-a-time ByteScan routines with their scalar versions over
+ * indentation, line comments and block comments, reporting MB/s of skipped source
+ * for each. The hand-written Lexer is then timed over a source made mostly of such
+ * trivia. Each measurement is the best of several runs after a warm-up.
+ *
+ * Usage: java compiler.frontend.ByteScanBenchmark [source-megabytes]
+ */
+public class ByteScanBenchmark {
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int size = megabytes << 20;
+
+        ByteBuffer indent = words(repeat(size, i -> " ".repeat(4 + 4 * (i % 8)) + "x\n"));
+        ByteBuffer lines = words(repeat(size, i -> "// generated from rule " + i + ", do not edit by hand\n"));
+        ByteBuffer blocks = words(repeat(size, i -> "/*\n * generated block " + i + "\n * with a second line\n */\n"));
+
+        System.out.println("scan              word MB/s  scalar MB/s");
+        compare("blanks", indent,
+            () -> blanks(indent, true), () -> blanks(indent, false));
+        compare("line comments", lines,
+            () -> lineComments(lines, true), () -> lineComments(lines, false));
+        compare("block comments", blocks,
+            () -> blockComments(blocks, true), () -> blockComments(blocks, false));
+
+        byte[] trivia = repeat(size, i -> "    // step " + i + "\n        /* state */ x = x + " + i + ";\n\n");
+        double lexer = best(() -> {
+            MyParserTokenManager tm = new Lexer(new MappedCharStream(trivia));
+            int n = 0;
+            while (tm.getNextToken().kind != MyParserConstants.EOF) n++;
+            return n;
+        });
+        System.out.printf("%nLexer over trivia-heavy source: %.1f MB/s%n", trivia.length / lexer / 1e6);
+    }
+
+    private interface Source {
+        String unit(int i);
+    }
+
+    private interface Run {
+        int run() throws Exception;
+    }
+
+    private static byte[] repeat(int size, Source source) {
+        StringBuilder sb = new StringBuilder(size + 256);
+        for (int i = 0; sb.length() < size; i++) sb.append(source.unit(i));
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer words(byte[] bytes) {
+        return ByteScan.words(ByteBuffer.wrap(bytes));
+    }
+
+    private static void compare(String name, ByteBuffer input, Run word, Run scalar) throws Exception {
+        if (word.run() != scalar.run()) throw new AssertionError(name + ": word and scalar scans disagree");
+        int size = input.remaining();
+        System.out.printf("%-15s %11.1f %12.1f%n", name, size / best(word) / 1e6, size / best(scalar) / 1e6);
+    }
+
+    /** Best time of a run, in seconds. */
+    private static double best(Run run) throws Exception {
+        int sink = 0;
+        for (int i = 0; i < WARMUP; i++) sink += run.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            sink += run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (sink == 42) System.out.print(""); // keep the results live
+        return best / 1e9;
+    }
+
+    // each workload steps from one stretch of trivia to the next, returning a checksum of where they end
+
+    private static int blanks(ByteBuffer b, boolean word) {
+        int end = b.remaining(), sum = 0;
+        for (int i = 0; i < end; ) {
+            i = word ? ByteScan.skipBlanks(b, i, end) : ByteScan.skipBlanksScalar(b, i, end);
+            sum += i;
+            i++; // the "x"
+        }
+        return sum;
+    }
+
+    private static int lineComments(ByteBuffer b, boolean word) {
+        int end = b.remaining(), sum = 0;
+        for (int i = 0; i < end; ) {
+            i = word ? ByteScan.lineEnd(b, i + 2, end) : ByteScan.lineEndScalar(b, i + 2, end);
+            sum += i;
+            i++; // the line break
+        }
+        return sum;
+    }
+
+    private static int blockComments(ByteBuffer b, boolean word) {
+        int end = b.remaining(), sum = 0;
+        for (int i = 0; i < end; ) {
+            int close = word ? ByteScan.commentClose(b, i + 2, end) : ByteScan.commentCloseScalar(b, i + 2, end);
+            if (close < 0) break;
+            sum += close;
+            i = close + 3; // "*/" and the line break
+        }
+        return sum;
+    }
+}
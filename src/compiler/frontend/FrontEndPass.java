@@ -2,17 +2,22 @@ package compiler.frontend;
 
 import compiler.frontend.ast.ASTNode;
 import compiler.frontend.ast.BlockNode;
+import compiler.infra.Artifact;
 import compiler.infra.CompilerContext;
 import compiler.infra.CompilerPass;
 import compiler.infra.Diagnostics;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.Collections;
+import java.util.Set;
 
 /**
  * FrontEndPass
  * Combines lexing and parsing into one compiler pass.
- * Uses MyParser (JavaCC-generated) to build the AST and store it in the CompilerContext.
+ * Uses MyParser (JavaCC-generated), through ParallelParser, to build the AST and store it in the CompilerContext.
  */
 public class FrontEndPass implements CompilerPass {
 
@@ -21,38 +26,72 @@ public class FrontEndPass implements CompilerPass {
         return "FrontEndPass (Lexing + Parsing)";
     }
 
+    @Override
+    public Set<Artifact> reads() { return Set.of(Artifact.SOURCE); }
+
+    @Override
+    public Set<Artifact> produces() { return Set.of(Artifact.AST); }
+
     @Override
     public void execute(CompilerContext context) throws Exception {
-        System.out.println("=== Starting FrontEndPass ===");
         Diagnostics reporter = context.getDiagnostics();
+        reporter.log("=== Starting FrontEndPass ===");
 
+        ByteBuffer source = context.getSource();
         InputStream input = context.getInputStream();
-        if (input == null) {
+        if (source == null && input == null) {
             // Nothing to parse; store an empty block AST to keep downstream passes happy
             context.setAst(new BlockNode(Collections.emptyList()));
-            System.out.println("No input stream; FrontEndPass produced empty AST.");
-            System.out.println("=== Finished FrontEndPass ===");
+            reporter.log("No input stream; FrontEndPass produced empty AST.");
+            reporter.log("=== Finished FrontEndPass ===");
             return;
         }
 
         try {
-            MyParser parser = new MyParser(input);
-            ASTNode ast = parser.Program();
+            // the hand-written lexer scans the whole source in place, so streams are read up front
+            if (source == null) source = ByteBuffer.wrap(input.readAllBytes());
+
+            // an unchanged file's tree is loaded from the AST cache without lexing it
+            Path cacheEntry = context.isAstCaching() && context.getSourceFile() != null
+                ? AstCache.entryFor(context.getSourceFile(), source) : null;
+            ASTNode cached = cacheEntry != null ? AstCache.load(cacheEntry, context::registerLines) : null;
+            if (cached != null) {
+                context.setAst(cached);
+                reporter.log("Loaded AST from " + cacheEntry);
+                reporter.log("=== Finished FrontEndPass ===");
+                return;
+            }
+
+            MappedCharStream stream = new MappedCharStream(source);
+            // AST locations name their file through the registry
+            context.registerLines(stream.getLineMap());
+            // large sources are lexed in chunks on the context's pool
+            TokenBuffer tokens = TokenBuffer.lex(stream, context.getPool());
+            // top-level declarations of large programs are parsed on the pool as well,
+            // with child lists from the context's arena so they go when it is released
+            ASTNode ast = ParallelParser.parse(tokens, context.getPool(), context.getAstArena());
             context.setAst(ast);
-            System.out.println("Parsing completed.");
+            reporter.log("Parsing completed.");
+            if (cacheEntry != null) storeAst(cacheEntry, ast, stream, reporter);
+        } catch (ParseException e) {
+            reporter.addError("Parse error: " + e.getMessage());
+        } catch (TokenMgrError e) {
+            // the lexer reports a bad character as an Error
+            reporter.addError("Lexical error: " + e.getMessage());
         } catch (Exception e) {
-            if (e instanceof ParseException) {
-                if (reporter != null) {
-                    reporter.addError("Parse error: " + e.getMessage());
-                } else {
-                    System.err.println("Parse error: " + e.getMessage());
-                }
-            } else {
-                // Unexpected exception during parsing
-                e.printStackTrace();
-            }
+            // there is no AST, so the compilation must not look successful
+            reporter.addError("Front end failed: " + e);
         }
 
-        System.out.println("=== Finished FrontEndPass ===");
+        reporter.log("=== Finished FrontEndPass ===");
+    }
+
+    // a cache that cannot be written only costs the next compilation a parse
+    private static void storeAst(Path entry, ASTNode ast, MappedCharStream stream, Diagnostics reporter) {
+        try {
+            AstCache.store(entry, ast, stream.getLineMap());
+        } catch (IOException e) {
+            reporter.log("Could not store AST cache entry " + entry + ": " + e.getMessage());
+        }
     }
 }
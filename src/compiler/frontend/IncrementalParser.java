@@ -0,0 +1,230 @@
+package compiler.frontend;
+
+import compiler.frontend.ast.ASTNode;
+import compiler.frontend.ast.BlockNode;
+import compiler.infra.FileTable;
+import compiler.infra.LineMap;
+import compiler.infra.ShiftedLineMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Front end for a source that is edited repeatedly, as in an editor or a watch loop.
+ *
+ * The program is kept as a list of top-level items: the ClassDecl, FunctionDecl and
+ * statements directly under the root BlockNode, each with the offsets of its first
+ * and last character. Items are cut where ParallelParser cuts them, at a ";" or "}"
+ * outside all braces and parentheses that is not followed by "else".
+ *
+ * An edit re-lexes from the end of the last item before it, cutting the new tokens
+ * into items, until the next token starts exactly where an item after the edit now
+ * starts; from that token on the old lexing is known to hold. Only the new items are
+ * parsed, and the items after them are spliced back unchanged. The nodes of every
+ * item record their offsets through a ShiftedLineMap, registered in the FileTable as
+ * a file of its own, so moving an item is one call to {@link ShiftedLineMap#rebase}
+ * however large it is. The views of replaced items are released from the table. The cost of an edit is
+ * therefore the lexing and parsing of the items it touches, plus a copy of the text
+ * and a pass over the item list.
+ *
+ * If an edit leaves the program unparseable, the ParseException (or the lexer's
+ * TokenMgrError) is thrown and the AST keeps the items from before the edit. The
+ * items the failed edit re-lexed are remembered as damaged, and the next edit
+ * re-lexes from the first of them on, whatever text it touches. {@link #close}
+ * releases the views of all items once the parser is no longer used.
+ */
+public class IncrementalParser implements MyParserConstants, AutoCloseable {
+    private static final class Item {
+        int start, end;         // first and last character in the current source
+        final ShiftedLineMap lines;
+        final List<ASTNode> statements;
+
+        Item(int start, int end, ShiftedLineMap lines, List<ASTNode> statements) {
+            this.start = start;
+            this.end = end;
+            this.lines = lines;
+            this.statements = statements;
+        }
+    }
+
+    private MappedCharStream source;
+    private final List<Item> items = new ArrayList<>();
+    private final BlockNode ast = new BlockNode(new ArrayList<>());
+    // items dirtyFirst..dirtyAfter-1 were re-lexed by an edit that did not parse and no
+    // longer match the source; dirtyFirst is -1 when there are none
+    private int dirtyFirst = -1, dirtyAfter;
+    private int lastReparsed;
+
+    public IncrementalParser(MappedCharStream source) throws ParseException {
+        this.source = source;
+        reparseAll();
+    }
+
+    /** The root of the program; the same node, updated in place, after every edit. */
+    public BlockNode getAst() {
+        return ast;
+    }
+
+    public MappedCharStream getSource() {
+        return source;
+    }
+
+    /** Number of top-level items parsed by the last edit. */
+    public int getLastReparsedCount() {
+        return lastReparsed;
+    }
+
+    /**
+     * Replaces bytes start..end-1 of the UTF-8 source and brings the AST up to date.
+     * @return the root of the program
+     * @throws ParseException if the edited source does not parse; the edit is kept
+     */
+    public BlockNode edit(int start, int end, String replacement) throws ParseException {
+        int oldLength = source.length();
+        source = source.edit(start, end, replacement);
+        // in bytes: the replacement is inserted as UTF-8
+        int delta = source.length() - oldLength;
+
+        // items touching the edit, including one that ends right before it, since text
+        // appended there may continue it (an "else", or more characters of a token)
+        int first = 0;
+        while (first < items.size() && items.get(first).end < start - 1) first++;
+        if (dirtyFirst >= 0) first = Math.min(first, dirtyFirst);
+        // damaged items are lexed again whatever the edit touches; their offsets are stale
+        int after = Math.max(first, dirtyFirst >= 0 ? dirtyAfter : 0);
+        while (after < items.size() && items.get(after).start <= end) after++;
+        int from = first == 0 ? 0 : items.get(first - 1).end + 1;
+
+        reparse(first, after, from, end + delta, delta);
+        return ast;
+    }
+
+    private void reparseAll() throws ParseException {
+        reparse(0, items.size(), 0, 0, 0);
+    }
+
+    /**
+     * Replaces items first..after-1, and any later ones the new tokens run into, with
+     * the items lexed from offset from of the current source.
+     * @param editEnd offset just past the inserted text; lexing goes on at least until here
+     * @param delta change in length, by which the items kept after the edit move
+     */
+    private void reparse(int first, int after, int from, int editEnd, int delta) throws ParseException {
+        LineMap lines = source.getLineMap();
+        List<Item> fresh = new ArrayList<>();
+        List<ASTNode> statements = new ArrayList<>();
+        List<ShiftedLineMap> views = new ArrayList<>();
+        boolean parsed = false;
+        try {
+            Lexer lexer = new Lexer(source);
+            lexer.seek(from);
+            List<Token> tokens = new ArrayList<>();
+            int depth = 0;
+            Token t = lexer.getNextToken();
+            while (t.kind != EOF) {
+                if (tokens.isEmpty() && t.beginOffset >= editEnd) {
+                    // back in step if this token opens an item the edit did not touch
+                    while (after < items.size() && items.get(after).start + delta < t.beginOffset) after++;
+                    if (after < items.size() && items.get(after).start + delta == t.beginOffset) break;
+                }
+                tokens.add(t);
+                if (t.kind == LBRACE || t.kind == LPAREN) depth++;
+                else if (t.kind == RBRACE || t.kind == RPAREN) depth--;
+                Token next = lexer.getNextToken();
+                if (depth == 0 && (t.kind == SEMI || t.kind == RBRACE) && next.kind != ELSE) {
+                    fresh.add(parse(tokens, lines, statements, views));
+                    tokens = new ArrayList<>();
+                }
+                t = next;
+            }
+            if (t.kind == EOF) {
+                after = items.size();
+                if (!tokens.isEmpty()) fresh.add(parse(tokens, lines, statements, views)); // throws: the last item is unfinished
+            }
+            parsed = true;
+        } finally {
+            if (!parsed) damaged(first, after, delta, lines, views);
+        }
+
+        int at = 0; // index in ast.statements of item first
+        for (int i = 0; i < first; i++) at += items.get(i).statements.size();
+        int removed = 0;
+        for (int i = first; i < after; i++) removed += items.get(i).statements.size();
+        ast.statements.subList(at, at + removed).clear();
+        ast.statements.addAll(at, statements);
+        for (int i = first; i < after; i++) FileTable.release(items.get(i).lines);
+        items.subList(first, after).clear();
+        items.addAll(first, fresh);
+
+        for (int i = 0; i < first; i++) {
+            items.get(i).lines.rebase(lines, 0);
+        }
+        for (int i = first + fresh.size(); i < items.size(); i++) {
+            Item item = items.get(i);
+            item.start += delta;
+            item.end += delta;
+            item.lines.rebase(lines, delta);
+        }
+        lastReparsed = fresh.size();
+        dirtyFirst = -1;
+    }
+
+    /**
+     * Leaves the items as they were after a reparse of first..after-1 failed, bringing
+     * those on either side in line with the source and marking the rest as damaged.
+     * The views the failed reparse created, and so its nodes, are released.
+     */
+    private void damaged(int first, int after, int delta, LineMap lines, List<ShiftedLineMap> views) {
+        for (ShiftedLineMap view : views) FileTable.release(view);
+        for (int i = 0; i < first; i++) {
+            items.get(i).lines.rebase(lines, 0);
+        }
+        for (int i = after; i < items.size(); i++) {
+            Item item = items.get(i);
+            item.start += delta;
+            item.end += delta;
+            item.lines.rebase(lines, delta);
+        }
+        dirtyFirst = first;
+        dirtyAfter = after;
+    }
+
+    /** Releases the FileTable entries of all items; the AST's locations no longer resolve, and no more edits may be made. */
+    @Override
+    public void close() {
+        for (Item item : items) FileTable.release(item.lines);
+    }
+
+    /** Parses one item's tokens, adding its statements to statements and its view to views. */
+    private static Item parse(List<Token> tokens, LineMap lines, List<ASTNode> statements, List<ShiftedLineMap> views) throws ParseException {
+        ShiftedLineMap view = new ShiftedLineMap(lines);
+        views.add(view);
+        for (Token t : tokens) t.lines = view;
+        Token last = tokens.get(tokens.size() - 1);
+        BlockNode block = (BlockNode) new MyParser(new ListTokenManager(tokens, last)).Program();
+        statements.addAll(block.statements);
+        return new Item(tokens.get(0).beginOffset, last.endOffset, view, block.statements);
+    }
+
+    /** Feeds a list of tokens to MyParser, then EOF on the last one's final character. */
+    private static final class ListTokenManager extends MyParserTokenManager {
+        private final List<Token> tokens;
+        private final Token last;
+        private int next;
+
+        ListTokenManager(List<Token> tokens, Token last) {
+            super((CharStream) null);
+            this.tokens = tokens;
+            this.last = last;
+        }
+
+        @Override
+        public Token getNextToken() {
+            if (next < tokens.size()) return tokens.get(next++);
+            Token eof = Token.newToken(EOF, "");
+            eof.beginOffset = eof.endOffset = last.endOffset;
+            eof.lines = last.lines;
+            return eof;
+        }
+    }
+}
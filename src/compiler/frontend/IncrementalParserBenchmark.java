@@ -0,0 +1,44 @@
+package compiler.frontend;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares the latency of a one-character edit through IncrementalParser with a
+ * full parse of the same program, for programs of growing size. The edit goes
+ * into a method body in the middle of the file; edit latency should stay flat
+ * while full parse time grows with the file.
+ *
+ * Usage: java compiler.frontend.IncrementalParserBenchmark [max-classes]
+ */
+public class IncrementalParserBenchmark {
+    private static final int RUNS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int max = args.length > 0 ? Integer.parseInt(args[0]) : 16384;
+
+        System.out.println("classes   full ms   edit ms");
+        for (int n = 256; n <= max; n *= 4) {
+            String text = ParserBenchmark.classes(n);
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            int at = text.indexOf("return inner(v + b);", text.length() / 2);
+
+            long full = Long.MAX_VALUE;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                new MyParser(new Lexer(new MappedCharStream(bytes))).Program();
+                full = Math.min(full, System.nanoTime() - start);
+            }
+
+            IncrementalParser parser = new IncrementalParser(new MappedCharStream(bytes));
+            long edit = Long.MAX_VALUE;
+            for (int i = 0; i < 2 * RUNS; i++) {
+                long start = System.nanoTime();
+                // alternately insert and remove a character, so the text returns to the original
+                if (i % 2 == 0) parser.edit(at, at, " ");
+                else parser.edit(at, at + 1, "");
+                edit = Math.min(edit, System.nanoTime() - start);
+            }
+            System.out.printf("%7d %9.3f %9.3f%n", n, full / 1e6, edit / 1e6);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package compiler.frontend;
+
+import compiler.infra.LineMap;
+import compiler.infra.NameTable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hand-written lexer for in-memory sources, used by MyParser in place of the
+ * JavaCC-generated NFA simulation (it plugs in through MyParser(MyParserTokenManager)).
+ *
+ * The source's UTF-8 bytes are scanned as they are: every token of the language is
+ * ASCII, and the bytes of a multi-byte character never look like an ASCII one, so
+ * non-ASCII bytes are skipped inside strings and comments and are an error anywhere
+ * else. Only a string literal's image is decoded.
+ *
+ * Characters are classified through a 128-entry table and every token is recognized
+ * by a direct scan from its first character. Keywords are found with a perfect hash
+ * of (first char + second char + length) followed by one comparison. Keywords and
+ * punctuation reuse the generated literal images, and identifiers go through a small
+ * per-lexer cache in front of NameTable, so only number and string literals and
+ * first occurrences of a name allocate an image.
+ *
+ * Produces the same tokens as MyParserTokenManager, except that a "//" comment may end
+ * at end of input and a block comment always ends at its first closing delimiter.
+ * TokenBuffer drives the same scanner through scan(), which recognizes a token
+ * without building a Token or its image.
+ */
+public class Lexer extends MyParserTokenManager {
+    // character classes
+    private static final byte OTHER = 0, SPACE = 1, LETTER = 2, DIGIT = 3, QUOTE = 4, OPERATOR = 5;
+    private static final byte[] CHAR_CLASS = new byte[128];
+    private static final boolean[] IDENTIFIER_PART = new boolean[128];
+    // token kind of each single-character operator
+    private static final int[] SINGLE = new int[128];
+
+    private static final int KEYWORD_SLOTS = 32;
+    private static final int[] KEYWORD_KIND = new int[KEYWORD_SLOTS];
+    private static final String[] KEYWORD_TEXT = new String[KEYWORD_SLOTS];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) CHAR_CLASS[c] = LETTER;
+        for (char c = 'A'; c <= 'Z'; c++) CHAR_CLASS[c] = LETTER;
+        CHAR_CLASS['_'] = LETTER;
+        for (char c = '0'; c <= '9'; c++) CHAR_CLASS[c] = DIGIT;
+        CHAR_CLASS[' '] = CHAR_CLASS['\t'] = CHAR_CLASS['\n'] = CHAR_CLASS['\r'] = SPACE;
+        CHAR_CLASS['"'] = QUOTE;
+        for (int c = 0; c < 128; c++) IDENTIFIER_PART[c] = CHAR_CLASS[c] == LETTER || CHAR_CLASS[c] == DIGIT;
+
+        int[] singles = { ASSIGN, PLUS, MINUS, MULT, DIV, LT, GT, NOT, DOT, LPAREN, RPAREN, LBRACE, RBRACE, SEMI, COMMA };
+        for (int kind : singles) {
+            char c = jjstrLiteralImages[kind].charAt(0);
+            CHAR_CLASS[c] = OPERATOR;
+            SINGLE[c] = kind;
+        }
+        CHAR_CLASS['&'] = CHAR_CLASS['|'] = OPERATOR; // only valid doubled
+
+        int[] keywords = { IF, ELSE, WHILE, FOR, VOID, RETURN, INT, TRUE, FALSE, NULL, NEW, CLASS, PUBLIC, STATIC, THIS };
+        for (int kind : keywords) {
+            String text = jjstrLiteralImages[kind];
+            int slot = keywordSlot(text.charAt(0), text.charAt(1), text.length());
+            if (KEYWORD_TEXT[slot] != null) {
+                throw new IllegalStateException("Keyword hash collision: " + text + " / " + KEYWORD_TEXT[slot]);
+            }
+            KEYWORD_TEXT[slot] = text;
+            KEYWORD_KIND[slot] = kind;
+        }
+    }
+
+    /** Collision-free over the current keywords; class initialization fails if that changes. */
+    private static int keywordSlot(char first, char second, int length) {
+        return (first + second + length) & (KEYWORD_SLOTS - 1);
+    }
+
+    private final MappedCharStream source;
+    // direct view of heap sources, which are the common case
+    private final byte[] bytes;
+    private final int base;
+    // little-endian view of the source, for skipping blanks and comments a word at a time
+    private final ByteBuffer words;
+    private final int length;
+    private final LineMap lines;
+    private int pos; // next character to read
+    // span of the token last recognized by scan()
+    private int tokenStart, tokenEnd, tokenHash;
+
+    // canonical names seen by this lexer, open addressing on the name's String hash
+    private String[] names = new String[256];
+    private int nameCount;
+
+    public Lexer(MappedCharStream source) {
+        super(source);
+        this.source = source;
+        this.bytes = source.byteArray();
+        this.base = source.arrayOffset();
+        this.words = ByteScan.words(source.byteBuffer());
+        this.length = source.length();
+        this.lines = source.getLineMap();
+    }
+
+    @Override
+    public Token getNextToken() {
+        int kind = scan();
+        String image = kind == IDENTIFIER ? name(tokenStart, tokenEnd - tokenStart + 1, tokenHash) : image(kind, tokenStart, tokenEnd);
+        return token(kind, image, tokenStart, tokenEnd);
+    }
+
+    /**
+     * Recognizes the next token without building it. Returns its kind and leaves its
+     * first and last offsets in tokenStart and tokenEnd; an identifier's String hash
+     * is left in tokenHash.
+     */
+    int scan() {
+        int p = skipSpaceAndComments(pos);
+        if (p >= length) {
+            pos = p;
+            // the EOF token sits on the last character, as with the generated lexer
+            tokenStart = tokenEnd = length - 1;
+            return EOF;
+        }
+
+        char c = charAt(p);
+        int start = p;
+        tokenStart = start;
+        switch (c < 128 ? CHAR_CLASS[c] : OTHER) {
+            case LETTER: {
+                // hash as we scan so the name cache needs no second pass
+                int h = c;
+                char d;
+                while (++p < length && isIdentifierPart(d = charAt(p))) h = 31 * h + d;
+                pos = p;
+                tokenEnd = p - 1;
+                int len = p - start;
+                if (len >= 2 && len <= 6) {
+                    int slot = keywordSlot(c, charAt(start + 1), len);
+                    String keyword = KEYWORD_TEXT[slot];
+                    if (keyword != null && matches(keyword, start, len)) return KEYWORD_KIND[slot];
+                }
+                tokenHash = h;
+                return IDENTIFIER;
+            }
+            case DIGIT: {
+                do p++; while (p < length && isDigit(charAt(p)));
+                pos = p;
+                tokenEnd = p - 1;
+                return INT_LITERAL;
+            }
+            case QUOTE: {
+                p++;
+                while (p < length) {
+                    char d = charAt(p);
+                    if (d == '"') break;
+                    if (d == '\\') throw lexicalError(p, d);
+                    p++;
+                }
+                if (p >= length) throw lexicalError(p, (char) 0);
+                pos = ++p;
+                tokenEnd = p - 1;
+                return STRING_LITERAL;
+            }
+            case OPERATOR:
+                return operator(c, start);
+            default:
+                throw lexicalError(start, source.decodeAt(start));
+        }
+    }
+
+    private int operator(char c, int start) {
+        char next = start + 1 < length ? charAt(start + 1) : 0;
+        int kind;
+        switch (c) {
+            case '=': kind = next == '=' ? EQ : ASSIGN; break;
+            case '+': kind = next == '+' ? INCR : PLUS; break;
+            case '-': kind = next == '-' ? DECR : MINUS; break;
+            case '!': kind = next == '=' ? NEQ : NOT; break;
+            case '&':
+                if (next != '&') throw lexicalError(start, c);
+                kind = AND;
+                break;
+            case '|':
+                if (next != '|') throw lexicalError(start, c);
+                kind = OR;
+                break;
+            default: kind = SINGLE[c]; break;
+        }
+        tokenEnd = start + jjstrLiteralImages[kind].length() - 1;
+        pos = tokenEnd + 1;
+        return kind;
+    }
+
+    /** Image of a token of the given kind spanning offsets start..end, as getNextToken would give it. */
+    String image(int kind, int start, int end) {
+        switch (kind) {
+            case IDENTIFIER: {
+                int h = 0;
+                for (int i = start; i <= end; i++) h = 31 * h + charAt(i);
+                return name(start, end - start + 1, h);
+            }
+            case INT_LITERAL:
+            case STRING_LITERAL:
+                return source.text(start, end - start + 1);
+            default:
+                return jjstrLiteralImages[kind];
+        }
+    }
+
+    MappedCharStream source() {
+        return source;
+    }
+
+    /** Continues scanning at offset, which must not be inside a token, comment or string. */
+    void seek(int offset) {
+        pos = offset;
+    }
+
+    int tokenStart() {
+        return tokenStart;
+    }
+
+    int tokenEnd() {
+        return tokenEnd;
+    }
+
+    /** Skips blanks and comments from p, scanning blanks and comment bodies with ByteScan. */
+    private int skipSpaceAndComments(int p) {
+        while (p < length) {
+            char c = charAt(p);
+            if (c < 128 && CHAR_CLASS[c] == SPACE) {
+                p = ByteScan.skipBlanks(words, p + 1, length);
+            } else if (c == '/' && p + 1 < length && charAt(p + 1) == '/') {
+                p = ByteScan.lineEnd(words, p + 2, length);
+            } else if (c == '/' && p + 1 < length && charAt(p + 1) == '*') {
+                int q = ByteScan.commentClose(words, p + 2, length);
+                if (q < 0) throw lexicalError(length, (char) 0);
+                p = q + 2;
+            } else {
+                break;
+            }
+        }
+        return p;
+    }
+
+    /** The byte at offset i; above 127 for the bytes of a multi-byte character. */
+    private char charAt(int i) {
+        return bytes != null ? (char) (bytes[base + i] & 0xFF) : source.charAt(i);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return c < 128 && IDENTIFIER_PART[c];
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private boolean matches(String text, int start, int len) {
+        if (text.length() != len) return false;
+        for (int i = 0; i < len; i++) {
+            if (text.charAt(i) != charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Canonical name for the identifier at start, allocating only on its first occurrence.
+     * @param h the identifier's String hash code
+     */
+    private String name(int start, int len, int h) {
+        int mask = names.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            String s = names[i];
+            if (s == null) {
+                s = NameTable.intern(source.text(start, len));
+                names[i] = s;
+                if (++nameCount * 2 > names.length) rehash();
+                return s;
+            }
+            if (s.hashCode() == h && matches(s, start, len)) return s;
+        }
+    }
+
+    private void rehash() {
+        String[] old = names;
+        names = new String[old.length * 2];
+        int mask = names.length - 1;
+        for (String s : old) {
+            if (s == null) continue;
+            int i = s.hashCode() & mask;
+            while (names[i] != null) i = (i + 1) & mask;
+            names[i] = s;
+        }
+    }
+
+    private Token token(int kind, String image, int begin, int end) {
+        Token t = Token.newToken(kind, image);
+        t.beginOffset = begin;
+        t.endOffset = end;
+        t.lines = lines;
+        return t;
+    }
+
+    private TokenMgrError lexicalError(int offset, char c) {
+        boolean eof = offset >= length;
+        int at = eof ? length - 1 : offset;
+        return new TokenMgrError(eof, 0, lines.lineOf(at), lines.columnOf(at), "", c, TokenMgrError.LEXICAL_ERROR);
+    }
+}
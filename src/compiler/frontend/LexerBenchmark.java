@@ -0,0 +1,79 @@
+package compiler.frontend;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures lexing throughput in MB/s for the hand-written Lexer, the packed
+ * TokenBuffer and the generated MyParserTokenManager over the same generated source. Each lexer runs a few
+ * warm-up passes, and the best of the measured passes is reported. Then the chunked
+ * parallel TokenBuffer lex is measured on pools of 1, 2, 4, ... threads.
+ *
+ * Usage: java compiler.frontend.LexerBenchmark [source-megabytes] [max-threads]
+ */
+public class LexerBenchmark {
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    private static final String UNIT =
+        "class Account {\n"
+        + "    int balance;\n"
+        + "    Account(int initial) { balance = initial; }\n"
+        + "    // deposit adds to the balance\n"
+        + "    int deposit(int amount) {\n"
+        + "        if (amount > 0 && amount < 1000000) { balance = balance + amount; }\n"
+        + "        return balance;\n"
+        + "    }\n"
+        + "    /* interest is applied yearly */\n"
+        + "    void interest(int rate) { for (int i = 0; i < 12; i++) { balance = balance * rate / 100; } }\n"
+        + "}\n";
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        StringBuilder sb = new StringBuilder(megabytes << 20);
+        while (sb.length() < megabytes << 20) sb.append(UNIT);
+        String text = sb.toString();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        System.out.printf("source: %.1f MB%n", bytes.length / 1e6);
+        report("Lexer", bytes.length, () -> drain(new Lexer(new MappedCharStream(bytes))));
+        report("TokenBuffer", bytes.length, () -> TokenBuffer.lex(new MappedCharStream(bytes)).size() - 1);
+        report("MyParserTokenManager", bytes.length,
+            () -> drain(new MyParserTokenManager(new SimpleCharStream(new StringReader(text), 1, 1))));
+
+        MappedCharStream stream = new MappedCharStream(bytes);
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                report("TokenBuffer x" + threads, bytes.length, () -> TokenBuffer.lex(stream, pool).size() - 1);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private interface Run {
+        int run() throws Exception;
+    }
+
+    private static void report(String name, int size, Run run) throws Exception {
+        int tokens = 0;
+        for (int i = 0; i < WARMUP; i++) tokens = run.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-22s %8.1f MB/s %8.1f Mtokens/s (%d tokens)%n",
+            name, size / (best / 1e9) / 1e6, tokens / (best / 1e9) / 1e6, tokens);
+    }
+
+    private static int drain(MyParserTokenManager tm) {
+        int count = 0;
+        while (tm.getNextToken().kind != MyParserConstants.EOF) count++;
+        return count;
+    }
+}
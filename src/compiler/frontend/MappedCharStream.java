@@ -0,0 +1,282 @@
+package compiler.frontend;
+
+import compiler.infra.LineMap;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * CharStream over a UTF-8 source held entirely in memory, typically a memory-mapped file.
+ *
+ * Unlike SimpleCharStream there is no sliding window: the whole source is addressable,
+ * so nothing is copied while lexing and the buffer never grows. The bytes are never
+ * decoded as a whole. Every token of the language is ASCII, so the hand-written Lexer
+ * reads the bytes directly and only a string literal's image is decoded, when it is
+ * cut. Offsets throughout the front end therefore count bytes; a source that is not
+ * pure ASCII costs no more memory than its bytes.
+ *
+ * Reading a character only moves an offset. The generated token manager is handed
+ * one char per UTF-8 sequence, decoded as it is read, with offsets still at byte
+ * positions. The line starts are collected into a LineMap up front, and line and
+ * column numbers, which count characters, are looked up in it on request.
+ */
+public class MappedCharStream implements CharStream {
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final ByteBuffer bytes;
+    private final boolean ascii; // no byte has the high bit set
+    private final int length;
+
+    private final LineMap lines;
+
+    private int pos = -1;        // offset of the last byte read
+    private int tokenBegin = -1;
+
+    private int tabSize = 1;
+    private boolean trackLineColumn = true;
+
+    /**
+     * Wraps UTF-8 source bytes; the buffer is read from its position to its limit
+     * and must not be modified while the stream is in use.
+     */
+    public MappedCharStream(ByteBuffer source) {
+        this.lines = new LineMap();
+        this.bytes = source.slice();
+        this.ascii = isAscii(bytes);
+        this.length = bytes.remaining();
+        if (ascii) {
+            for (int i = 0; i < length; i++) lines.advance((char) bytes.get(i));
+        } else {
+            for (int i = 0; i < length; i++) lines.advanceByte(bytes.get(i));
+        }
+    }
+
+    public MappedCharStream(byte[] source) {
+        this(ByteBuffer.wrap(source));
+    }
+
+    private MappedCharStream(ByteBuffer bytes, boolean ascii, LineMap lines) {
+        this.bytes = bytes;
+        this.ascii = ascii;
+        this.length = bytes.remaining();
+        this.lines = lines;
+    }
+
+    /** Reads all of a UTF-8 stream. */
+    public static MappedCharStream read(InputStream in) throws IOException {
+        return new MappedCharStream(in.readAllBytes());
+    }
+
+    /**
+     * The source with bytes start..end-1 replaced by the UTF-8 encoding of replacement.
+     * The text is copied once; only the lines around the edit are scanned for line
+     * breaks, the rest of the line map is carried over.
+     */
+    public MappedCharStream edit(int start, int end, String replacement) {
+        if (start < 0 || start > end || end > length) {
+            throw new IndexOutOfBoundsException("edit " + start + ".." + end + " of " + length);
+        }
+        byte[] inserted = replacement.getBytes(StandardCharsets.UTF_8);
+        int newLength = length - (end - start) + inserted.length;
+        byte[] b = new byte[newLength];
+        bytes.get(0, b, 0, start);
+        System.arraycopy(inserted, 0, b, start, inserted.length);
+        bytes.get(end, b, start + inserted.length, length - end);
+
+        // rescan from the start of the line before the edit to just past it, and not
+        // between a '\r' and the '\n' that may follow it
+        int from = start == 0 ? 0 : lines.startOf(lines.lineOf(start - 1));
+        int to = Math.min(length, end + 1);
+        while (to < length && to > end && charAt(to - 1) == '\r') to++;
+        byte[] window = Arrays.copyOfRange(b, from, to - end + start + inserted.length);
+        boolean editedAscii = ascii && inserted.length == replacement.length();
+        return new MappedCharStream(ByteBuffer.wrap(b), editedAscii, lines.edit(from, to, window));
+    }
+
+    /** Maps the file read-only; the mapping stays valid after the channel is closed. */
+    public static MappedCharStream open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedCharStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** Checks eight bytes at a time for any byte with the high bit set. */
+    private static boolean isAscii(ByteBuffer bytes) {
+        ByteBuffer b = bytes.duplicate().order(ByteOrder.nativeOrder());
+        int i = b.position(), end = b.limit();
+        for (; i + 8 <= end; i += 8) {
+            if ((b.getLong(i) & HIGH_BITS) != 0) return false;
+        }
+        for (; i < end; i++) {
+            if (b.get(i) < 0) return false;
+        }
+        return true;
+    }
+
+    /** The byte at offset i; bytes of multi-byte characters come out as 0x80..0xFF. */
+    char charAt(int i) {
+        return (char) (bytes.get(i) & 0xFF);
+    }
+
+    /** The character whose UTF-8 sequence starts at offset i; U+FFFD if it is malformed. */
+    char decodeAt(int i) {
+        if (bytes.get(i) >= 0) return (char) bytes.get(i);
+        return text(i, sequenceEnd(i) - i + 1).charAt(0);
+    }
+
+    /** Offset of the last byte of the UTF-8 sequence that starts at offset i. */
+    private int sequenceEnd(int i) {
+        int lead = bytes.get(i) & 0xFF;
+        int n = lead >= 0xF0 ? 3 : lead >= 0xE0 ? 2 : lead >= 0xC0 ? 1 : 0;
+        int end = i;
+        while (n-- > 0 && end + 1 < length && isContinuation(end + 1)) end++;
+        return end;
+    }
+
+    private boolean isContinuation(int i) {
+        return (bytes.get(i) & 0xC0) == 0x80;
+    }
+
+    /** Backing array of a heap source, or null; byte i is at index i + arrayOffset(). */
+    byte[] byteArray() {
+        return bytes.hasArray() ? bytes.array() : null;
+    }
+
+    /** The source bytes, heap or mapped. */
+    ByteBuffer byteBuffer() {
+        return bytes.duplicate();
+    }
+
+    int arrayOffset() {
+        return bytes.hasArray() ? bytes.arrayOffset() : 0;
+    }
+
+    /** Number of bytes in the source. */
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        if (pos + 1 >= length) {
+            // the token manager treats IOException as end of input
+            throw new EOFException();
+        }
+        return next();
+    }
+
+    @Override
+    public char BeginToken() throws IOException {
+        if (pos + 1 >= length) {
+            // the EOF token begins at the last character, as in SimpleCharStream
+            tokenBegin = pos;
+            throw new EOFException();
+        }
+        tokenBegin = pos + 1;
+        return next();
+    }
+
+    /** Reads the character after pos, leaving pos on its last byte. */
+    private char next() {
+        byte b = bytes.get(++pos);
+        if (b >= 0) return (char) b;
+        char c = decodeAt(pos);
+        pos = sequenceEnd(pos);
+        return c;
+    }
+
+    @Override
+    public void backup(int amount) {
+        for (int i = 0; i < amount; i++) {
+            // back over the continuation bytes of the last character read, then its lead byte
+            while (pos > 0 && !ascii && isContinuation(pos)) pos--;
+            pos--;
+        }
+    }
+
+    @Override
+    public String GetImage() {
+        return text(tokenBegin, pos - tokenBegin + 1);
+    }
+
+    /** The len bytes starting at offset start, decoded as a new String. */
+    String text(int start, int len) {
+        // a pure ASCII source is decoded byte for byte, the cheapest charset there is
+        Charset charset = ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8;
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset() + start, len, charset);
+        }
+        byte[] b = new byte[len];
+        bytes.get(start, b);
+        return new String(b, charset);
+    }
+
+    @Override
+    public char[] GetSuffix(int len) {
+        int end = pos, start = pos + 1;
+        for (int i = 0; i < len && start > 0; i++) {
+            start--;
+            while (start > 0 && !ascii && isContinuation(start)) start--;
+        }
+        String suffix = text(start, end - start + 1);
+        char[] ret = new char[len];
+        suffix.getChars(Math.max(0, suffix.length() - len), suffix.length(), ret, Math.max(0, len - suffix.length()));
+        return ret;
+    }
+
+    @Override
+    @Deprecated
+    public int getColumn() { return lines.columnOf(pos); }
+
+    @Override
+    @Deprecated
+    public int getLine() { return lines.lineOf(pos); }
+
+    @Override
+    public int getEndColumn() { return lines.columnOf(pos); }
+
+    @Override
+    public int getEndLine() { return lines.lineOf(pos); }
+
+    @Override
+    public int getBeginColumn() { return lines.columnOf(tokenBegin); }
+
+    @Override
+    public int getBeginLine() { return lines.lineOf(tokenBegin); }
+
+    @Override
+    public int getBeginOffset() { return tokenBegin; }
+
+    @Override
+    public int getEndOffset() { return pos; }
+
+    @Override
+    public LineMap getLineMap() { return lines; }
+
+    @Override
+    public void Done() {
+        // nothing to release; a mapping is unmapped when it becomes unreachable
+    }
+
+    /** Columns always count a tab as one character; the size is only recorded. */
+    @Override
+    public void setTabSize(int i) { tabSize = i; }
+
+    @Override
+    public int getTabSize() { return tabSize; }
+
+    @Override
+    public boolean getTrackLineColumn() { return trackLineColumn; }
+
+    @Override
+    public void setTrackLineColumn(boolean trackLineColumn) { this.trackLineColumn = trackLineColumn; }
+}
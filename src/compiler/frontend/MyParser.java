@@ -4,9 +4,32 @@ package compiler.frontend;
 
 import java.util.*;
 import compiler.frontend.ast.*;
-import compiler.infra.SourceLocation;
+import compiler.infra.NameTable;
+import compiler.infra.FileTable;
+import compiler.infra.LineMap;
 
 public class MyParser implements MyParserConstants {
+    /**
+     * Parse from a UTF-8 byte stream. The stream is read whole and its bytes are lexed
+     * by the hand-written Lexer, with no decoding to chars except string literals.
+     */
+    public MyParser(java.io.InputStream stream) {
+        this(new Lexer(readAll(stream)));
+    }
+
+    private static MappedCharStream readAll(java.io.InputStream stream) {
+        try {
+            return MappedCharStream.read(stream);
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+
+    /** Parse from a character stream, buffered through a SimpleCharStream. */
+    public MyParser(java.io.Reader stream) {
+        this(new SimpleCharStream(stream, 1, 1));
+    }
+
     public static void main(String[] args) {
         try {
             MyParser parser = new MyParser(System.in);
@@ -21,15 +44,102 @@ public class MyParser implements MyParserConstants {
         }
     }
 
+    /** Binding strength of each binary operator token kind; 0 for everything else. */
+    private static final int[] PRECEDENCE = new int[tokenImage.length];
+    static {
+        PRECEDENCE[OR] = 1;
+        PRECEDENCE[AND] = 2;
+        PRECEDENCE[EQ] = PRECEDENCE[NEQ] = 3;
+        PRECEDENCE[LT] = PRECEDENCE[GT] = 4;
+        PRECEDENCE[PLUS] = PRECEDENCE[MINUS] = 5;
+        PRECEDENCE[MULT] = PRECEDENCE[DIV] = 6;
+    }
+
+    private static int precedence(int kind) {
+        return PRECEDENCE[kind];
+    }
+
+    // the tokens of one parse share a line map, so its file id is looked up once
+    private LineMap fileLines;
+    private int file = -1;
+
     private ASTNode setLoc(ASTNode n, Token t) {
         if (n != null && t != null) {
-            n.setSourceLocation(new SourceLocation(null, t.beginLine, t.beginColumn));
+            if (file < 0 || t.lines != fileLines) {
+                file = FileTable.idOf(t.lines);
+                fileLines = t.lines;
+            }
+            n.setLocation(FileTable.location(file, t.beginOffset));
         }
         return n;
     }
 
+    // A rule's children are pushed above a mark on one scratch stack and taken off as
+    // a list of exactly their number when the rule ends, so no list is grown in place.
+    private Object[] pending = new Object[64];
+    private int pendingSize;
+    // with an arena, those lists are ranges of its chunks rather than ArrayLists
+    private AstArena arena;
+    private Object[] chunk;
+    private int chunkUsed;
+
+    /**
+     * Take child lists from arena's chunks rather than allocating an ArrayList for each.
+     * They cannot be resized, except the root's, which stays an ArrayList. Null turns it off.
+     */
+    public void setArena(AstArena arena) {
+        this.arena = arena;
+        this.chunk = null;
+    }
+
+    private int mark() {
+        return pendingSize;
+    }
+
+    private void push(Object child) {
+        if (pendingSize == pending.length) pending = Arrays.copyOf(pending, 2 * pendingSize);
+        pending[pendingSize++] = child;
+    }
+
+    /** The children pushed since mark that are of kind, which stay pushed until drop(mark). */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> children(int mark, Class<T> kind) {
+        int n = 0;
+        for (int i = mark; i < pendingSize; i++) if (kind.isInstance(pending[i])) n++;
+        if (arena == null) {
+            List<T> list = new ArrayList<>(n);
+            for (int i = mark; i < pendingSize; i++) if (kind.isInstance(pending[i])) list.add((T) pending[i]);
+            return list;
+        }
+        if (n == 0) return Collections.emptyList();
+        if (chunk == null || chunk.length - chunkUsed < n) {
+            chunk = arena.chunk(n);
+            chunkUsed = 0;
+        }
+        int at = chunkUsed;
+        for (int i = mark; i < pendingSize; i++) if (kind.isInstance(pending[i])) chunk[chunkUsed++] = pending[i];
+        return AstArena.list(chunk, at, n);
+    }
+
+    private void drop(int mark) {
+        Arrays.fill(pending, mark, pendingSize, null);
+        pendingSize = mark;
+    }
+
+    /** All children pushed since mark, popped off the stack. */
+    private <T> List<T> take(int mark, Class<T> kind) {
+        List<T> list = children(mark, kind);
+        drop(mark);
+        return list;
+    }
+
+    /** An empty child list, for a call or declaration without arguments or parameters. */
+    private <T> List<T> none() {
+        return arena == null ? new ArrayList<>() : Collections.emptyList();
+    }
+
 // ---------- Program ----------
-  final public ASTNode Program() throws ParseException {List<ASTNode> stmts = new ArrayList<>();
+  final public ASTNode Program() throws ParseException {int mark = mark();
     ASTNode s;
     label_1:
     while (true) {
@@ -64,52 +174,55 @@ public class MyParser implements MyParserConstants {
         jj_la1[0] = jj_gen;
         break label_1;
       }
-      if (jj_2_1(2147483647)) {
+      switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
+      case CLASS:{
         s = ClassDecl();
-stmts.add(s);
-      } else {
-        switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
-        case IF:
-        case WHILE:
-        case FOR:
-        case VOID:
-        case RETURN:
-        case INT:
-        case TRUE:
-        case FALSE:
-        case NULL:
-        case NEW:
-        case PUBLIC:
-        case STATIC:
-        case THIS:
-        case INT_LITERAL:
-        case STRING_LITERAL:
-        case PLUS:
-        case MINUS:
-        case NOT:
-        case LPAREN:
-        case LBRACE:
-        case SEMI:
-        case IDENTIFIER:{
-          s = Statement();
-stmts.add(s);
-          break;
-          }
-        default:
-          jj_la1[1] = jj_gen;
-          jj_consume_token(-1);
-          throw new ParseException();
+push(s);
+        break;
+        }
+      case IF:
+      case WHILE:
+      case FOR:
+      case VOID:
+      case RETURN:
+      case INT:
+      case TRUE:
+      case FALSE:
+      case NULL:
+      case NEW:
+      case PUBLIC:
+      case STATIC:
+      case THIS:
+      case INT_LITERAL:
+      case STRING_LITERAL:
+      case PLUS:
+      case MINUS:
+      case NOT:
+      case LPAREN:
+      case LBRACE:
+      case SEMI:
+      case IDENTIFIER:{
+        s = Statement();
+push(s);
+        break;
         }
+      default:
+        jj_la1[1] = jj_gen;
+        jj_consume_token(-1);
+        throw new ParseException();
       }
     }
     jj_consume_token(0);
-{if ("" != null) return new BlockNode(stmts);}
+// incremental parsing splices items into the root's list, so it stays an ArrayList
+        List<ASTNode> stmts = new ArrayList<>(pendingSize - mark);
+        for (int i = mark; i < pendingSize; i++) stmts.add((ASTNode) pending[i]);
+        drop(mark);
+        {if ("" != null) return new BlockNode(stmts);}
     throw new Error("Missing return statement in function");
 }
 
   final public ClassDeclNode ClassDecl() throws ParseException {Token t;
-    List<VarDeclNode> fields = new ArrayList<>();
-    List<FunctionDeclNode> methods = new ArrayList<>();
+    int mark = mark();
     ASTNode member;
     jj_consume_token(CLASS);
     t = jj_consume_token(IDENTIFIER);
@@ -129,12 +242,12 @@ stmts.add(s);
         jj_la1[2] = jj_gen;
         break label_2;
       }
-      if (jj_2_2(2147483647)) {
+      if (jj_2_1(2147483647)) {
         member = VarDecl();
-fields.add((VarDeclNode)member);
-      } else if (jj_2_3(2147483647)) {
+push(member);
+      } else if (jj_2_2(2147483647)) {
         member = ConstructorDecl();
-methods.add((FunctionDeclNode)member);
+push(member);
       } else {
         switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
         case VOID:
@@ -143,7 +256,7 @@ methods.add((FunctionDeclNode)member);
         case STATIC:
         case IDENTIFIER:{
           member = FunctionDecl();
-methods.add((FunctionDeclNode)member);
+push(member);
           break;
           }
         default:
@@ -154,12 +267,15 @@ methods.add((FunctionDeclNode)member);
       }
     }
     jj_consume_token(RBRACE);
-ClassDeclNode n = new ClassDeclNode(t.image, fields, methods);
+// fields and methods come interleaved, so each list picks its kind from the same members
+        List<VarDeclNode> fields = children(mark, VarDeclNode.class);
+        List<FunctionDeclNode> methods = take(mark, FunctionDeclNode.class);
+        ClassDeclNode n = new ClassDeclNode(t.image, fields, methods);
         {if ("" != null) return (ClassDeclNode) setLoc(n, t);}
     throw new Error("Missing return statement in function");
 }
 
-  final public FunctionDeclNode ConstructorDecl() throws ParseException {Token id; List<VarDeclNode> params = new ArrayList<>(); BlockNode body;
+  final public FunctionDeclNode ConstructorDecl() throws ParseException {Token id; List<VarDeclNode> params = none(); BlockNode body;
     label_3:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
@@ -208,10 +324,10 @@ FunctionDeclNode n = new FunctionDeclNode(id.image, id.image, params, body);
 
 // ---------- Statements ----------
   final public ASTNode Statement() throws ParseException {ASTNode n;
-    if (jj_2_4(2147483647)) {
+    if (jj_2_3(2147483647)) {
       n = VarDecl();
 {if ("" != null) return n;}
-    } else if (jj_2_5(2147483647)) {
+    } else if (jj_2_4(2147483647)) {
       n = Assignment();
 {if ("" != null) return n;}
     } else {
@@ -238,7 +354,7 @@ FunctionDeclNode n = new FunctionDeclNode(id.image, id.image, params, body);
         }
       default:
         jj_la1[7] = jj_gen;
-        if (jj_2_6(2147483647)) {
+        if (jj_2_5(2147483647)) {
           n = FunctionDecl();
 {if ("" != null) return n;}
         } else {
@@ -300,7 +416,7 @@ if (rhs != null) {
             // setLoc(n, ???)
             // Let's use e's location if available? Or we don't track tokens here easily.
             // Since e is the start, we can copy its location.
-            if (e.getSourceLocation() != null) n.setSourceLocation(e.getSourceLocation());
+            n.setLocation(e.getLocation());
             {if ("" != null) return n;}
         }
         {if ("" != null) return e;}
@@ -393,72 +509,31 @@ IdentifierNode target = new IdentifierNode(id.image);
 
 // ---------- Expressions ----------
   final public ExpressionNode Expression() throws ParseException {ExpressionNode n;
-    n = LogicalOr();
+    n = BinaryExpression(1);
 {if ("" != null) return n;}
     throw new Error("Missing return statement in function");
 }
 
-  final public ExpressionNode LogicalOr() throws ParseException {ExpressionNode left, right; Token op;
-    left = LogicalAnd();
+// Precedence climbing: one call per operator level that actually occurs, instead of
+// a production per level. Operators of equal precedence associate to the left.
+  final public ExpressionNode BinaryExpression(int minPrecedence) throws ParseException {ExpressionNode left, right; Token op;
+    left = UnaryExpression();
     label_4:
     while (true) {
-      switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
-      case OR:{
+      if (precedence(getToken(1).kind) >= minPrecedence) {
         ;
-        break;
-        }
-      default:
-        jj_la1[13] = jj_gen;
+      } else {
         break label_4;
       }
-      op = jj_consume_token(OR);
-      right = LogicalAnd();
-BinaryOpNode n = new BinaryOpNode(op.image, left, right);
-          setLoc(n, op); // Use operator location for binary op
-          left = n;
-    }
-{if ("" != null) return left;}
-    throw new Error("Missing return statement in function");
-}
-
-  final public ExpressionNode LogicalAnd() throws ParseException {ExpressionNode left, right; Token op;
-    left = Equality();
-    label_5:
-    while (true) {
       switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
-      case AND:{
-        ;
+      case OR:{
+        op = jj_consume_token(OR);
         break;
         }
-      default:
-        jj_la1[14] = jj_gen;
-        break label_5;
-      }
-      op = jj_consume_token(AND);
-      right = Equality();
-BinaryOpNode n = new BinaryOpNode(op.image, left, right);
-          setLoc(n, op);
-          left = n;
-    }
-{if ("" != null) return left;}
-    throw new Error("Missing return statement in function");
-}
-
-  final public ExpressionNode Equality() throws ParseException {ExpressionNode left, right; Token op;
-    left = Relational();
-    label_6:
-    while (true) {
-      switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
-      case EQ:
-      case NEQ:{
-        ;
+      case AND:{
+        op = jj_consume_token(AND);
         break;
         }
-      default:
-        jj_la1[15] = jj_gen;
-        break label_6;
-      }
-      switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
       case EQ:{
         op = jj_consume_token(EQ);
         break;
@@ -467,35 +542,6 @@ BinaryOpNode n = new BinaryOpNode(op.image, left, right);
         op = jj_consume_token(NEQ);
         break;
         }
-      default:
-        jj_la1[16] = jj_gen;
-        jj_consume_token(-1);
-        throw new ParseException();
-      }
-      right = Relational();
-BinaryOpNode n = new BinaryOpNode(op.image, left, right);
-          setLoc(n, op);
-          left = n;
-    }
-{if ("" != null) return left;}
-    throw new Error("Missing return statement in function");
-}
-
-  final public ExpressionNode Relational() throws ParseException {ExpressionNode left, right; Token op;
-    left = Additive();
-    label_7:
-    while (true) {
-      switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
-      case LT:
-      case GT:{
-        ;
-        break;
-        }
-      default:
-        jj_la1[17] = jj_gen;
-        break label_7;
-      }
-      switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
       case LT:{
         op = jj_consume_token(LT);
         break;
@@ -504,35 +550,6 @@ BinaryOpNode n = new BinaryOpNode(op.image, left, right);
         op = jj_consume_token(GT);
         break;
         }
-      default:
-        jj_la1[18] = jj_gen;
-        jj_consume_token(-1);
-        throw new ParseException();
-      }
-      right = Additive();
-BinaryOpNode n = new BinaryOpNode(op.image, left, right);
-          setLoc(n, op);
-          left = n;
-    }
-{if ("" != null) return left;}
-    throw new Error("Missing return statement in function");
-}
-
-  final public ExpressionNode Additive() throws ParseException {ExpressionNode left, right; Token op;
-    left = Term();
-    label_8:
-    while (true) {
-      switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
-      case PLUS:
-      case MINUS:{
-        ;
-        break;
-        }
-      default:
-        jj_la1[19] = jj_gen;
-        break label_8;
-      }
-      switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
       case PLUS:{
         op = jj_consume_token(PLUS);
         break;
@@ -541,35 +558,6 @@ BinaryOpNode n = new BinaryOpNode(op.image, left, right);
         op = jj_consume_token(MINUS);
         break;
         }
-      default:
-        jj_la1[20] = jj_gen;
-        jj_consume_token(-1);
-        throw new ParseException();
-      }
-      right = Term();
-BinaryOpNode n = new BinaryOpNode(op.image, left, right);
-          setLoc(n, op);
-          left = n;
-    }
-{if ("" != null) return left;}
-    throw new Error("Missing return statement in function");
-}
-
-  final public ExpressionNode Term() throws ParseException {ExpressionNode left, right; Token op;
-    left = UnaryExpression();
-    label_9:
-    while (true) {
-      switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
-      case MULT:
-      case DIV:{
-        ;
-        break;
-        }
-      default:
-        jj_la1[21] = jj_gen;
-        break label_9;
-      }
-      switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
       case MULT:{
         op = jj_consume_token(MULT);
         break;
@@ -579,13 +567,13 @@ BinaryOpNode n = new BinaryOpNode(op.image, left, right);
         break;
         }
       default:
-        jj_la1[22] = jj_gen;
+        jj_la1[13] = jj_gen;
         jj_consume_token(-1);
         throw new ParseException();
       }
-      right = UnaryExpression();
+      right = BinaryExpression(precedence(op.kind) + 1);
 BinaryOpNode n = new BinaryOpNode(op.image, left, right);
-          setLoc(n, op);
+          setLoc(n, op); // Use operator location for binary op
           left = n;
     }
 {if ("" != null) return left;}
@@ -611,7 +599,7 @@ BinaryOpNode n = new BinaryOpNode(op.image, left, right);
         break;
         }
       default:
-        jj_la1[23] = jj_gen;
+        jj_la1[14] = jj_gen;
         jj_consume_token(-1);
         throw new ParseException();
       }
@@ -634,7 +622,7 @@ UnaryOpNode n = new UnaryOpNode(op.image, e);
       break;
       }
     default:
-      jj_la1[24] = jj_gen;
+      jj_la1[15] = jj_gen;
       jj_consume_token(-1);
       throw new ParseException();
     }
@@ -705,27 +693,27 @@ n = new IdentifierNode("this"); setLoc(n, t);
           break;
           }
         default:
-          jj_la1[25] = jj_gen;
+          jj_la1[16] = jj_gen;
           ;
         }
         jj_consume_token(RPAREN);
-n = new MethodCallNode(null, t.image, args == null ? new ArrayList<>() : args);
+n = new MethodCallNode(null, t.image, args == null ? none() : args);
                   args = null;
                   setLoc(n, t);
         break;
         }
       default:
-        jj_la1[26] = jj_gen;
+        jj_la1[17] = jj_gen;
 n = new IdentifierNode(t.image); setLoc(n, t);
       }
       break;
       }
     default:
-      jj_la1[27] = jj_gen;
+      jj_la1[18] = jj_gen;
       jj_consume_token(-1);
       throw new ParseException();
     }
-    label_10:
+    label_5:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
       case INCR:
@@ -735,10 +723,10 @@ n = new IdentifierNode(t.image); setLoc(n, t);
         break;
         }
       default:
-        jj_la1[28] = jj_gen;
-        break label_10;
+        jj_la1[19] = jj_gen;
+        break label_5;
       }
-      if (jj_2_7(2147483647)) {
+      if (jj_2_6(2147483647)) {
         jj_consume_token(DOT);
         t = jj_consume_token(IDENTIFIER);
         jj_consume_token(LPAREN);
@@ -759,11 +747,11 @@ n = new IdentifierNode(t.image); setLoc(n, t);
           break;
           }
         default:
-          jj_la1[29] = jj_gen;
+          jj_la1[20] = jj_gen;
           ;
         }
         jj_consume_token(RPAREN);
-n = new MethodCallNode(n, t.image, args == null ? new ArrayList<>() : args);
+n = new MethodCallNode(n, t.image, args == null ? none() : args);
              args = null;
              setLoc(n, t);
       } else {
@@ -777,7 +765,7 @@ n = new MemberAccessNode(n, t.image);
           }
         case INCR:{
           jj_consume_token(INCR);
-n = new UnaryOpNode("post++", n); if(n.getSourceLocation()==null && n instanceof UnaryOpNode) ((UnaryOpNode)n).expr.getSourceLocation(); /* approx */
+n = new UnaryOpNode("post++", n); if(n.getLocation()==FileTable.NO_LOCATION && n instanceof UnaryOpNode) ((UnaryOpNode)n).expr.getLocation(); /* approx */
           break;
           }
         case DECR:{
@@ -786,7 +774,7 @@ n = new UnaryOpNode("post--", n);
           break;
           }
         default:
-          jj_la1[30] = jj_gen;
+          jj_la1[21] = jj_gen;
           jj_consume_token(-1);
           throw new ParseException();
         }
@@ -796,7 +784,7 @@ n = new UnaryOpNode("post--", n);
     throw new Error("Missing return statement in function");
 }
 
-  final public ExpressionNode NewExpr() throws ParseException {Token t; List<ExpressionNode> args = new ArrayList<>();
+  final public ExpressionNode NewExpr() throws ParseException {Token t; List<ExpressionNode> args = none();
     Token start;
     start = jj_consume_token(NEW);
     t = jj_consume_token(IDENTIFIER);
@@ -818,7 +806,7 @@ n = new UnaryOpNode("post--", n);
       break;
       }
     default:
-      jj_la1[31] = jj_gen;
+      jj_la1[22] = jj_gen;
       ;
     }
     jj_consume_token(RPAREN);
@@ -827,11 +815,11 @@ NewExprNode n = new NewExprNode(t.image, args);
     throw new Error("Missing return statement in function");
 }
 
-  final public List<ExpressionNode> ArgList() throws ParseException {List<ExpressionNode> args = new ArrayList<>();
+  final public List<ExpressionNode> ArgList() throws ParseException {int mark = mark();
     ExpressionNode e;
     e = Expression();
-args.add(e);
-    label_11:
+push(e);
+    label_6:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
       case COMMA:{
@@ -839,14 +827,14 @@ args.add(e);
         break;
         }
       default:
-        jj_la1[32] = jj_gen;
-        break label_11;
+        jj_la1[23] = jj_gen;
+        break label_6;
       }
       jj_consume_token(COMMA);
       e = Expression();
-args.add(e);
+push(e);
     }
-{if ("" != null) return args;}
+{if ("" != null) return take(mark, ExpressionNode.class);}
     throw new Error("Missing return statement in function");
 }
 
@@ -871,14 +859,14 @@ args.add(e);
         break;
         }
       default:
-        jj_la1[33] = jj_gen;
+        jj_la1[24] = jj_gen;
         jj_consume_token(-1);
         throw new ParseException();
       }
       break;
       }
     default:
-      jj_la1[34] = jj_gen;
+      jj_la1[25] = jj_gen;
       ;
     }
 IfNode n = new IfNode(cond, thenBlock, elseBlock);
@@ -910,7 +898,7 @@ WhileNode n = new WhileNode(cond, body);
       break;
       }
     default:
-      jj_la1[35] = jj_gen;
+      jj_la1[26] = jj_gen;
       jj_consume_token(-1);
       throw new ParseException();
     }
@@ -922,7 +910,7 @@ WhileNode n = new WhileNode(cond, body);
       break;
       }
     default:
-      jj_la1[36] = jj_gen;
+      jj_la1[27] = jj_gen;
       ;
     }
 VarDeclNode n = new VarDeclNode(t.image, id.image, expr);
@@ -948,7 +936,7 @@ IdentifierNode target = new IdentifierNode(id.image);
     switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
     case INT:
     case IDENTIFIER:{
-      if (jj_2_8(2147483647)) {
+      if (jj_2_7(2147483647)) {
         vardeclinit = VarDeclForLoop();
       } else {
         switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
@@ -957,7 +945,7 @@ IdentifierNode target = new IdentifierNode(id.image);
           break;
           }
         default:
-          jj_la1[37] = jj_gen;
+          jj_la1[28] = jj_gen;
           jj_consume_token(-1);
           throw new ParseException();
         }
@@ -965,7 +953,7 @@ IdentifierNode target = new IdentifierNode(id.image);
       break;
       }
     default:
-      jj_la1[38] = jj_gen;
+      jj_la1[29] = jj_gen;
       ;
     }
     jj_consume_token(SEMI);
@@ -986,7 +974,7 @@ IdentifierNode target = new IdentifierNode(id.image);
       break;
       }
     default:
-      jj_la1[39] = jj_gen;
+      jj_la1[30] = jj_gen;
       ;
     }
     jj_consume_token(SEMI);
@@ -1007,7 +995,7 @@ IdentifierNode target = new IdentifierNode(id.image);
       break;
       }
     default:
-      jj_la1[40] = jj_gen;
+      jj_la1[31] = jj_gen;
       ;
     }
     jj_consume_token(RPAREN);
@@ -1028,10 +1016,10 @@ ForNode returnMe =null;
     throw new Error("Missing return statement in function");
 }
 
-  final public BlockNode Block() throws ParseException {List<ASTNode> stmts = new ArrayList<>(); ASTNode s;
+  final public BlockNode Block() throws ParseException {int mark = mark(); ASTNode s;
     Token t;
     t = jj_consume_token(LBRACE);
-    label_12:
+    label_7:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
       case IF:
@@ -1060,20 +1048,20 @@ ForNode returnMe =null;
         break;
         }
       default:
-        jj_la1[41] = jj_gen;
-        break label_12;
+        jj_la1[32] = jj_gen;
+        break label_7;
       }
       s = Statement();
-stmts.add(s);
+push(s);
     }
     jj_consume_token(RBRACE);
-BlockNode n = new BlockNode(stmts);
+BlockNode n = new BlockNode(take(mark, ASTNode.class));
         {if ("" != null) return (BlockNode) setLoc(n, t);}
     throw new Error("Missing return statement in function");
 }
 
-  final public ASTNode FunctionDecl() throws ParseException {Token t; Token id; List<VarDeclNode> params = new ArrayList<>(); BlockNode body;
-    label_13:
+  final public ASTNode FunctionDecl() throws ParseException {Token t; Token id; List<VarDeclNode> params = none(); BlockNode body;
+    label_8:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
       case PUBLIC:
@@ -1082,8 +1070,8 @@ BlockNode n = new BlockNode(stmts);
         break;
         }
       default:
-        jj_la1[42] = jj_gen;
-        break label_13;
+        jj_la1[33] = jj_gen;
+        break label_8;
       }
       switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
       case PUBLIC:{
@@ -1095,7 +1083,7 @@ BlockNode n = new BlockNode(stmts);
         break;
         }
       default:
-        jj_la1[43] = jj_gen;
+        jj_la1[34] = jj_gen;
         jj_consume_token(-1);
         throw new ParseException();
       }
@@ -1114,7 +1102,7 @@ BlockNode n = new BlockNode(stmts);
       break;
       }
     default:
-      jj_la1[44] = jj_gen;
+      jj_la1[35] = jj_gen;
       jj_consume_token(-1);
       throw new ParseException();
     }
@@ -1127,7 +1115,7 @@ BlockNode n = new BlockNode(stmts);
       break;
       }
     default:
-      jj_la1[45] = jj_gen;
+      jj_la1[36] = jj_gen;
       ;
     }
     jj_consume_token(RPAREN);
@@ -1137,7 +1125,7 @@ FunctionDeclNode n = new FunctionDeclNode(t.image, id.image, params, body);
     throw new Error("Missing return statement in function");
 }
 
-  final public List<VarDeclNode> ParamList() throws ParseException {List<VarDeclNode> params = new ArrayList<>();
+  final public List<VarDeclNode> ParamList() throws ParseException {int mark = mark();
     Token t, id;
     VarDeclNode p;
     switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
@@ -1150,15 +1138,15 @@ FunctionDeclNode n = new FunctionDeclNode(t.image, id.image, params, body);
       break;
       }
     default:
-      jj_la1[46] = jj_gen;
+      jj_la1[37] = jj_gen;
       jj_consume_token(-1);
       throw new ParseException();
     }
     id = jj_consume_token(IDENTIFIER);
 p = new VarDeclNode(t.image, id.image, null);
         setLoc(p, t);
-        params.add(p);
-    label_14:
+        push(p);
+    label_9:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
       case COMMA:{
@@ -1166,8 +1154,8 @@ p = new VarDeclNode(t.image, id.image, null);
         break;
         }
       default:
-        jj_la1[47] = jj_gen;
-        break label_14;
+        jj_la1[38] = jj_gen;
+        break label_9;
       }
       jj_consume_token(COMMA);
       switch ((jj_ntk==-1)?jj_ntk_f():jj_ntk) {
@@ -1180,16 +1168,16 @@ p = new VarDeclNode(t.image, id.image, null);
         break;
         }
       default:
-        jj_la1[48] = jj_gen;
+        jj_la1[39] = jj_gen;
         jj_consume_token(-1);
         throw new ParseException();
       }
       id = jj_consume_token(IDENTIFIER);
-VarDeclNode p = new VarDeclNode(t.image, id.image, null);
+p = new VarDeclNode(t.image, id.image, null);
         setLoc(p, t);
-        params.add(p);
+        push(p);
     }
-{if ("" != null) return params;}
+{if ("" != null) return take(mark, VarDeclNode.class);}
     throw new Error("Missing return statement in function");
 }
 
@@ -1249,669 +1237,74 @@ VarDeclNode p = new VarDeclNode(t.image, id.image, null);
     finally { jj_save(6, xla); }
   }
 
-  private boolean jj_2_8(int xla)
+  private boolean jj_3_2()
  {
-    jj_la = xla; jj_lastpos = jj_scanpos = token;
-    try { return (!jj_3_8()); }
-    catch(LookaheadSuccess ls) { return true; }
-    finally { jj_save(7, xla); }
+    Token xsp;
+    while (true) {
+      xsp = jj_scanpos;
+      if (jj_3R_null_254_22_10()) { jj_scanpos = xsp; break; }
+    }
+    if (jj_scan_token(IDENTIFIER)) return true;
+    if (jj_scan_token(LPAREN)) return true;
+    return false;
   }
 
-  private boolean jj_3R_Factor_367_11_87()
+  private boolean jj_3R_null_296_20_11()
  {
-    if (jj_scan_token(IDENTIFIER)) return true;
     Token xsp;
     xsp = jj_scanpos;
-    if (jj_3R_Factor_369_15_90()) {
+    if (jj_scan_token(19)) {
     jj_scanpos = xsp;
-    if (jj_3R_Factor_376_15_91()) return true;
+    if (jj_scan_token(20)) return true;
     }
     return false;
   }
 
-  private boolean jj_3R_Factor_366_11_86()
+  private boolean jj_3_1()
  {
-    if (jj_scan_token(LPAREN)) return true;
-    if (jj_3R_Expression_243_55_31()) return true;
-    if (jj_scan_token(RPAREN)) return true;
+    Token xsp;
+    xsp = jj_scanpos;
+    if (jj_scan_token(13)) {
+    jj_scanpos = xsp;
+    if (jj_scan_token(45)) return true;
+    }
+    if (jj_scan_token(IDENTIFIER)) return true;
+    xsp = jj_scanpos;
+    if (jj_scan_token(43)) {
+    jj_scanpos = xsp;
+    if (jj_scan_token(25)) return true;
+    }
     return false;
   }
 
-  private boolean jj_3R_Factor_365_11_85()
- {
-    if (jj_3R_NewExpr_406_5_89()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Factor_364_11_84()
- {
-    if (jj_scan_token(THIS)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Factor_363_11_83()
- {
-    if (jj_scan_token(NULL)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Factor_362_11_82()
- {
-    if (jj_scan_token(FALSE)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Factor_361_11_81()
- {
-    if (jj_scan_token(TRUE)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Factor_360_11_80()
- {
-    if (jj_scan_token(STRING_LITERAL)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ExprOrAssignStmt_173_7_62()
- {
-    if (jj_scan_token(ASSIGN)) return true;
-    if (jj_3R_Expression_243_55_31()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Factor_359_11_79()
- {
-    if (jj_scan_token(INT_LITERAL)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ParamList_554_7_33()
- {
-    if (jj_scan_token(COMMA)) return true;
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_scan_token(13)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(45)) return true;
-    }
-    if (jj_scan_token(IDENTIFIER)) return true;
-    return false;
-  }
-
-  private boolean jj_3_6()
- {
-    if (jj_3R_FunctionDecl_531_5_17()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ExprOrAssignStmt_172_5_54()
- {
-    if (jj_3R_Expression_243_55_31()) return true;
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_ExprOrAssignStmt_173_7_62()) jj_scanpos = xsp;
-    if (jj_scan_token(SEMI)) return true;
-    return false;
-  }
-
-  private boolean jj_3_5()
- {
-    if (jj_scan_token(IDENTIFIER)) return true;
-    if (jj_scan_token(ASSIGN)) return true;
-    return false;
-  }
-
-  private boolean jj_3_4()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_scan_token(13)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(45)) return true;
-    }
-    if (jj_scan_token(IDENTIFIER)) return true;
-    xsp = jj_scanpos;
-    if (jj_scan_token(43)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(25)) return true;
-    }
-    return false;
-  }
-
-  private boolean jj_3R_Factor_358_5_78()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_Factor_359_11_79()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Factor_360_11_80()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Factor_361_11_81()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Factor_362_11_82()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Factor_363_11_83()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Factor_364_11_84()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Factor_365_11_85()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Factor_366_11_86()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Factor_367_11_87()) return true;
-    }
-    }
-    }
-    }
-    }
-    }
-    }
-    }
-    while (true) {
-      xsp = jj_scanpos;
-      if (jj_3R_Factor_380_10_88()) { jj_scanpos = xsp; break; }
-    }
-    return false;
-  }
-
-  private boolean jj_3R_Statement_164_7_46()
- {
-    if (jj_scan_token(SEMI)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Statement_163_7_45()
- {
-    if (jj_3R_ExprOrAssignStmt_172_5_54()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ParamList_547_5_29()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_scan_token(13)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(45)) return true;
-    }
-    if (jj_scan_token(IDENTIFIER)) return true;
-    while (true) {
-      xsp = jj_scanpos;
-      if (jj_3R_ParamList_554_7_33()) { jj_scanpos = xsp; break; }
-    }
-    return false;
-  }
-
-  private boolean jj_3R_Statement_162_7_44()
- {
-    if (jj_3R_ReturnStmt_197_5_53()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Statement_161_7_43()
- {
-    if (jj_3R_FunctionDecl_531_5_17()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Statement_160_7_42()
- {
-    if (jj_3R_Block_519_5_22()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_FunctionDecl_533_16_24()
- {
-    if (jj_3R_ParamList_547_5_29()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Statement_159_7_41()
- {
-    if (jj_3R_ForStmt_488_5_52()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Statement_158_7_40()
- {
-    if (jj_3R_WhileStmt_448_5_51()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_UnaryExpression_349_7_77()
- {
-    if (jj_3R_Factor_358_5_78()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Statement_157_7_39()
- {
-    if (jj_3R_IfStmt_431_5_50()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Statement_156_7_38()
- {
-    if (jj_3R_Assignment_223_5_49()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Statement_155_7_37()
- {
-    if (jj_3R_VarDecl_210_5_32()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Statement_155_7_34()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_Statement_155_7_37()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Statement_156_7_38()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Statement_157_7_39()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Statement_158_7_40()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Statement_159_7_41()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Statement_160_7_42()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Statement_161_7_43()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Statement_162_7_44()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Statement_163_7_45()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Statement_164_7_46()) return true;
-    }
-    }
-    }
-    }
-    }
-    }
-    }
-    }
-    }
-    return false;
-  }
-
-  private boolean jj_3R_UnaryExpression_344_7_74()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_UnaryExpression_344_7_76()) {
-    jj_scanpos = xsp;
-    if (jj_3R_UnaryExpression_349_7_77()) return true;
-    }
-    return false;
-  }
-
-  private boolean jj_3R_UnaryExpression_344_7_76()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_scan_token(28)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(29)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(37)) return true;
-    }
-    }
-    if (jj_3R_UnaryExpression_344_7_74()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ConstructorDecl_142_16_21()
- {
-    if (jj_3R_ParamList_547_5_29()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_FunctionDecl_531_7_23()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_scan_token(19)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(20)) return true;
-    }
-    return false;
-  }
-
-  private boolean jj_3R_Block_519_18_30()
- {
-    if (jj_3R_Statement_155_7_34()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_FunctionDecl_531_5_17()
- {
-    Token xsp;
-    while (true) {
-      xsp = jj_scanpos;
-      if (jj_3R_FunctionDecl_531_7_23()) { jj_scanpos = xsp; break; }
-    }
-    xsp = jj_scanpos;
-    if (jj_scan_token(11)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(13)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(45)) return true;
-    }
-    }
-    if (jj_scan_token(IDENTIFIER)) return true;
-    if (jj_scan_token(LPAREN)) return true;
-    xsp = jj_scanpos;
-    if (jj_3R_FunctionDecl_533_16_24()) jj_scanpos = xsp;
-    if (jj_scan_token(RPAREN)) return true;
-    if (jj_3R_Block_519_5_22()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ConstructorDecl_140_7_20()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_scan_token(19)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(20)) return true;
-    }
-    return false;
-  }
-
-  private boolean jj_3R_ConstructorDecl_140_5_16()
- {
-    Token xsp;
-    while (true) {
-      xsp = jj_scanpos;
-      if (jj_3R_ConstructorDecl_140_7_20()) { jj_scanpos = xsp; break; }
-    }
-    if (jj_scan_token(IDENTIFIER)) return true;
-    if (jj_scan_token(LPAREN)) return true;
-    xsp = jj_scanpos;
-    if (jj_3R_ConstructorDecl_142_16_21()) jj_scanpos = xsp;
-    if (jj_scan_token(RPAREN)) return true;
-    if (jj_3R_Block_519_5_22()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Term_329_7_75()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_scan_token(30)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(31)) return true;
-    }
-    if (jj_3R_UnaryExpression_344_7_74()) return true;
-    return false;
-  }
-
-  private boolean jj_3_3()
- {
-    if (jj_3R_ConstructorDecl_140_5_16()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Term_328_5_72()
- {
-    if (jj_3R_UnaryExpression_344_7_74()) return true;
-    Token xsp;
-    while (true) {
-      xsp = jj_scanpos;
-      if (jj_3R_Term_329_7_75()) { jj_scanpos = xsp; break; }
-    }
-    return false;
-  }
-
-  private boolean jj_3R_Block_519_5_22()
- {
-    if (jj_scan_token(LBRACE)) return true;
-    Token xsp;
-    while (true) {
-      xsp = jj_scanpos;
-      if (jj_3R_Block_519_18_30()) { jj_scanpos = xsp; break; }
-    }
-    if (jj_scan_token(RBRACE)) return true;
-    return false;
-  }
-
-  private boolean jj_3_2()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_scan_token(13)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(45)) return true;
-    }
-    if (jj_scan_token(IDENTIFIER)) return true;
-    xsp = jj_scanpos;
-    if (jj_scan_token(43)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(25)) return true;
-    }
-    return false;
-  }
-
-  private boolean jj_3R_ClassDecl_126_9_28()
- {
-    if (jj_3R_FunctionDecl_531_5_17()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ClassDecl_123_9_27()
- {
-    if (jj_3R_ConstructorDecl_140_5_16()) return true;
-    return false;
-  }
-
-  private boolean jj_3_8()
- {
-    if (jj_3R_VarDeclForLoop_461_5_18()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ClassDecl_120_9_26()
- {
-    if (jj_3R_VarDecl_210_5_32()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ClassDecl_120_9_19()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_ClassDecl_120_9_26()) {
-    jj_scanpos = xsp;
-    if (jj_3R_ClassDecl_123_9_27()) {
-    jj_scanpos = xsp;
-    if (jj_3R_ClassDecl_126_9_28()) return true;
-    }
-    }
-    return false;
-  }
-
-  private boolean jj_3R_Additive_313_7_73()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_scan_token(28)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(29)) return true;
-    }
-    if (jj_3R_Term_328_5_72()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_VarDeclForLoop_461_50_25()
- {
-    if (jj_scan_token(ASSIGN)) return true;
-    if (jj_3R_Expression_243_55_31()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Additive_312_5_69()
- {
-    if (jj_3R_Term_328_5_72()) return true;
-    Token xsp;
-    while (true) {
-      xsp = jj_scanpos;
-      if (jj_3R_Additive_313_7_73()) { jj_scanpos = xsp; break; }
-    }
-    return false;
-  }
-
-  private boolean jj_3R_ClassDecl_118_5_15()
+  private boolean jj_3_5()
  {
-    if (jj_scan_token(CLASS)) return true;
-    if (jj_scan_token(IDENTIFIER)) return true;
-    if (jj_scan_token(LBRACE)) return true;
     Token xsp;
     while (true) {
       xsp = jj_scanpos;
-      if (jj_3R_ClassDecl_120_9_19()) { jj_scanpos = xsp; break; }
+      if (jj_3R_null_296_20_11()) { jj_scanpos = xsp; break; }
     }
-    if (jj_scan_token(RBRACE)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ForStmt_494_11_60()
- {
-    if (jj_3R_Expression_243_55_31()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ForStmt_493_11_59()
- {
-    if (jj_3R_Expression_243_55_31()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ForStmt_491_13_68()
- {
-    if (jj_3R_AssignmentForLoop_473_5_71()) return true;
-    return false;
-  }
-
-  private boolean jj_3_1()
- {
-    if (jj_3R_ClassDecl_118_5_15()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ForStmt_490_13_58()
- {
-    Token xsp;
     xsp = jj_scanpos;
-    if (jj_3R_ForStmt_490_13_67()) {
+    if (jj_scan_token(11)) {
     jj_scanpos = xsp;
-    if (jj_3R_ForStmt_491_13_68()) return true;
-    }
-    return false;
-  }
-
-  private boolean jj_3R_ForStmt_490_13_67()
- {
-    if (jj_3R_VarDeclForLoop_461_5_18()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Relational_297_7_70()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_scan_token(32)) {
+    if (jj_scan_token(13)) {
     jj_scanpos = xsp;
-    if (jj_scan_token(33)) return true;
-    }
-    if (jj_3R_Additive_312_5_69()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ForStmt_488_5_52()
- {
-    if (jj_scan_token(FOR)) return true;
-    if (jj_scan_token(LPAREN)) return true;
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_ForStmt_490_13_58()) jj_scanpos = xsp;
-    if (jj_scan_token(SEMI)) return true;
-    xsp = jj_scanpos;
-    if (jj_3R_ForStmt_493_11_59()) jj_scanpos = xsp;
-    if (jj_scan_token(SEMI)) return true;
-    xsp = jj_scanpos;
-    if (jj_3R_ForStmt_494_11_60()) jj_scanpos = xsp;
-    if (jj_scan_token(RPAREN)) return true;
-    if (jj_3R_Block_519_5_22()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Relational_296_5_63()
- {
-    if (jj_3R_Additive_312_5_69()) return true;
-    Token xsp;
-    while (true) {
-      xsp = jj_scanpos;
-      if (jj_3R_Relational_297_7_70()) { jj_scanpos = xsp; break; }
+    if (jj_scan_token(45)) return true;
     }
-    return false;
-  }
-
-  private boolean jj_3R_Expression_243_55_31()
- {
-    if (jj_3R_LogicalOr_250_5_35()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_LogicalAnd_265_23_56()
- {
-    if (jj_scan_token(AND)) return true;
-    if (jj_3R_Equality_280_5_55()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Equality_281_7_64()
- {
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_scan_token(24)) {
-    jj_scanpos = xsp;
-    if (jj_scan_token(34)) return true;
     }
-    if (jj_3R_Relational_296_5_63()) return true;
+    if (jj_scan_token(IDENTIFIER)) return true;
+    if (jj_scan_token(LPAREN)) return true;
     return false;
   }
 
-  private boolean jj_3R_AssignmentForLoop_473_5_71()
+  private boolean jj_3_4()
  {
     if (jj_scan_token(IDENTIFIER)) return true;
     if (jj_scan_token(ASSIGN)) return true;
-    if (jj_3R_Expression_243_55_31()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Equality_280_5_55()
- {
-    if (jj_3R_Relational_296_5_63()) return true;
-    Token xsp;
-    while (true) {
-      xsp = jj_scanpos;
-      if (jj_3R_Equality_281_7_64()) { jj_scanpos = xsp; break; }
-    }
-    return false;
-  }
-
-  private boolean jj_3R_LogicalOr_250_25_48()
- {
-    if (jj_scan_token(OR)) return true;
-    if (jj_3R_LogicalAnd_265_5_47()) return true;
     return false;
   }
 
-  private boolean jj_3R_VarDeclForLoop_461_5_18()
+  private boolean jj_3_3()
  {
     Token xsp;
     xsp = jj_scanpos;
@@ -1921,138 +1314,22 @@ VarDeclNode p = new VarDeclNode(t.image, id.image, null);
     }
     if (jj_scan_token(IDENTIFIER)) return true;
     xsp = jj_scanpos;
-    if (jj_3R_VarDeclForLoop_461_50_25()) jj_scanpos = xsp;
-    return false;
-  }
-
-  private boolean jj_3R_Factor_380_81_98()
- {
-    if (jj_3R_ArgList_419_5_99()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_LogicalAnd_265_5_47()
- {
-    if (jj_3R_Equality_280_5_55()) return true;
-    Token xsp;
-    while (true) {
-      xsp = jj_scanpos;
-      if (jj_3R_LogicalAnd_265_23_56()) { jj_scanpos = xsp; break; }
-    }
-    return false;
-  }
-
-  private boolean jj_3R_WhileStmt_448_5_51()
- {
-    if (jj_scan_token(WHILE)) return true;
-    if (jj_scan_token(LPAREN)) return true;
-    if (jj_3R_Expression_243_55_31()) return true;
-    if (jj_scan_token(RPAREN)) return true;
-    if (jj_3R_Block_519_5_22()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_VarDecl_210_50_36()
- {
-    if (jj_scan_token(ASSIGN)) return true;
-    if (jj_3R_Expression_243_55_31()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_NewExpr_406_43_96()
- {
-    if (jj_3R_ArgList_419_5_99()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_LogicalOr_250_5_35()
- {
-    if (jj_3R_LogicalAnd_265_5_47()) return true;
-    Token xsp;
-    while (true) {
-      xsp = jj_scanpos;
-      if (jj_3R_LogicalOr_250_25_48()) { jj_scanpos = xsp; break; }
-    }
-    return false;
-  }
-
-  private boolean jj_3R_IfStmt_434_11_66()
- {
-    if (jj_3R_IfStmt_431_5_50()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_IfStmt_433_11_65()
- {
-    if (jj_3R_Block_519_5_22()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_IfStmt_432_7_57()
- {
-    if (jj_scan_token(ELSE)) return true;
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_IfStmt_433_11_65()) {
+    if (jj_scan_token(43)) {
     jj_scanpos = xsp;
-    if (jj_3R_IfStmt_434_11_66()) return true;
-    }
-    return false;
-  }
-
-  private boolean jj_3R_IfStmt_431_5_50()
- {
-    if (jj_scan_token(IF)) return true;
-    if (jj_scan_token(LPAREN)) return true;
-    if (jj_3R_Expression_243_55_31()) return true;
-    if (jj_scan_token(RPAREN)) return true;
-    if (jj_3R_Block_519_5_22()) return true;
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_IfStmt_432_7_57()) jj_scanpos = xsp;
-    return false;
-  }
-
-  private boolean jj_3R_ArgList_420_7_100()
- {
-    if (jj_scan_token(COMMA)) return true;
-    if (jj_3R_Expression_243_55_31()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ArgList_419_5_99()
- {
-    if (jj_3R_Expression_243_55_31()) return true;
-    Token xsp;
-    while (true) {
-      xsp = jj_scanpos;
-      if (jj_3R_ArgList_420_7_100()) { jj_scanpos = xsp; break; }
+    if (jj_scan_token(25)) return true;
     }
     return false;
   }
 
-  private boolean jj_3R_Assignment_223_5_49()
- {
-    if (jj_scan_token(IDENTIFIER)) return true;
-    if (jj_scan_token(ASSIGN)) return true;
-    if (jj_3R_Expression_243_55_31()) return true;
-    if (jj_scan_token(SEMI)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_NewExpr_406_5_89()
+  private boolean jj_3_6()
  {
-    if (jj_scan_token(NEW)) return true;
+    if (jj_scan_token(DOT)) return true;
     if (jj_scan_token(IDENTIFIER)) return true;
     if (jj_scan_token(LPAREN)) return true;
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_NewExpr_406_43_96()) jj_scanpos = xsp;
-    if (jj_scan_token(RPAREN)) return true;
     return false;
   }
 
-  private boolean jj_3R_VarDecl_210_5_32()
+  private boolean jj_3_7()
  {
     Token xsp;
     xsp = jj_scanpos;
@@ -2061,108 +1338,22 @@ VarDeclNode p = new VarDeclNode(t.image, id.image, null);
     if (jj_scan_token(45)) return true;
     }
     if (jj_scan_token(IDENTIFIER)) return true;
-    xsp = jj_scanpos;
-    if (jj_3R_VarDecl_210_50_36()) jj_scanpos = xsp;
-    if (jj_scan_token(SEMI)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Factor_395_10_95()
- {
-    if (jj_scan_token(DECR)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ReturnStmt_197_17_61()
- {
-    if (jj_3R_Expression_243_55_31()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Factor_393_10_94()
- {
-    if (jj_scan_token(INCR)) return true;
-    return false;
-  }
-
-  private boolean jj_3_7()
- {
-    if (jj_scan_token(DOT)) return true;
-    if (jj_scan_token(IDENTIFIER)) return true;
-    if (jj_scan_token(LPAREN)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Factor_387_10_93()
- {
-    if (jj_scan_token(DOT)) return true;
-    if (jj_scan_token(IDENTIFIER)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Factor_369_26_97()
- {
-    if (jj_3R_ArgList_419_5_99()) return true;
-    return false;
-  }
-
-  private boolean jj_3R_ReturnStmt_197_5_53()
- {
-    if (jj_scan_token(RETURN)) return true;
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_ReturnStmt_197_17_61()) jj_scanpos = xsp;
-    if (jj_scan_token(SEMI)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_Factor_376_15_91()
- {
-    return false;
-  }
-
-  private boolean jj_3R_Factor_380_10_92()
- {
-    if (jj_scan_token(DOT)) return true;
-    if (jj_scan_token(IDENTIFIER)) return true;
-    if (jj_scan_token(LPAREN)) return true;
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_Factor_380_81_98()) jj_scanpos = xsp;
-    if (jj_scan_token(RPAREN)) return true;
     return false;
   }
 
-  private boolean jj_3R_Factor_380_10_88()
+  private boolean jj_3R_null_254_22_10()
  {
     Token xsp;
     xsp = jj_scanpos;
-    if (jj_3R_Factor_380_10_92()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Factor_387_10_93()) {
-    jj_scanpos = xsp;
-    if (jj_3R_Factor_393_10_94()) {
+    if (jj_scan_token(19)) {
     jj_scanpos = xsp;
-    if (jj_3R_Factor_395_10_95()) return true;
-    }
-    }
+    if (jj_scan_token(20)) return true;
     }
     return false;
   }
 
-  private boolean jj_3R_Factor_369_15_90()
- {
-    if (jj_scan_token(LPAREN)) return true;
-    Token xsp;
-    xsp = jj_scanpos;
-    if (jj_3R_Factor_369_26_97()) jj_scanpos = xsp;
-    if (jj_scan_token(RPAREN)) return true;
-    return false;
-  }
-
   /** Generated Token Manager. */
   public MyParserTokenManager token_source;
-  SimpleCharStream jj_input_stream;
   /** Current token. */
   public Token token;
   /** Next token. */
@@ -2171,7 +1362,7 @@ VarDeclNode p = new VarDeclNode(t.image, id.image, null);
   private Token jj_scanpos, jj_lastpos;
   private int jj_la;
   private int jj_gen;
-  final private int[] jj_la1 = new int[49];
+  final private int[] jj_la1 = new int[40];
   static private int[] jj_la1_0;
   static private int[] jj_la1_1;
   static {
@@ -2179,72 +1370,32 @@ VarDeclNode p = new VarDeclNode(t.image, id.image, null);
 	   jj_la1_init_1();
 	}
 	private static void jj_la1_init_0() {
-	   jj_la1_0 = new int[] {0x30fffe80,0x30fbfe80,0x182800,0x182800,0x180000,0x180000,0x2000,0x680,0x30e3d000,0x2000000,0x30e3c000,0x2000,0x2000000,0x0,0x0,0x1000000,0x1000000,0x0,0x0,0x30000000,0x30000000,0xc0000000,0xc0000000,0x30000000,0x30e3c000,0x30e3c000,0x0,0xe3c000,0xc000000,0x30e3c000,0xc000000,0x30e3c000,0x0,0x80,0x100,0x2000,0x2000000,0x0,0x2000,0x30e3c000,0x30e3c000,0x30fbfe80,0x180000,0x180000,0x2800,0x2000,0x2000,0x0,0x2000,};
+	   jj_la1_0 = new int[] {0x30fffe80,0x30fffe80,0x182800,0x182800,0x180000,0x180000,0x2000,0x680,0x30e3d000,0x2000000,0x30e3c000,0x2000,0x2000000,0xf1000000,0x30000000,0x30e3c000,0x30e3c000,0x0,0xe3c000,0xc000000,0x30e3c000,0xc000000,0x30e3c000,0x0,0x80,0x100,0x2000,0x2000000,0x0,0x2000,0x30e3c000,0x30e3c000,0x30fbfe80,0x180000,0x180000,0x2800,0x2000,0x2000,0x0,0x2000,};
 	}
 	private static void jj_la1_init_1() {
-	   jj_la1_1 = new int[] {0x2aa0,0x2aa0,0x2000,0x2000,0x0,0x0,0x2000,0x200,0x28a0,0x0,0x20a0,0x2000,0x0,0x10,0x8,0x4,0x4,0x3,0x3,0x0,0x0,0x0,0x0,0x20,0x20a0,0x20a0,0x80,0x2080,0x40,0x20a0,0x40,0x20a0,0x1000,0x200,0x0,0x2000,0x0,0x2000,0x2000,0x20a0,0x20a0,0x2aa0,0x0,0x0,0x2000,0x2000,0x2000,0x1000,0x2000,};
+	   jj_la1_1 = new int[] {0x2aa0,0x2aa0,0x2000,0x2000,0x0,0x0,0x2000,0x200,0x28a0,0x0,0x20a0,0x2000,0x0,0x1f,0x20,0x20a0,0x20a0,0x80,0x2080,0x40,0x20a0,0x40,0x20a0,0x1000,0x200,0x0,0x2000,0x0,0x2000,0x2000,0x20a0,0x20a0,0x2aa0,0x0,0x0,0x2000,0x2000,0x2000,0x1000,0x2000,};
 	}
-  final private JJCalls[] jj_2_rtns = new JJCalls[8];
+  final private JJCalls[] jj_2_rtns = new JJCalls[7];
   private boolean jj_rescan = false;
   private int jj_gc = 0;
 
-  /** Constructor with InputStream. */
-  public MyParser(java.io.InputStream stream) {
-	  this(stream, null);
-  }
-  /** Constructor with InputStream and supplied encoding */
-  public MyParser(java.io.InputStream stream, String encoding) {
-	 try { jj_input_stream = new SimpleCharStream(stream, encoding, 1, 1); } catch(java.io.UnsupportedEncodingException e) { throw new RuntimeException(e); }
-	 token_source = new MyParserTokenManager(jj_input_stream);
-	 token = new Token();
-	 jj_ntk = -1;
-	 jj_gen = 0;
-	 for (int i = 0; i < 49; i++) jj_la1[i] = -1;
-	 for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
-  }
-
-  /** Reinitialise. */
-  public void ReInit(java.io.InputStream stream) {
-	  ReInit(stream, null);
-  }
-  /** Reinitialise. */
-  public void ReInit(java.io.InputStream stream, String encoding) {
-	 try { jj_input_stream.ReInit(stream, encoding, 1, 1); } catch(java.io.UnsupportedEncodingException e) { throw new RuntimeException(e); }
-	 token_source.ReInit(jj_input_stream);
-	 token = new Token();
-	 jj_ntk = -1;
-	 jj_gen = 0;
-	 for (int i = 0; i < 49; i++) jj_la1[i] = -1;
-	 for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
-  }
-
-  /** Constructor. */
-  public MyParser(java.io.Reader stream) {
-	 jj_input_stream = new SimpleCharStream(stream, 1, 1);
-	 token_source = new MyParserTokenManager(jj_input_stream);
+  /** Constructor with user supplied CharStream. */
+  public MyParser(CharStream stream) {
+	 token_source = new MyParserTokenManager(stream);
 	 token = new Token();
 	 jj_ntk = -1;
 	 jj_gen = 0;
-	 for (int i = 0; i < 49; i++) jj_la1[i] = -1;
+	 for (int i = 0; i < 40; i++) jj_la1[i] = -1;
 	 for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
   }
 
   /** Reinitialise. */
-  public void ReInit(java.io.Reader stream) {
-	if (jj_input_stream == null) {
-	   jj_input_stream = new SimpleCharStream(stream, 1, 1);
-	} else {
-	   jj_input_stream.ReInit(stream, 1, 1);
-	}
-	if (token_source == null) {
- token_source = new MyParserTokenManager(jj_input_stream);
-	}
-
-	 token_source.ReInit(jj_input_stream);
+  public void ReInit(CharStream stream) {
+	 token_source.ReInit(stream);
 	 token = new Token();
 	 jj_ntk = -1;
 	 jj_gen = 0;
-	 for (int i = 0; i < 49; i++) jj_la1[i] = -1;
+	 for (int i = 0; i < 40; i++) jj_la1[i] = -1;
 	 for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
   }
 
@@ -2254,7 +1405,7 @@ VarDeclNode p = new VarDeclNode(t.image, id.image, null);
 	 token = new Token();
 	 jj_ntk = -1;
 	 jj_gen = 0;
-	 for (int i = 0; i < 49; i++) jj_la1[i] = -1;
+	 for (int i = 0; i < 40; i++) jj_la1[i] = -1;
 	 for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
   }
 
@@ -2264,7 +1415,7 @@ VarDeclNode p = new VarDeclNode(t.image, id.image, null);
 	 token = new Token();
 	 jj_ntk = -1;
 	 jj_gen = 0;
-	 for (int i = 0; i < 49; i++) jj_la1[i] = -1;
+	 for (int i = 0; i < 40; i++) jj_la1[i] = -1;
 	 for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
   }
 
@@ -2400,7 +1551,7 @@ VarDeclNode p = new VarDeclNode(t.image, id.image, null);
 	   la1tokens[jj_kind] = true;
 	   jj_kind = -1;
 	 }
-	 for (int i = 0; i < 49; i++) {
+	 for (int i = 0; i < 40; i++) {
 	   if (jj_la1[i] == jj_gen) {
 		 for (int j = 0; j < 32; j++) {
 		   if ((jj_la1_0[i] & (1<<j)) != 0) {
@@ -2446,7 +1597,7 @@ VarDeclNode p = new VarDeclNode(t.image, id.image, null);
 
   private void jj_rescan_token() {
 	 jj_rescan = true;
-	 for (int i = 0; i < 8; i++) {
+	 for (int i = 0; i < 7; i++) {
 	   try {
 		 JJCalls p = jj_2_rtns[i];
 
@@ -2461,7 +1612,6 @@ VarDeclNode p = new VarDeclNode(t.image, id.image, null);
 			   case 4: jj_3_5(); break;
 			   case 5: jj_3_6(); break;
 			   case 6: jj_3_7(); break;
-			   case 7: jj_3_8(); break;
 			 }
 		   }
 		   p = p.next;
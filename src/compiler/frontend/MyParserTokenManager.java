@@ -3,11 +3,23 @@
 package compiler.frontend;
 import java.util.*;
 import compiler.frontend.ast.*;
-import compiler.infra.SourceLocation;
+import compiler.infra.NameTable;
+import compiler.infra.FileTable;
+import compiler.infra.LineMap;
 
 /** Token Manager. */
 @SuppressWarnings ("unused")
 public class MyParserTokenManager implements MyParserConstants {
+    /**
+     * Tokens record offsets only; line and column come from the stream's line map on demand.
+     * Identifiers are replaced by their canonical name so every later layer shares one instance.
+     */
+    void CommonTokenAction(Token t) {
+        t.beginOffset = input_stream.getBeginOffset();
+        t.endOffset = input_stream.getEndOffset();
+        t.lines = input_stream.getLineMap();
+        if (t.kind == IDENTIFIER) t.image = NameTable.intern(t.image);
+    }
 
   /** Debug output. */
   public  java.io.PrintStream debugStream = System.out;
@@ -531,23 +543,10 @@ protected Token jjFillToken()
 {
    final Token t;
    final String curTokenImage;
-   final int beginLine;
-   final int endLine;
-   final int beginColumn;
-   final int endColumn;
    String im = jjstrLiteralImages[jjmatchedKind];
    curTokenImage = (im == null) ? input_stream.GetImage() : im;
-   beginLine = input_stream.getBeginLine();
-   beginColumn = input_stream.getBeginColumn();
-   endLine = input_stream.getEndLine();
-   endColumn = input_stream.getEndColumn();
    t = Token.newToken(jjmatchedKind, curTokenImage);
 
-   t.beginLine = beginLine;
-   t.endLine = endLine;
-   t.beginColumn = beginColumn;
-   t.endColumn = endColumn;
-
    return t;
 }
 static final int[] jjnextStates = {
@@ -579,6 +578,7 @@ public Token getNextToken()
       jjmatchedKind = 0;
       jjmatchedPos = -1;
       matchedToken = jjFillToken();
+      CommonTokenAction(matchedToken);
       return matchedToken;
    }
 
@@ -597,6 +597,7 @@ public Token getNextToken()
       if ((jjtoToken[jjmatchedKind >> 6] & (1L << (jjmatchedKind & 077))) != 0L)
       {
          matchedToken = jjFillToken();
+         CommonTokenAction(matchedToken);
          return matchedToken;
       }
       else
@@ -680,23 +681,21 @@ private void jjCheckNAddStates(int start, int end)
 }
 
     /** Constructor. */
-    public MyParserTokenManager(SimpleCharStream stream){
+    public MyParserTokenManager(CharStream stream){
 
-      if (SimpleCharStream.staticFlag)
-            throw new Error("ERROR: Cannot use a static CharStream class with a non-static lexical analyzer.");
 
     input_stream = stream;
   }
 
   /** Constructor. */
-  public MyParserTokenManager (SimpleCharStream stream, int lexState){
+  public MyParserTokenManager (CharStream stream, int lexState){
     ReInit(stream);
     SwitchTo(lexState);
   }
 
   /** Reinitialise parser. */
   
-  public void ReInit(SimpleCharStream stream)
+  public void ReInit(CharStream stream)
   {
 
 
@@ -717,7 +716,7 @@ private void jjCheckNAddStates(int start, int end)
   }
 
   /** Reinitialise parser. */
-  public void ReInit(SimpleCharStream stream, int lexState)
+  public void ReInit(CharStream stream, int lexState)
   
   {
     ReInit(stream);
@@ -756,7 +755,7 @@ static final long[] jjtoSpecial = {
 static final long[] jjtoMore = {
    0x0L, 
 };
-    protected SimpleCharStream  input_stream;
+    protected CharStream  input_stream;
 
     private final int[] jjrounds = new int[18];
     private final int[] jjstateSet = new int[2 * 18];
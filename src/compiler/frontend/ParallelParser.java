@@ -0,0 +1,111 @@
+package compiler.frontend;
+
+import compiler.frontend.ast.ASTNode;
+import compiler.frontend.ast.AstArena;
+import compiler.frontend.ast.BlockNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses a program's top-level declarations and statements in parallel.
+ *
+ * Program() is a flat sequence of items, so the token buffer is pre-scanned for the
+ * points where an item ends: a ";" or "}" outside all braces and parentheses that
+ * is not followed by "else". Consecutive items are grouped into slices of similar
+ * token counts, each slice is parsed as a Program of its own by a separate MyParser
+ * on the pool, and the slices' statements are joined into the root BlockNode in
+ * source order. Tokens carry absolute offsets into the shared line map, so every
+ * node location is already that of the whole file.
+ *
+ * If any slice fails to parse, the whole buffer is parsed again sequentially, so a
+ * syntax error is reported exactly as MyParser reports it.
+ *
+ * Given an arena, every slice's parser takes its child lists from it (see MyParser.setArena).
+ */
+public final class ParallelParser implements MyParserConstants {
+    /** Fewest tokens worth handing to another thread. */
+    private static final int MIN_SLICE = 4096;
+
+    private ParallelParser() { }
+
+    public static ASTNode parse(TokenBuffer tokens, ForkJoinPool pool) throws ParseException {
+        return parse(tokens, pool, (AstArena) null);
+    }
+
+    /** Parses tokens on pool, with child lists from arena, or none when it is null. */
+    public static ASTNode parse(TokenBuffer tokens, ForkJoinPool pool, AstArena arena) throws ParseException {
+        int threads = pool.getParallelism();
+        int size = tokens.size();
+        if (threads <= 1 || size < 2 * MIN_SLICE) return parser(tokens.tokenManager(), arena).Program();
+        // a few slices per thread evens out slices that parse slower than others
+        return parse(tokens, pool, Math.max(MIN_SLICE, size / (4 * threads)), arena);
+    }
+
+    /** Parses tokens on pool in slices of at least sliceTokens tokens, cut only between top-level items. */
+    public static ASTNode parse(TokenBuffer tokens, ForkJoinPool pool, int sliceTokens) throws ParseException {
+        return parse(tokens, pool, sliceTokens, null);
+    }
+
+    private static ASTNode parse(TokenBuffer tokens, ForkJoinPool pool, int sliceTokens, AstArena arena)
+            throws ParseException {
+        List<Integer> cuts = sliceBoundaries(tokens, Math.max(1, sliceTokens));
+        List<ForkJoinTask<BlockNode>> slices = new ArrayList<>(cuts.size());
+        int from = 0;
+        for (int to : cuts) {
+            int start = from;
+            slices.add(pool.submit(() -> parseSlice(tokens, start, to, arena)));
+            from = to;
+        }
+
+        List<ASTNode> statements = new ArrayList<>();
+        for (ForkJoinTask<BlockNode> slice : slices) {
+            BlockNode block = slice.join();
+            if (block == null) {
+                // let the sequential parser find and report the error
+                return parser(tokens.tokenManager(), arena).Program();
+            }
+            statements.addAll(block.statements);
+        }
+        return new BlockNode(statements);
+    }
+
+    private static BlockNode parseSlice(TokenBuffer tokens, int from, int to, AstArena arena) {
+        try {
+            return (BlockNode) parser(tokens.tokenManager(from, to), arena).Program();
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static MyParser parser(MyParserTokenManager tokens, AstArena arena) {
+        MyParser parser = new MyParser(tokens);
+        parser.setArena(arena);
+        return parser;
+    }
+
+    /**
+     * End indices (exclusive) of the slices: each is just past the end of a top-level
+     * item, once at least sliceTokens tokens have gone by, and the last is the EOF token.
+     */
+    private static List<Integer> sliceBoundaries(TokenBuffer tokens, int sliceTokens) {
+        List<Integer> cuts = new ArrayList<>();
+        int eof = tokens.size() - 1;
+        int depth = 0; // braces and parentheses still open
+        int sliceStart = 0;
+        for (int i = 0; i < eof; i++) {
+            int kind = tokens.kind(i);
+            if (kind == LBRACE || kind == LPAREN) depth++;
+            else if (kind == RBRACE || kind == RPAREN) depth--;
+            boolean itemEnd = depth == 0 && (kind == SEMI || kind == RBRACE) && tokens.kind(i + 1) != ELSE;
+            if (itemEnd && i + 1 - sliceStart >= sliceTokens && i + 1 < eof) {
+                cuts.add(i + 1);
+                sliceStart = i + 1;
+            }
+        }
+        cuts.add(eof);
+        return cuts;
+    }
+}
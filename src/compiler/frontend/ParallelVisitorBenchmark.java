@@ -0,0 +1,55 @@
+package compiler.frontend;
+
+import compiler.frontend.ast.ASTNode;
+import compiler.frontend.visitor.TypeCheckingVisitor;
+import compiler.infra.Diagnostics;
+import compiler.middle.SymbolTableImpl;
+import compiler.middle.tac.TACConversionPass;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times TAC lowering, which runs on ParallelASTVisitor, over a program of many
+ * classes, each with a constructor, a method and a nested function: sequentially
+ * on the calling thread, then on pools of 1, 2, 4, ... threads. The number of
+ * instructions is printed as a check that every run lowered the same program.
+ *
+ * Usage: java compiler.frontend.ParallelVisitorBenchmark [classes] [max-threads]
+ */
+public class ParallelVisitorBenchmark {
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int classes = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        byte[] program = ParserBenchmark.classes(classes).getBytes(StandardCharsets.UTF_8);
+        ASTNode tree = new MyParser(new MappedCharStream(program)).Program();
+        tree.accept(new TypeCheckingVisitor(new SymbolTableImpl(), new Diagnostics()));
+        System.out.printf("%d classes, %d functions%n%n", classes, 3 * classes);
+
+        System.out.println("threads   best ms   instructions");
+        report("seq", tree, null);
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                report(String.valueOf(threads), tree, pool);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void report(String threads, ASTNode tree, ForkJoinPool pool) {
+        int size = 0;
+        for (int i = 0; i < RUNS; i++) new TACConversionPass().lower(tree, pool); // warm-up
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            size = new TACConversionPass().lower(tree, pool).size();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%7s %9.3f %14d%n", threads, best / 1e6, size);
+    }
+}
@@ -4,6 +4,6 @@ public class ParseException extends Exception {
     public ParseException() { super(); }
     public ParseException(String message) { super(message); }
     public ParseException(Token currentTokenVal, int[][] expectedTokenSequencesVal, String[] tokenImageVal) {
-        super("Encountered \"" + currentTokenVal.next + "\" at line " + currentTokenVal.next.beginLine + ", column " + currentTokenVal.next.beginColumn + ".");
+        super("Encountered \"" + currentTokenVal.next + "\" at line " + currentTokenVal.next.getBeginLine() + ", column " + currentTokenVal.next.getBeginColumn() + ".");
     }
 }
@@ -0,0 +1,103 @@
+package compiler.frontend;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how parse time grows with the number of nested function and class
+ * declarations. Each size is parsed repeatedly after a warm-up, and the best time
+ * is reported together with the time per declaration, which stays flat when
+ * parsing is linear. Then a program of many classes is parsed by ParallelParser
+ * on pools of 1, 2, 4, ... threads.
+ *
+ * Usage: java compiler.frontend.ParserBenchmark [max-declarations] [max-threads]
+ */
+public class ParserBenchmark {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int max = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.println("shape      decls   best ms   ns/decl");
+        for (int n = 16; n <= max; n *= 2) {
+            report("functions", n, nestedFunctions(n));
+        }
+        for (int n = 16; n <= max; n *= 2) {
+            report("classes", n, classes(n));
+        }
+        for (int n = 16; n <= max; n *= 2) {
+            report("exprs", n, expressions(n));
+        }
+
+        byte[] program = classes(40000).getBytes(StandardCharsets.UTF_8);
+        TokenBuffer tokens = TokenBuffer.lex(new MappedCharStream(program));
+        System.out.printf("%nparallel parse of %.1f MB (%d tokens)%nthreads   best ms%n", program.length / 1e6, tokens.size());
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (int i = 0; i < RUNS; i++) ParallelParser.parse(tokens, pool); // warm-up
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < RUNS; i++) {
+                    long start = System.nanoTime();
+                    ParallelParser.parse(tokens, pool);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                System.out.printf("%7d %9.3f%n", threads, best / 1e6);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void report(String shape, int decls, String source) throws Exception {
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < RUNS; i++) parse(bytes); // warm-up
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            parse(bytes);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-9s %6d %9.3f %9d%n", shape, decls, best / 1e6, best / decls);
+    }
+
+    private static void parse(byte[] source) throws Exception {
+        new MyParser(new MappedCharStream(source)).Program();
+    }
+
+    /** Functions nested inside each other's bodies, n deep. */
+    static String nestedFunctions(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append("int f").append(i).append("(int a) {\n  int x = a + ").append(i).append(";\n");
+        }
+        for (int i = 0; i < n; i++) {
+            sb.append("  return x;\n}\n");
+        }
+        return sb.toString();
+    }
+
+    /** n assignments, each of an expression with a dozen binary operators at every precedence level. */
+    static String expressions(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append("x").append(i).append(" = a * b + c / d - ").append(i)
+              .append(" < e && f == g || !h && (i + j) * k > -l || m.n != o.p(q, r + 1);\n");
+        }
+        return sb.toString();
+    }
+
+    /** n classes, each with a field, a constructor and a method holding a nested function. */
+    static String classes(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append("class C").append(i).append(" {\n")
+              .append("  int v;\n")
+              .append("  C").append(i).append("(int a) { v = a; }\n")
+              .append("  int get(int b) {\n    int inner(int c) { return c * 2; }\n    return inner(v + b);\n  }\n")
+              .append("}\n");
+        }
+        return sb.toString();
+    }
+}
@@ -5,9 +5,13 @@ package compiler.frontend;
 /**
  * An implementation of interface CharStream, where the stream is assumed to
  * contain only ASCII characters (without unicode processing).
+ *
+ * Only absolute offsets are tracked per character; line starts are recorded in a
+ * LineMap as characters arrive, and line and column numbers are computed from it
+ * on request. Lines and columns always start at 1.
  */
 
-public class SimpleCharStream
+public class SimpleCharStream implements CharStream
 {
 /** Whether parser is static. */
   public static final boolean staticFlag = false;
@@ -16,14 +20,10 @@ public class SimpleCharStream
   int tokenBegin;
 /** Position in buffer. */
   public int bufpos = -1;
-  protected int bufline[];
-  protected int bufcolumn[];
-
-  protected int column = 0;
-  protected int line = 1;
-
-  protected boolean prevCharIsCR = false;
-  protected boolean prevCharIsLF = false;
+/** Offset of the character at bufpos. */
+  protected int offset = -1;
+  protected int beginOffset = -1;
+  protected compiler.infra.LineMap lines = new compiler.infra.LineMap();
 
   protected java.io.Reader inputStream;
 
@@ -41,8 +41,6 @@ public class SimpleCharStream
   protected void ExpandBuff(boolean wrapAround)
   {
     char[] newbuffer = new char[bufsize + 2048];
-    int newbufline[] = new int[bufsize + 2048];
-    int newbufcolumn[] = new int[bufsize + 2048];
 
     try
     {
@@ -52,14 +50,6 @@ public class SimpleCharStream
         System.arraycopy(buffer, 0, newbuffer, bufsize - tokenBegin, bufpos);
         buffer = newbuffer;
 
-        System.arraycopy(bufline, tokenBegin, newbufline, 0, bufsize - tokenBegin);
-        System.arraycopy(bufline, 0, newbufline, bufsize - tokenBegin, bufpos);
-        bufline = newbufline;
-
-        System.arraycopy(bufcolumn, tokenBegin, newbufcolumn, 0, bufsize - tokenBegin);
-        System.arraycopy(bufcolumn, 0, newbufcolumn, bufsize - tokenBegin, bufpos);
-        bufcolumn = newbufcolumn;
-
         maxNextCharInd = (bufpos += (bufsize - tokenBegin));
       }
       else
@@ -67,12 +57,6 @@ public class SimpleCharStream
         System.arraycopy(buffer, tokenBegin, newbuffer, 0, bufsize - tokenBegin);
         buffer = newbuffer;
 
-        System.arraycopy(bufline, tokenBegin, newbufline, 0, bufsize - tokenBegin);
-        bufline = newbufline;
-
-        System.arraycopy(bufcolumn, tokenBegin, newbufcolumn, 0, bufsize - tokenBegin);
-        bufcolumn = newbufcolumn;
-
         maxNextCharInd = (bufpos -= tokenBegin);
       }
     }
@@ -119,7 +103,11 @@ public class SimpleCharStream
         throw new java.io.IOException();
       }
       else
+      {
+        for (int k = maxNextCharInd; k < maxNextCharInd + i; k++)
+          lines.advance(buffer[k]);
         maxNextCharInd += i;
+      }
       return;
     }
     catch(java.io.IOException e) {
@@ -135,52 +123,14 @@ public class SimpleCharStream
   public char BeginToken() throws java.io.IOException
   {
     tokenBegin = -1;
+    beginOffset = offset; // the EOF token begins at the last character
     char c = readChar();
     tokenBegin = bufpos;
+    beginOffset = offset;
 
     return c;
   }
 
-  protected void UpdateLineColumn(char c)
-  {
-    column++;
-
-    if (prevCharIsLF)
-    {
-      prevCharIsLF = false;
-      line += (column = 1);
-    }
-    else if (prevCharIsCR)
-    {
-      prevCharIsCR = false;
-      if (c == '\n')
-      {
-        prevCharIsLF = true;
-      }
-      else
-        line += (column = 1);
-    }
-
-    switch (c)
-    {
-      case '\r' :
-        prevCharIsCR = true;
-        break;
-      case '\n' :
-        prevCharIsLF = true;
-        break;
-      case '\t' :
-        column--;
-        column += (tabSize - (column % tabSize));
-        break;
-      default :
-        break;
-    }
-
-    bufline[bufpos] = line;
-    bufcolumn[bufpos] = column;
-  }
-
 /** Read a character. */
   public char readChar() throws java.io.IOException
   {
@@ -191,6 +141,7 @@ public class SimpleCharStream
       if (++bufpos == bufsize)
         bufpos = 0;
 
+      offset++;
       return buffer[bufpos];
     }
 
@@ -199,7 +150,7 @@ public class SimpleCharStream
 
     char c = buffer[bufpos];
 
-    UpdateLineColumn(c);
+    offset++;
     return c;
   }
 
@@ -209,7 +160,7 @@ public class SimpleCharStream
    */
   @Deprecated
   public int getColumn() {
-    return bufcolumn[bufpos];
+    return lines.columnOf(offset);
   }
 
   /**
@@ -218,33 +169,49 @@ public class SimpleCharStream
    */
   @Deprecated
   public int getLine() {
-    return bufline[bufpos];
+    return lines.lineOf(offset);
   }
 
   /** Get token end column number. */
   public int getEndColumn() {
-    return bufcolumn[bufpos];
+    return lines.columnOf(offset);
   }
 
   /** Get token end line number. */
   public int getEndLine() {
-     return bufline[bufpos];
+     return lines.lineOf(offset);
   }
 
   /** Get token beginning column number. */
   public int getBeginColumn() {
-    return bufcolumn[tokenBegin];
+    return lines.columnOf(beginOffset);
   }
 
   /** Get token beginning line number. */
   public int getBeginLine() {
-    return bufline[tokenBegin];
+    return lines.lineOf(beginOffset);
+  }
+
+  /** Get token beginning offset. */
+  public int getBeginOffset() {
+    return beginOffset;
+  }
+
+  /** Get token end offset. */
+  public int getEndOffset() {
+    return offset;
+  }
+
+  /** Get the line starts read so far. */
+  public compiler.infra.LineMap getLineMap() {
+    return lines;
   }
 
 /** Backup a number of characters. */
   public void backup(int amount) {
 
     inBuf += amount;
+    offset -= amount;
     if ((bufpos -= amount) < 0)
       bufpos += bufsize;
   }
@@ -254,13 +221,9 @@ public class SimpleCharStream
   int startcolumn, int buffersize)
   {
     inputStream = dstream;
-    line = startline;
-    column = startcolumn - 1;
 
     available = bufsize = buffersize;
     buffer = new char[buffersize];
-    bufline = new int[buffersize];
-    bufcolumn = new int[buffersize];
   }
 
   /** Constructor. */
@@ -281,17 +244,14 @@ public class SimpleCharStream
   int startcolumn, int buffersize)
   {
     inputStream = dstream;
-    line = startline;
-    column = startcolumn - 1;
 
     if (buffer == null || buffersize != buffer.length)
     {
       available = bufsize = buffersize;
       buffer = new char[buffersize];
-      bufline = new int[buffersize];
-      bufcolumn = new int[buffersize];
     }
-    prevCharIsLF = prevCharIsCR = false;
+    offset = beginOffset = -1;
+    lines = new compiler.infra.LineMap();
     tokenBegin = inBuf = maxNextCharInd = 0;
     bufpos = -1;
   }
@@ -416,57 +376,9 @@ public class SimpleCharStream
   public void Done()
   {
     buffer = null;
-    bufline = null;
-    bufcolumn = null;
   }
 
-  /**
-   * Method to adjust line and column numbers for the start of a token.
-   */
-  public void adjustBeginLineColumn(int newLine, int newCol)
-  {
-    int start = tokenBegin;
-    int len;
-
-    if (bufpos >= tokenBegin)
-    {
-      len = bufpos - tokenBegin + inBuf + 1;
-    }
-    else
-    {
-      len = bufsize - tokenBegin + bufpos + 1 + inBuf;
-    }
-
-    int i = 0, j = 0, k = 0;
-    int nextColDiff = 0, columnDiff = 0;
-
-    while (i < len && bufline[j = start % bufsize] == bufline[k = ++start % bufsize])
-    {
-      bufline[j] = newLine;
-      nextColDiff = columnDiff + bufcolumn[k] - bufcolumn[j];
-      bufcolumn[j] = newCol + columnDiff;
-      columnDiff = nextColDiff;
-      i++;
-    }
-
-    if (i < len)
-    {
-      bufline[j] = newLine++;
-      bufcolumn[j] = newCol + columnDiff;
-
-      while (i++ < len)
-      {
-        if (bufline[j = start % bufsize] != bufline[++start % bufsize])
-          bufline[j] = newLine++;
-        else
-          bufline[j] = newLine;
-      }
-    }
-
-    line = bufline[j];
-    column = bufcolumn[j];
-  }
-  boolean getTrackLineColumn() { return trackLineColumn; }
-  void setTrackLineColumn(boolean tlc) { trackLineColumn = tlc; }
+  public boolean getTrackLineColumn() { return trackLineColumn; }
+  public void setTrackLineColumn(boolean tlc) { trackLineColumn = tlc; }
 }
 /* JavaCC - OriginalChecksum=142dc6e63746321c52fa704795bfb413 (do not edit this line) */
@@ -2,6 +2,7 @@ package compiler.frontend;
 
 import compiler.frontend.ast.*;
 import compiler.frontend.visitor.SymbolTableBuilderVisitor;
+import compiler.infra.Artifact;
 import compiler.infra.CompilerContext;
 import compiler.infra.CompilerPass;
 import compiler.infra.Diagnostics;
@@ -10,10 +11,18 @@ import compiler.middle.SymbolTableImpl;
 import compiler.middle.Symbol;
 import compiler.middle.Kind;
 
+import java.util.Set;
+
 public class SymbolTableBuilderPass implements CompilerPass {
     @Override
     public String name() { return "SymbolTableBuilderPass"; }
 
+    @Override
+    public Set<Artifact> reads() { return Set.of(Artifact.AST); }
+
+    @Override
+    public Set<Artifact> produces() { return Set.of(Artifact.SYMBOL_TABLE); }
+
     @Override
     public void execute(CompilerContext context) throws Exception {
         Diagnostics diag = context.getDiagnostics();
@@ -2,6 +2,8 @@
 /* JavaCCOptions:TOKEN_EXTENDS=,KEEP_LINE_COLUMN=true,SUPPORT_CLASS_VISIBILITY_PUBLIC=true */
 package compiler.frontend;
 
+import compiler.infra.LineMap;
+
 /**
  * Describes the input token stream.
  */
@@ -22,14 +24,12 @@ public class Token implements java.io.Serializable {
    */
   public int kind;
 
-  /** The line number of the first character of this Token. */
-  public int beginLine;
-  /** The column number of the first character of this Token. */
-  public int beginColumn;
-  /** The line number of the last character of this Token. */
-  public int endLine;
-  /** The column number of the last character of this Token. */
-  public int endColumn;
+  /** The offset of the first character of this Token. */
+  public int beginOffset;
+  /** The offset of the last character of this Token. */
+  public int endOffset;
+  /** Line starts of the source, used to compute line and column numbers on demand. */
+  public LineMap lines;
 
   /**
    * The string image of the token.
@@ -94,6 +94,26 @@ public class Token implements java.io.Serializable {
     this.image = image;
   }
 
+  /** The line number of the first character of this Token. */
+  public int getBeginLine() {
+    return lines != null ? lines.lineOf(beginOffset) : 0;
+  }
+
+  /** The column number of the first character of this Token. */
+  public int getBeginColumn() {
+    return lines != null ? lines.columnOf(beginOffset) : 0;
+  }
+
+  /** The line number of the last character of this Token. */
+  public int getEndLine() {
+    return lines != null ? lines.lineOf(endOffset) : 0;
+  }
+
+  /** The column number of the last character of this Token. */
+  public int getEndColumn() {
+    return lines != null ? lines.columnOf(endOffset) : 0;
+  }
+
   /**
    * Returns the image.
    */
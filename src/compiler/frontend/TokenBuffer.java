@@ -0,0 +1,262 @@
+package compiler.frontend;
+
+import compiler.infra.LineMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The whole token stream of a source, packed one long per token.
+ *
+ * Each entry holds the token's kind (low 8 bits), its length in bytes (next 24
+ * bits) and its start offset (high 32 bits); nothing else is stored per token.
+ * Images are cut from the source only when asked for, and Token objects are built
+ * only as MyParser consumes them through {@link #tokenManager()}, so a parse keeps
+ * just its lookahead window of tokens alive instead of a chain as long as the file.
+ *
+ * Filled by the hand-written Lexer, either in one pass or in chunks on a ForkJoinPool.
+ * A Lexer's name cache serves identifier images, so like the lexer a finished buffer
+ * is meant to be read by one thread at a time.
+ */
+public final class TokenBuffer implements MyParserConstants {
+    private static final int KIND_BITS = 8;
+    private static final int LENGTH_BITS = 24;
+    private static final int MAX_LENGTH = (1 << LENGTH_BITS) - 1;
+
+    /** Smallest chunk worth handing to another thread. */
+    private static final int MIN_CHUNK = 64 * 1024;
+
+    private final Lexer lexer;
+    private final MappedCharStream source;
+    private final LineMap lines;
+    private long[] packed;
+    private int count;
+
+    private TokenBuffer(Lexer lexer, Segment... segments) {
+        this.lexer = lexer;
+        this.source = lexer.source();
+        this.lines = source.getLineMap();
+        int tokens = 0;
+        for (Segment segment : segments) tokens += segment.count;
+        Segment only = segments.length == 1 ? segments[0] : null;
+        if (only != null && only.count < only.packed.length && only.packed.length - only.count <= tokens >> 3) {
+            // a lone segment with little slack is adopted as is
+            packed = only.packed;
+            count = only.count;
+        } else {
+            packed = new long[tokens + 1];
+            for (Segment segment : segments) append(segment);
+        }
+        // the EOF token sits on the last character, as with the Lexer
+        packed[count++] = pack(EOF, source.length() - 1, 1);
+    }
+
+    /** Lexes all of source, up to and including the EOF token. */
+    public static TokenBuffer lex(MappedCharStream source) {
+        Lexer lexer = new Lexer(source);
+        return new TokenBuffer(lexer, Segment.lex(lexer, 0, source.length()));
+    }
+
+    /**
+     * Lexes source on pool, in chunks of about an equal share per worker thread.
+     * Falls back to {@link #lex(MappedCharStream)} for small sources and single-thread pools.
+     */
+    public static TokenBuffer lex(MappedCharStream source, ForkJoinPool pool) {
+        int threads = pool.getParallelism();
+        if (threads <= 1 || source.length() < 2 * MIN_CHUNK) return lex(source);
+        // a few chunks per thread evens out chunks that lex slower than others
+        return lex(source, pool, Math.max(MIN_CHUNK, source.length() / (4 * threads)));
+    }
+
+    /**
+     * Lexes source on pool, split into chunks of about chunkSize characters.
+     *
+     * Every chunk starts at the beginning of a line and is lexed as if no comment or
+     * string were open there. The chunks are then stitched in order: a chunk is kept
+     * if its first token starts exactly where the scan of the chunks before it
+     * resumes, since from a token start the lexer always produces the same tokens.
+     * Otherwise the chunk began inside a block comment, a string, or a token that
+     * crossed the boundary, and it is lexed again from the right offset. The result,
+     * including which lexical error is reported first, is that of a sequential lex.
+     */
+    public static TokenBuffer lex(MappedCharStream source, ForkJoinPool pool, int chunkSize) {
+        int length = source.length();
+        List<ForkJoinTask<Segment>> chunks = new ArrayList<>();
+        List<Integer> limits = new ArrayList<>();
+        for (int from = 0; from < length; ) {
+            int to = lineStartAfter(source, from + Math.max(1, chunkSize));
+            int start = from;
+            chunks.add(pool.submit(() -> Segment.speculate(new Lexer(source), start, to)));
+            limits.add(to);
+            from = to;
+        }
+
+        Segment[] segments = new Segment[chunks.size()];
+        int resume = 0; // where a sequential scan would read its next token
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = chunks.get(i).join();
+            // the first chunk starts where a sequential scan does
+            if (segment == null || i > 0 && segment.first != resume) {
+                segment = Segment.lex(new Lexer(source), resume, limits.get(i));
+            }
+            segments[i] = segment;
+            resume = segment.next;
+        }
+        return new TokenBuffer(new Lexer(source), segments);
+    }
+
+    /** Offset just past the first line break at or after from, or the end of source. */
+    private static int lineStartAfter(MappedCharStream source, int from) {
+        int length = source.length();
+        for (int i = from; i < length; i++) {
+            char c = source.charAt(i);
+            if (c == '\n') return i + 1;
+            if (c == '\r') return i + 1 < length && source.charAt(i + 1) == '\n' ? i + 2 : i + 1;
+        }
+        return length;
+    }
+
+    private void append(Segment segment) {
+        System.arraycopy(segment.packed, 0, packed, count, segment.count);
+        count += segment.count;
+    }
+
+    private static long pack(int kind, int start, int length) {
+        return (long) start << 32 | (long) length << KIND_BITS | kind;
+    }
+
+    /** Number of tokens, counting the final EOF token. */
+    public int size() {
+        return count;
+    }
+
+    public int kind(int i) {
+        return (int) packed[check(i)] & ((1 << KIND_BITS) - 1);
+    }
+
+    /** Offset of the token's first character. */
+    public int start(int i) {
+        return (int) (packed[check(i)] >> 32);
+    }
+
+    /** Offset of the token's last character. */
+    public int end(int i) {
+        long entry = packed[check(i)];
+        return (int) (entry >> 32) + ((int) (entry >>> KIND_BITS) & MAX_LENGTH) - 1;
+    }
+
+    /** The token's image, the same String the Lexer would have given it. */
+    public String image(int i) {
+        return lexer.image(kind(i), start(i), end(i));
+    }
+
+    /** Builds a Token for entry i. */
+    public Token token(int i) {
+        return token(i, lexer);
+    }
+
+    /** Builds a Token for entry i, taking its image from names. */
+    private Token token(int i, Lexer names) {
+        int kind = kind(i), start = start(i), end = end(i);
+        Token t = Token.newToken(kind, names.image(kind, start, end));
+        t.beginOffset = start;
+        t.endOffset = end;
+        t.lines = lines;
+        return t;
+    }
+
+    /** A token manager that feeds this buffer to MyParser from the first token on. */
+    public MyParserTokenManager tokenManager() {
+        return new Cursor(this, lexer, 0, count - 1);
+    }
+
+    /**
+     * A token manager that feeds tokens from..to-1 to MyParser, followed by an EOF
+     * token at the start of token to. It has its own name cache, so range managers
+     * may be read concurrently with each other.
+     */
+    public MyParserTokenManager tokenManager(int from, int to) {
+        check(from);
+        check(to);
+        if (from > to) throw new IndexOutOfBoundsException("tokens " + from + " to " + to);
+        return new Cursor(this, new Lexer(source), from, to);
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= count) throw new IndexOutOfBoundsException("token " + i + " of " + count);
+        return i;
+    }
+
+    /** The packed tokens of one stretch of source, in the same layout as the buffer. */
+    private static final class Segment {
+        long[] packed;
+        int count;
+        int first; // start of the first token read, even if it belongs to the next stretch
+        int next;  // where the next stretch resumes: the start of that token, or the end of input
+
+        /** Packs the tokens that start at offsets from..limit-1, scanning from a token boundary at from. */
+        static Segment lex(Lexer lexer, int from, int limit) {
+            Segment segment = new Segment();
+            // dense code runs about one token per five characters, so this rarely grows
+            segment.packed = new long[Math.max(0, limit - from) / 5 + 16];
+            lexer.seek(from);
+            for (boolean firstToken = true; ; firstToken = false) {
+                int kind = lexer.scan();
+                int start = kind == EOF ? lexer.source().length() : lexer.tokenStart();
+                if (firstToken) segment.first = start;
+                if (kind == EOF || start >= limit) {
+                    segment.next = start;
+                    return segment;
+                }
+                int length = lexer.tokenEnd() - start + 1;
+                if (length > MAX_LENGTH) {
+                    LineMap lines = lexer.source().getLineMap();
+                    throw new TokenMgrError("Token longer than " + MAX_LENGTH + " bytes at line "
+                        + lines.lineOf(start) + ", column " + lines.columnOf(start), TokenMgrError.LEXICAL_ERROR);
+                }
+                if (segment.count == segment.packed.length) {
+                    segment.packed = Arrays.copyOf(segment.packed, segment.count + (segment.count >> 1));
+                }
+                segment.packed[segment.count++] = pack(kind, start, length);
+            }
+        }
+
+        /** Like lex, but null if the stretch does not lex from its start, which then cannot be a token boundary. */
+        static Segment speculate(Lexer lexer, int from, int limit) {
+            try {
+                return lex(lexer, from, limit);
+            } catch (TokenMgrError e) {
+                return null;
+            }
+        }
+    }
+
+    /** Adapter from the packed buffer to the token manager interface MyParser expects. */
+    private static final class Cursor extends MyParserTokenManager {
+        private final TokenBuffer buffer;
+        private final Lexer names;
+        private final int end;
+        private int next;
+
+        Cursor(TokenBuffer buffer, Lexer names, int from, int end) {
+            super(buffer.source);
+            this.buffer = buffer;
+            this.names = names;
+            this.next = from;
+            this.end = end;
+        }
+
+        @Override
+        public Token getNextToken() {
+            if (next < end) return buffer.token(next++, names);
+            // then EOF for good, placed like the buffer's own EOF entry when the range runs to it
+            Token t = Token.newToken(EOF, "");
+            t.beginOffset = t.endOffset = buffer.start(end);
+            t.lines = buffer.lines;
+            return t;
+        }
+    }
+}
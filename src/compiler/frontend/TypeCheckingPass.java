@@ -5,6 +5,8 @@ import compiler.frontend.visitor.TypeCheckingVisitor;
 import compiler.infra.*;
 import compiler.middle.*;
 
+import java.util.Set;
+
 /**
  * Type checking pass that performs basic semantic validation.
  */
@@ -12,6 +14,12 @@ public class TypeCheckingPass implements CompilerPass {
     @Override
     public String name() { return "TypeCheckingPass"; }
 
+    @Override
+    public Set<Artifact> reads() { return Set.of(Artifact.AST, Artifact.SYMBOL_TABLE); }
+
+    @Override
+    public Set<Artifact> produces() { return Set.of(Artifact.TYPED_AST); }
+
     @Override
     public void execute(CompilerContext context) throws Exception {
         Diagnostics diag = context.getDiagnostics();
@@ -20,7 +28,8 @@ public class TypeCheckingPass implements CompilerPass {
 
         Object ast = context.getAst();
         if (ast instanceof ASTNode) {
-            TypeCheckingVisitor visitor = new TypeCheckingVisitor(table, diag);
+            // the visitor's scopes go on a table of its own; the shared one is only read
+            TypeCheckingVisitor visitor = new TypeCheckingVisitor(new SymbolTableImpl(table), diag);
             ((ASTNode) ast).accept(visitor);
         }
     }
@@ -1,6 +1,7 @@
 package compiler.frontend.ast;
 
 import compiler.frontend.ASTTestTree;
+import compiler.infra.FileTable;
 import compiler.infra.SourceLocation;
 
 /**
@@ -8,18 +9,25 @@ import compiler.infra.SourceLocation;
  * AST nodes are data holders; visitors implement behavior.
  */
 public abstract class ASTNode {
-    private SourceLocation sourceLocation;
+    // file id and offset packed by FileTable.location, resolved only when asked for
+    private long location = FileTable.NO_LOCATION;
 
     /** Accept a visitor and return a visitor-defined result. */
     public abstract <T> T accept(ASTVisitor<T> visitor);
 
     public abstract ASTTestTree toASTTestTree();
 
-    public void setSourceLocation(SourceLocation sourceLocation) {
-        this.sourceLocation = sourceLocation;
+    public void setLocation(long location) {
+        this.location = location;
     }
 
+    /** The packed location, or FileTable.NO_LOCATION. */
+    public long getLocation() {
+        return location;
+    }
+
+    /** The location resolved through the FileTable; a new object on every call, or null. */
     public SourceLocation getSourceLocation() {
-        return sourceLocation;
+        return FileTable.resolve(location);
     }
 }
@@ -0,0 +1,85 @@
+package compiler.frontend.ast;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Backing store for the child lists of one compilation's AST.
+ *
+ * A parser with an arena collects a rule's children on a scratch stack and, when
+ * the rule ends, copies them into the unused tail of a large chunk, handing back
+ * a fixed-size list over that range. So a tree's lists share a few chunks instead
+ * of each owning a backing array grown by doubling, and they become garbage
+ * together: dropping the arena and the tree (see CompilerContext.release) leaves
+ * the collector a few large arrays rather than one small one per node.
+ *
+ * Chunks are taken by any number of parsers at once; each parser fills its own.
+ */
+public final class AstArena {
+    /** References per chunk; small enough that a chunk is never a humongous object. */
+    public static final int CHUNK = 16 * 1024;
+
+    private int chunks;
+    private long capacity;
+
+    /** A new chunk of at least min references, for the caller to fill alone. */
+    public synchronized Object[] chunk(int min) {
+        Object[] chunk = new Object[Math.max(CHUNK, min)];
+        chunks++;
+        capacity += chunk.length;
+        return chunk;
+    }
+
+    /** Number of chunks handed out so far. */
+    public synchronized int chunks() {
+        return chunks;
+    }
+
+    /** Total references in the chunks handed out so far. */
+    public synchronized long capacity() {
+        return capacity;
+    }
+
+    /** The size elements of chunk from offset on, as a list that can be read and set but not resized. */
+    public static <T> List<T> list(Object[] chunk, int offset, int size) {
+        return new Slice<>(chunk, offset, size);
+    }
+
+    private static final class Slice<T> extends AbstractList<T> implements RandomAccess {
+        private final Object[] chunk;
+        private final int offset;
+        private final int size;
+
+        Slice(Object[] chunk, int offset, int size) {
+            this.chunk = chunk;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            return (T) chunk[offset + checkIndex(index)];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T set(int index, T element) {
+            int at = offset + checkIndex(index);
+            T old = (T) chunk[at];
+            chunk[at] = element;
+            return old;
+        }
+
+        private int checkIndex(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            return index;
+        }
+    }
+}
@@ -7,11 +7,18 @@ public class ClassDeclNode extends ASTNode {
     public String className;
     public List<VarDeclNode> fields;
     public List<FunctionDeclNode> methods;
+    private final ClassType type;
 
     public ClassDeclNode(String className, List<VarDeclNode> fields, List<FunctionDeclNode> methods) {
         this.className = className;
         this.fields = fields;
         this.methods = methods;
+        this.type = new ClassType(this);
+    }
+
+    /** The type of this class's instances. */
+    public ClassType type() {
+        return type;
     }
 
     @Override
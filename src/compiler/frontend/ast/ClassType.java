@@ -0,0 +1,15 @@
+package compiler.frontend.ast;
+
+/** The type of a declared class; each ClassDeclNode has exactly one. */
+public final class ClassType extends Type {
+    private final ClassDeclNode declaration;
+
+    ClassType(ClassDeclNode declaration) {
+        super(declaration.className, "L" + declaration.className + ";", false);
+        this.declaration = declaration;
+    }
+
+    public ClassDeclNode declaration() {
+        return declaration;
+    }
+}
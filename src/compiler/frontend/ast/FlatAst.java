@@ -0,0 +1,479 @@
+package compiler.frontend.ast;
+
+import compiler.infra.FileTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A program's AST held in parallel primitive arrays, one slot per node.
+ *
+ * A node is an int index. Its kind says which ASTNode class it stands for, its
+ * children are chained through firstChild and nextSibling, its payload is the index
+ * of its first string in a shared table, and its location is packed by FileTable.
+ * There are no node objects, child lists or location objects, so a whole program
+ * costs a few arrays, and a walk reads them front to back.
+ *
+ * Children come in the order the object tree keeps them:
+ * <pre>
+ * BLOCK          statements...
+ * CLASS_DECL     [name]              fields... methods...
+ * FUNCTION_DECL  [returnType, name]  params... body
+ * VAR_DECL       [type, name]        initializer?
+ * ASSIGNMENT                         target expression
+ * IF                                 cond then else?
+ * WHILE                              cond body
+ * FOR                                init cond update body, the first three possibly ABSENT
+ * RETURN                             expr?
+ * BINARY_OP, BINARY_EXPR  [op]       left right
+ * UNARY_OP       [op]                expr
+ * LITERAL        [value]
+ * IDENTIFIER     [name]
+ * CALL           [name]              args...          (a call without receiver)
+ * METHOD_CALL    [name]              receiver args...
+ * MEMBER_ACCESS  [member]            object
+ * NEW_EXPR       [className]         args...
+ * EMPTY
+ * </pre>
+ *
+ * Filled from an object tree by {@link #of}. {@link Cursor} walks the arrays; {@link #toNode} builds the object
+ * tree of any subtree, so the ASTVisitor passes run on it unchanged. Resolved
+ * expression types are not kept here, only what the parser produces.
+ */
+public final class FlatAst {
+    public static final byte BLOCK = 0, CLASS_DECL = 1, FUNCTION_DECL = 2, VAR_DECL = 3, ASSIGNMENT = 4,
+        IF = 5, WHILE = 6, FOR = 7, RETURN = 8, EMPTY = 9, BINARY_OP = 10, BINARY_EXPR = 11, UNARY_OP = 12,
+        LITERAL = 13, IDENTIFIER = 14, CALL = 15, METHOD_CALL = 16, MEMBER_ACCESS = 17, NEW_EXPR = 18,
+        ABSENT = 19;
+
+    /** No node: the end of a sibling chain, or a node without children. */
+    public static final int NONE = -1;
+
+    private byte[] kind;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] payload;
+    private long[] location;
+    private int count;
+
+    private String[] strings;
+    private int stringCount;
+
+    private int root = NONE;
+
+    public FlatAst(int expectedNodes) {
+        int capacity = Math.max(16, expectedNodes);
+        kind = new byte[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        payload = new int[capacity];
+        location = new long[capacity];
+        strings = new String[capacity];
+    }
+
+    /** Flattens an object tree. */
+    public static FlatAst of(ASTNode root) {
+        FlatAst ast = new FlatAst(64);
+        ast.setRoot(root.accept(new Flattener(ast)));
+        return ast;
+    }
+
+    // ---- building ----
+
+    /** Adds a node without strings or children. */
+    public int add(byte kind, long location) {
+        if (count == this.kind.length) grow();
+        int n = count++;
+        this.kind[n] = kind;
+        firstChild[n] = NONE;
+        nextSibling[n] = NONE;
+        payload[n] = NONE;
+        this.location[n] = location;
+        return n;
+    }
+
+    public int add(byte kind, String s, long location) {
+        int n = add(kind, location);
+        payload[n] = string(s);
+        return n;
+    }
+
+    public int add(byte kind, String first, String second, long location) {
+        int n = add(kind, location);
+        payload[n] = string(first);
+        string(second);
+        return n;
+    }
+
+    private int string(String s) {
+        if (stringCount == strings.length) strings = Arrays.copyOf(strings, stringCount * 2);
+        strings[stringCount] = s;
+        return stringCount++;
+    }
+
+    /**
+     * Makes child the next child of parent, after last (NONE if it is the first).
+     * @return child, the new last child
+     */
+    public int append(int parent, int last, int child) {
+        if (last == NONE) firstChild[parent] = child;
+        else nextSibling[last] = child;
+        return child;
+    }
+
+    /** Chains second after first, which must be the last of its siblings. */
+    public void link(int first, int second) {
+        nextSibling[first] = second;
+    }
+
+    public void setRoot(int root) {
+        this.root = root;
+    }
+
+    private void grow() {
+        int capacity = count * 2;
+        kind = Arrays.copyOf(kind, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        payload = Arrays.copyOf(payload, capacity);
+        location = Arrays.copyOf(location, capacity);
+    }
+
+    // ---- reading ----
+
+    public int root() {
+        return root;
+    }
+
+    /** Number of nodes, including ABSENT placeholders. */
+    public int size() {
+        return count;
+    }
+
+    public byte kind(int n) {
+        return kind[n];
+    }
+
+    public int firstChild(int n) {
+        return firstChild[n];
+    }
+
+    public int nextSibling(int n) {
+        return nextSibling[n];
+    }
+
+    /** The node's first string: a name, operator or literal value; null for kinds without one. */
+    public String string(int n) {
+        return payload[n] == NONE ? null : strings[payload[n]];
+    }
+
+    /** The name of a VAR_DECL or FUNCTION_DECL, whose first string is its type. */
+    public String secondString(int n) {
+        return strings[payload[n] + 1];
+    }
+
+    /** The packed location, or FileTable.NO_LOCATION. */
+    public long location(int n) {
+        return location[n];
+    }
+
+    /** A cursor on the root. */
+    public Cursor cursor() {
+        return new Cursor(this, root);
+    }
+
+    /** Runs an ASTVisitor over the object tree of node n. */
+    public <T> T accept(int n, ASTVisitor<T> visitor) {
+        return toNode(n).accept(visitor);
+    }
+
+    /** The object tree of node n, with the same locations; null for ABSENT. */
+    public ASTNode toNode(int n) {
+        ASTNode node = build(n);
+        if (node != null) node.setLocation(location[n]);
+        return node;
+    }
+
+    private ASTNode build(int n) {
+        int c = firstChild[n];
+        switch (kind[n]) {
+            case BLOCK:
+                return new BlockNode(children(c, ASTNode.class));
+            case CLASS_DECL: {
+                List<VarDeclNode> fields = new ArrayList<>();
+                for (; c != NONE && kind[c] == VAR_DECL; c = nextSibling[c]) fields.add((VarDeclNode) toNode(c));
+                return new ClassDeclNode(string(n), fields, children(c, FunctionDeclNode.class));
+            }
+            case FUNCTION_DECL: {
+                List<VarDeclNode> params = new ArrayList<>();
+                for (; nextSibling[c] != NONE; c = nextSibling[c]) params.add((VarDeclNode) toNode(c));
+                return new FunctionDeclNode(string(n), secondString(n), params, (BlockNode) toNode(c));
+            }
+            case VAR_DECL:
+                return new VarDeclNode(string(n), secondString(n), c == NONE ? null : expression(c));
+            case ASSIGNMENT:
+                return new AssignmentNode(expression(c), expression(nextSibling[c]));
+            case IF: {
+                int then = nextSibling[c];
+                int otherwise = nextSibling[then];
+                return new IfNode(expression(c), toNode(then), otherwise == NONE ? null : toNode(otherwise));
+            }
+            case WHILE:
+                return new WhileNode(expression(c), toNode(nextSibling[c]));
+            case FOR: {
+                int cond = nextSibling[c];
+                int update = nextSibling[cond];
+                return new ForNode(toNode(c), expression(cond), toNode(update), toNode(nextSibling[update]));
+            }
+            case RETURN:
+                return new ReturnNode(c == NONE ? null : expression(c));
+            case EMPTY:
+                return new EmptyNode();
+            case BINARY_OP:
+                return new BinaryOpNode(string(n), expression(c), expression(nextSibling[c]));
+            case BINARY_EXPR:
+                return new BinaryExprNode(string(n), expression(c), expression(nextSibling[c]));
+            case UNARY_OP:
+                return new UnaryOpNode(string(n), expression(c));
+            case LITERAL:
+                return new LiteralNode(string(n));
+            case IDENTIFIER:
+                return new IdentifierNode(string(n));
+            case CALL:
+                return new MethodCallNode(null, string(n), children(c, ExpressionNode.class));
+            case METHOD_CALL:
+                return new MethodCallNode(expression(c), string(n), children(nextSibling[c], ExpressionNode.class));
+            case MEMBER_ACCESS:
+                return new MemberAccessNode(expression(c), string(n));
+            case NEW_EXPR:
+                return new NewExprNode(string(n), children(c, ExpressionNode.class));
+            case ABSENT:
+                return null;
+            default:
+                throw new IllegalStateException("Unknown node kind " + kind[n]);
+        }
+    }
+
+    private ExpressionNode expression(int n) {
+        return (ExpressionNode) toNode(n);
+    }
+
+    /** Object trees of n and the siblings after it. */
+    private <N extends ASTNode> List<N> children(int n, Class<N> type) {
+        List<N> out = new ArrayList<>();
+        for (; n != NONE; n = nextSibling[n]) out.add(type.cast(toNode(n)));
+        return out;
+    }
+
+    /**
+     * Walks the tree depth-first without building nodes. Moves report whether they
+     * happened; a cursor that cannot move stays where it is.
+     */
+    public static final class Cursor {
+        private final FlatAst ast;
+        private int node;
+        private int[] parents = new int[32];
+        private int depth;
+
+        Cursor(FlatAst ast, int node) {
+            this.ast = ast;
+            this.node = node;
+        }
+
+        public int node() { return node; }
+        public byte kind() { return ast.kind[node]; }
+        public String string() { return ast.string(node); }
+        public String secondString() { return ast.secondString(node); }
+        public long location() { return ast.location[node]; }
+        public int depth() { return depth; }
+
+        public boolean toFirstChild() {
+            int child = ast.firstChild[node];
+            if (child == NONE) return false;
+            if (depth == parents.length) parents = Arrays.copyOf(parents, depth * 2);
+            parents[depth++] = node;
+            node = child;
+            return true;
+        }
+
+        public boolean toNextSibling() {
+            int sibling = ast.nextSibling[node];
+            if (sibling == NONE || depth == 0) return false;
+            node = sibling;
+            return true;
+        }
+
+        public boolean toParent() {
+            if (depth == 0) return false;
+            node = parents[--depth];
+            return true;
+        }
+
+        /** Moves to the next node in preorder; after the last one, back to the top and false. */
+        public boolean next() {
+            if (toFirstChild()) return true;
+            while (depth > 0) {
+                if (toNextSibling()) return true;
+                toParent();
+            }
+            return false;
+        }
+    }
+
+    /** Builds the flat form of an object tree, children in the order the table above lists them. */
+    private static final class Flattener implements ASTVisitor<Integer> {
+        private final FlatAst ast;
+
+        Flattener(FlatAst ast) {
+            this.ast = ast;
+        }
+
+        private int add(ASTNode node, byte kind) {
+            return ast.add(kind, node.getLocation());
+        }
+
+        private int add(ASTNode node, byte kind, String s) {
+            return ast.add(kind, s, node.getLocation());
+        }
+
+        /** Appends the flat form of each child, an ABSENT node for a null one. */
+        private int children(int parent, ASTNode... children) {
+            return children(parent, FlatAst.NONE, Arrays.asList(children));
+        }
+
+        private int children(int parent, int last, List<? extends ASTNode> children) {
+            for (ASTNode child : children) {
+                int c = child != null ? child.accept(this) : ast.add(ABSENT, FileTable.NO_LOCATION);
+                last = ast.append(parent, last, c);
+            }
+            return last;
+        }
+
+        @Override
+        public Integer visitBlockNode(BlockNode node) {
+            int n = add(node, BLOCK);
+            children(n, NONE, node.statements);
+            return n;
+        }
+
+        @Override
+        public Integer visitClassDeclNode(ClassDeclNode node) {
+            int n = add(node, CLASS_DECL, node.className);
+            children(n, children(n, NONE, node.fields), node.methods);
+            return n;
+        }
+
+        @Override
+        public Integer visitFunctionDeclNode(FunctionDeclNode node) {
+            int n = ast.add(FUNCTION_DECL, node.returnType, node.name, node.getLocation());
+            children(n, children(n, NONE, node.params), List.of(node.body));
+            return n;
+        }
+
+        @Override
+        public Integer visitVarDeclNode(VarDeclNode node) {
+            int n = ast.add(VAR_DECL, node.type, node.name, node.getLocation());
+            if (node.initializer != null) children(n, node.initializer);
+            return n;
+        }
+
+        @Override
+        public Integer visitAssignmentNode(AssignmentNode node) {
+            int n = add(node, ASSIGNMENT);
+            children(n, node.target, node.expression);
+            return n;
+        }
+
+        @Override
+        public Integer visitIfNode(IfNode node) {
+            int n = add(node, IF);
+            if (node.elseBlock != null) children(n, node.cond, node.thenBlock, node.elseBlock);
+            else children(n, node.cond, node.thenBlock);
+            return n;
+        }
+
+        @Override
+        public Integer visitWhileNode(WhileNode node) {
+            int n = add(node, WHILE);
+            children(n, node.cond, node.body);
+            return n;
+        }
+
+        @Override
+        public Integer visitForNode(ForNode node) {
+            int n = add(node, FOR);
+            children(n, node.init, node.cond, node.update, node.body);
+            return n;
+        }
+
+        @Override
+        public Integer visitReturnNode(ReturnNode node) {
+            int n = add(node, RETURN);
+            if (node.expr != null) children(n, node.expr);
+            return n;
+        }
+
+        @Override
+        public Integer visitEmptyNode(EmptyNode node) {
+            return add(node, EMPTY);
+        }
+
+        @Override
+        public Integer visitBinaryOpNode(BinaryOpNode node) {
+            int n = add(node, BINARY_OP, node.op);
+            children(n, node.left, node.right);
+            return n;
+        }
+
+        @Override
+        public Integer visitBinaryExprNode(BinaryExprNode node) {
+            int n = add(node, BINARY_EXPR, node.op);
+            children(n, node.left, node.right);
+            return n;
+        }
+
+        @Override
+        public Integer visitUnaryOpNode(UnaryOpNode node) {
+            int n = add(node, UNARY_OP, node.op);
+            children(n, node.expr);
+            return n;
+        }
+
+        @Override
+        public Integer visitLiteralNode(LiteralNode node) {
+            return add(node, LITERAL, node.value);
+        }
+
+        @Override
+        public Integer visitIdentifierNode(IdentifierNode node) {
+            return add(node, IDENTIFIER, node.name);
+        }
+
+        @Override
+        public Integer visitMethodCallNode(MethodCallNode node) {
+            if (node.object == null) {
+                int n = add(node, CALL, node.methodName);
+                children(n, NONE, node.args);
+                return n;
+            }
+            int n = add(node, METHOD_CALL, node.methodName);
+            children(n, children(n, node.object), node.args);
+            return n;
+        }
+
+        @Override
+        public Integer visitMemberAccessNode(MemberAccessNode node) {
+            int n = add(node, MEMBER_ACCESS, node.memberName);
+            children(n, node.object);
+            return n;
+        }
+
+        @Override
+        public Integer visitNewExprNode(NewExprNode node) {
+            int n = add(node, NEW_EXPR, node.className);
+            children(n, NONE, node.args);
+            return n;
+        }
+    }
+}
@@ -9,6 +9,7 @@ public class FunctionDeclNode extends ASTNode {
     public final String name;
     public final List<VarDeclNode> params;
     public final BlockNode body;
+    public Type declaredReturnType; // returnType resolved by the type checker
 
     public FunctionDeclNode(String returnType, String name, List<VarDeclNode> params, BlockNode body) {
         this.returnType = returnType; this.name = name; this.params = params; this.body = body;
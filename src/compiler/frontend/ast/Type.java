@@ -0,0 +1,68 @@
+package compiler.frontend.ast;
+
+/**
+ * A resolved type. There is exactly one Type object per type, so the type checker
+ * compares types by identity: the built-in types are the constants below, every
+ * class is the {@link ClassType} of its ClassDeclNode, and a name that resolves to
+ * nothing gets one Type per type-checking run.
+ *
+ * Each type carries its JVM descriptor, built once when the type is created.
+ */
+public class Type {
+    public static final Type INT = new Type("int", "I", true);
+    public static final Type BOOLEAN = new Type("boolean", "Z", true);
+    public static final Type VOID = new Type("void", "V", true);
+    // "string" is accepted as a spelling of String
+    public static final Type STRING = new Type("String", "Ljava/lang/String;", false);
+    /** The type of the null literal, assignable to any non-primitive type. */
+    public static final Type NULL = new Type("null", "Lnull;", false);
+    /** The type of expressions whose type could not be determined. */
+    public static final Type UNKNOWN = new Type("unknown", "Lunknown;", false);
+
+    private final String name;
+    private final String descriptor;
+    private final boolean primitive;
+
+    Type(String name, String descriptor, boolean primitive) {
+        this.name = name;
+        this.descriptor = descriptor;
+        this.primitive = primitive;
+    }
+
+    /** A type for a name that resolves to no class; callers keep one per name. */
+    public static Type unresolved(String name) {
+        return new Type(name, "L" + name + ";", false);
+    }
+
+    /** The built-in type spelled name, or null if name is not built in. */
+    public static Type builtin(String name) {
+        switch (name) {
+            case "int": return INT;
+            case "boolean": return BOOLEAN;
+            case "void": return VOID;
+            case "String":
+            case "string": return STRING;
+            case "null": return NULL;
+            case "unknown": return UNKNOWN;
+            default: return null;
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** The JVM field descriptor, e.g. I or LFoo;. */
+    public String descriptor() {
+        return descriptor;
+    }
+
+    public boolean isPrimitive() {
+        return primitive;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -6,6 +6,7 @@ public class VarDeclNode extends StatementNode {
     public final String type;
     public final String name;
     public final ExpressionNode initializer;
+    public Type declaredType; // type resolved by the type checker
 
     public VarDeclNode(String type, String name, ExpressionNode initializer) {
         this.type = type;
@@ -0,0 +1,97 @@
+package compiler.frontend.visitor;
+
+import compiler.frontend.ast.ASTNode;
+import compiler.frontend.ast.ClassDeclNode;
+import compiler.frontend.ast.FunctionDeclNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Walks an AST as a tree of fork-join tasks, one per unit: the root, and each
+ * class and function declaration in it (see {@link #isUnit}).
+ *
+ * A subclass walks one unit at a time in {@link #visitUnit}, usually with an
+ * ordinary ASTVisitor. When that walk meets a nested unit it does not descend into
+ * it, but hands it to {@link Forks#fork} together with the state the nested walk
+ * starts from, such as the enclosing class. Each unit's walk gets its own state
+ * object, so tasks share nothing mutable unless the subclass shares it on purpose.
+ *
+ * A unit's result is {@link #combine}d with the results of the units it forked,
+ * in the order it forked them. So the combined result does not depend on how the
+ * tasks were scheduled, and the walk gives the same result sequentially
+ * (with a null pool) as on any number of threads.
+ *
+ * @param <S> per-unit walk state
+ * @param <R> per-unit result
+ */
+public abstract class ParallelASTVisitor<S, R> {
+
+    /** Where a unit's walk hands off the units nested in it. */
+    public interface Forks<S> {
+        /** Walks unit as a separate task, starting from state. */
+        void fork(ASTNode unit, S state);
+    }
+
+    /** Whether node is split off into a task of its own when met inside another unit. */
+    public static boolean isUnit(ASTNode node) {
+        return node instanceof ClassDeclNode || node instanceof FunctionDeclNode;
+    }
+
+    /**
+     * Walks unit with state, passing each nested unit to forks instead of walking it.
+     * @return the unit's own result, without those of the units it forked
+     */
+    protected abstract R visitUnit(ASTNode unit, S state, Forks<S> forks);
+
+    /**
+     * Combines a unit's own result with the results of the units it forked, in the
+     * order they were forked. Runs on the unit's task, after all of them finished.
+     */
+    protected abstract R combine(ASTNode unit, R own, List<R> forked);
+
+    /**
+     * Walks the tree from root, which is a unit whatever its kind.
+     * @param pool the pool to run the tasks on, or null to walk on the calling thread
+     */
+    public R run(ASTNode root, S state, ForkJoinPool pool) {
+        UnitTask task = new UnitTask(root, state, pool != null);
+        return pool != null ? pool.invoke(task) : task.compute();
+    }
+
+    private final class UnitTask extends RecursiveTask<R> implements Forks<S> {
+        private static final long serialVersionUID = 1L;
+        private final ASTNode unit;
+        private final S state;
+        private final boolean parallel;
+        private List<UnitTask> forked;
+
+        UnitTask(ASTNode unit, S state, boolean parallel) {
+            this.unit = unit;
+            this.state = state;
+            this.parallel = parallel;
+        }
+
+        @Override
+        public void fork(ASTNode nested, S nestedState) {
+            UnitTask task = new UnitTask(nested, nestedState, parallel);
+            if (forked == null) forked = new ArrayList<>();
+            forked.add(task);
+            // runs alongside the rest of this unit's walk
+            if (parallel) task.fork();
+        }
+
+        @Override
+        protected R compute() {
+            R own = visitUnit(unit, state, this);
+            if (forked == null) return combine(unit, own, List.of());
+            List<R> results = new ArrayList<>(forked.size());
+            for (UnitTask task : forked) {
+                results.add(parallel ? task.join() : task.compute());
+            }
+            return combine(unit, own, results);
+        }
+    }
+}
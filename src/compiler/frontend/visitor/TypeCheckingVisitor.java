@@ -2,53 +2,97 @@ package compiler.frontend.visitor;
 
 import compiler.frontend.ast.*;
 import compiler.infra.Diagnostics;
-import compiler.infra.SourceLocation;
+import compiler.infra.FileTable;
 import compiler.middle.*;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 public class TypeCheckingVisitor implements ASTVisitor<Void> {
     private final SymbolTable table;
     private final Diagnostics diag;
+    // one Type per name that resolves to no class, so unresolved types still compare by identity
+    private final Map<String, Type> unresolved = new HashMap<>();
+    // the classes declared by each enclosing block, innermost first; type names are looked
+    // up here rather than in the symbol table, where a constructor, field or variable of
+    // the same name would hide the class
+    private final Deque<Map<String, ClassDeclNode>> classes = new ArrayDeque<>();
 
     public TypeCheckingVisitor(SymbolTable table, Diagnostics diag) {
         this.table = table;
         this.diag = diag;
     }
 
-    private void setType(ExpressionNode node, String type) {
+    private void setType(ExpressionNode node, Type type) {
         node.type = type;
     }
 
-    private String getType(ExpressionNode node) {
+    private Type getType(ExpressionNode node) {
         return node.type;
     }
 
-    private boolean isCompatible(String expected, String actual) {
-        if (expected.equals(actual)) return true;
-        if ("String".equals(expected) && "string".equals(actual)) return true; // loose matching
-        if ("String".equals(actual) && "string".equals(expected)) return true;
-        // Basic compatibility: int can be assigned to int, etc.
+    // Types are canonical, so all of these are identity comparisons
+    private boolean isCompatible(Type expected, Type actual) {
+        if (expected == actual) return true;
         // Special case: null can be assigned to any object (non-primitive).
-        if ("null".equals(actual) && !isPrimitive(expected)) return true;
-        return false;
+        return actual == Type.NULL && !expected.isPrimitive();
+    }
+
+    private boolean isPrimitive(Type type) {
+        return type.isPrimitive();
+    }
+
+    private boolean isNumeric(Type type) {
+        return type == Type.INT;
+    }
+
+    private boolean isBoolean(Type type) {
+        return type == Type.BOOLEAN;
+    }
+
+    /** The Type a type name stands for in the current scope. */
+    private Type resolve(String name) {
+        Type type = Type.builtin(name);
+        if (type != null) return type;
+        ClassDeclNode decl = lookupClass(name);
+        if (decl != null) return decl.type();
+        return unresolved.computeIfAbsent(name, Type::unresolved);
     }
 
-    private boolean isPrimitive(String type) {
-        return "int".equals(type) || "boolean".equals(type) || "void".equals(type);
+    /** The class a name stands for in the current scope, or null if none does. */
+    private ClassDeclNode lookupClass(String name) {
+        for (Map<String, ClassDeclNode> scope : classes) {
+            ClassDeclNode decl = scope.get(name);
+            if (decl != null) return decl;
+        }
+        return null;
     }
 
-    private boolean isNumeric(String type) {
-        return "int".equals(type);
+    private void resolve(VarDeclNode node) {
+        node.declaredType = resolve(node.type);
     }
 
-    private boolean isBoolean(String type) {
-        return "boolean".equals(type);
+    private Type declaredType(VarDeclNode node) {
+        if (node.declaredType == null) resolve(node);
+        return node.declaredType;
+    }
+
+    private Type returnType(FunctionDeclNode node) {
+        if (node.declaredReturnType == null) resolve(node);
+        return node.declaredReturnType;
+    }
+
+    private void resolve(FunctionDeclNode node) {
+        node.declaredReturnType = resolve(node.returnType);
+        for (VarDeclNode param : node.params) resolve(param);
     }
 
     // Helper to report error with location
     private void reportError(ASTNode node, String message) {
-        diag.reportError(message, node != null ? node.getSourceLocation() : null);
+        diag.reportError(message, node != null ? node.getLocation() : FileTable.NO_LOCATION);
     }
 
     // --- Visitor Methods ---
@@ -56,6 +100,8 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
     @Override
     public Void visitBlockNode(BlockNode node) {
         table.enterScope();
+        Map<String, ClassDeclNode> declared = new HashMap<>();
+        classes.push(declared);
 
         // Pre-pass: Register all classes and functions in the current scope
         for (ASTNode stmt : node.getStatements()) {
@@ -63,6 +109,7 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
                 ClassDeclNode cdn = (ClassDeclNode) stmt;
                 Symbol sym = new Symbol(cdn.className, Kind.TYPE, cdn);
                 table.declare(sym);
+                declared.putIfAbsent(cdn.className, cdn);
             } else if (stmt instanceof FunctionDeclNode) {
                 FunctionDeclNode fdn = (FunctionDeclNode) stmt;
                 Symbol sym = new Symbol(fdn.name, Kind.FUNCTION, fdn);
@@ -70,18 +117,31 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
             }
         }
 
+        // Resolve the member and signature types of everything declared here once every
+        // class is known, so a body can use a field or function declared after it
+        for (ASTNode stmt : node.getStatements()) {
+            if (stmt instanceof ClassDeclNode) {
+                ClassDeclNode cdn = (ClassDeclNode) stmt;
+                for (VarDeclNode field : cdn.fields) resolve(field);
+                for (FunctionDeclNode method : cdn.methods) resolve(method);
+            } else if (stmt instanceof FunctionDeclNode) {
+                resolve((FunctionDeclNode) stmt);
+            }
+        }
+
         for (ASTNode statement : node.getStatements()) {
             statement.accept(this);
         }
 
+        classes.pop();
         table.exitScope();
         return null;
     }
 
     @Override
     public Void visitClassDeclNode(ClassDeclNode node) {
-        String prevClass = currentClassName;
-        currentClassName = node.className;
+        ClassDeclNode prevClass = currentClass;
+        currentClass = node;
 
         table.enterScope();
 
@@ -112,14 +172,17 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
         }
 
         table.exitScope();
-        currentClassName = prevClass;
+        currentClass = prevClass;
         return null;
     }
 
     @Override
     public Void visitFunctionDeclNode(FunctionDeclNode node) {
-        String prevRet = currentMethodReturnType;
-        currentMethodReturnType = node.returnType;
+        Type prevRet = currentMethodReturnType;
+        // a constructor is declared as returning its class but returns nothing
+        boolean constructor = currentClass != null && node.name.equals(currentClass.className)
+            && returnType(node) == currentClass.type();
+        currentMethodReturnType = constructor ? Type.VOID : returnType(node);
 
         Optional<Symbol> existing = table.lookupLocal(node.name);
         if (existing.isPresent() && existing.get().declaration() == node) {
@@ -143,7 +206,7 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
         node.getBody().accept(this);
 
         // Check return type enforcement
-        if (!"void".equals(node.returnType)) {
+        if (currentMethodReturnType != Type.VOID) {
             if (!checkReturn(node.getBody())) {
                 reportError(node, "Missing return statement in function: " + node.name);
             }
@@ -175,6 +238,9 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visitVarDeclNode(VarDeclNode node) {
+        // fields were resolved where their class was declared; resolving again here, in
+        // the class's own scope, must not change the type other code already compared
+        if (node.declaredType == null) resolve(node);
         Optional<Symbol> existing = table.lookupLocal(node.name);
         if (existing.isPresent() && existing.get().declaration() == node) {
             // Already declared
@@ -187,9 +253,9 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
 
         if (node.getInitializer() != null) {
             node.getInitializer().accept(this);
-            String initType = getType(node.getInitializer());
-            if (initType != null && !isCompatible(node.type, initType)) {
-                reportError(node, "Type mismatch in initialization of " + node.name + ": expected " + node.type + ", got " + initType);
+            Type initType = getType(node.getInitializer());
+            if (initType != null && !isCompatible(node.declaredType, initType)) {
+                reportError(node, "Type mismatch in initialization of " + node.name + ": expected " + node.declaredType + ", got " + initType);
             }
         }
         return null;
@@ -200,8 +266,8 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
         node.getTarget().accept(this);
         node.getExpression().accept(this);
 
-        String targetType = getType(node.getTarget());
-        String exprType = getType(node.getExpression());
+        Type targetType = getType(node.getTarget());
+        Type exprType = getType(node.getExpression());
 
         if (targetType != null && exprType != null) {
             if (!isCompatible(targetType, exprType)) {
@@ -216,8 +282,8 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
         node.getLeft().accept(this);
         node.getRight().accept(this);
 
-        String leftType = getType(node.getLeft());
-        String rightType = getType(node.getRight());
+        Type leftType = getType(node.getLeft());
+        Type rightType = getType(node.getRight());
 
         if (leftType == null || rightType == null) return null;
 
@@ -231,8 +297,8 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
         node.left.accept(this);
         node.right.accept(this);
 
-        String leftType = getType(node.left);
-        String rightType = getType(node.right);
+        Type leftType = getType(node.left);
+        Type rightType = getType(node.right);
 
         if (leftType == null || rightType == null) return null;
 
@@ -240,53 +306,53 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
         return null;
     }
 
-    private void checkBinaryOp(ExpressionNode node, String op, String leftType, String rightType) {
+    private void checkBinaryOp(ExpressionNode node, String op, Type leftType, Type rightType) {
         if (op.equals("+") || op.equals("-") || op.equals("*") || op.equals("/")) {
              if (isNumeric(leftType) && isNumeric(rightType)) {
-                    setType(node, "int");
-                } else if (op.equals("+") && (leftType.equals("String") || rightType.equals("String"))) {
-                    setType(node, "String"); // String concatenation
+                    setType(node, Type.INT);
+                } else if (op.equals("+") && (leftType == Type.STRING || rightType == Type.STRING)) {
+                    setType(node, Type.STRING); // String concatenation
                 } else {
                     reportError(node, "Operator " + op + " requires numeric operands.");
-                    setType(node, "int"); // Fallback
+                    setType(node, Type.INT); // Fallback
                 }
         } else if (op.equals("<") || op.equals(">") || op.equals("<=") || op.equals(">=")) {
              if (isNumeric(leftType) && isNumeric(rightType)) {
-                    setType(node, "boolean");
+                    setType(node, Type.BOOLEAN);
                 } else {
                     reportError(node, "Operator " + op + " requires numeric operands.");
-                    setType(node, "boolean");
+                    setType(node, Type.BOOLEAN);
                 }
         } else if (op.equals("&&") || op.equals("||")) {
              if (isBoolean(leftType) && isBoolean(rightType)) {
-                    setType(node, "boolean");
+                    setType(node, Type.BOOLEAN);
                 } else {
                     reportError(node, "Operator " + op + " requires boolean operands.");
-                    setType(node, "boolean");
+                    setType(node, Type.BOOLEAN);
                 }
         } else if (op.equals("==") || op.equals("!=")) {
              if (isCompatible(leftType, rightType) || isCompatible(rightType, leftType)) {
-                    setType(node, "boolean");
+                    setType(node, Type.BOOLEAN);
                 } else {
                     reportError(node, "Operator " + op + " requires compatible operands.");
-                    setType(node, "boolean");
+                    setType(node, Type.BOOLEAN);
                 }
         } else {
-            setType(node, "unknown");
+            setType(node, Type.UNKNOWN);
         }
     }
 
     @Override
     public Void visitUnaryOpNode(UnaryOpNode node) {
         node.expr.accept(this);
-        String type = getType(node.expr);
+        Type type = getType(node.expr);
         if (type == null) return null;
 
         if (node.op.equals("!")) {
-            if (isBoolean(type)) setType(node, "boolean");
+            if (isBoolean(type)) setType(node, Type.BOOLEAN);
             else reportError(node, "Operator ! requires boolean operand.");
         } else if (node.op.equals("-") || node.op.equals("+") || node.op.contains("++") || node.op.contains("--")) {
-            if (isNumeric(type)) setType(node, "int");
+            if (isNumeric(type)) setType(node, Type.INT);
             else reportError(node, "Operator " + node.op + " requires numeric operand.");
         }
         return null;
@@ -295,11 +361,11 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
     @Override
     public Void visitIdentifierNode(IdentifierNode node) {
         if ("this".equals(node.name)) {
-            if (currentClassName != null) {
-                setType(node, currentClassName);
+            if (currentClass != null) {
+                setType(node, currentClass.type());
             } else {
                 reportError(node, "'this' used outside of class context.");
-                setType(node, "unknown");
+                setType(node, Type.UNKNOWN);
             }
             return null;
         }
@@ -308,16 +374,16 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
         if (sym.isPresent()) {
             Symbol s = sym.get();
             if (s.declaration() instanceof VarDeclNode) {
-                setType(node, ((VarDeclNode) s.declaration()).type);
+                setType(node, declaredType((VarDeclNode) s.declaration()));
             } else if (s.declaration() instanceof FunctionDeclNode) {
                  // Functions used as values not really supported except in calls, but let's handle gracefull
-                 setType(node, "unknown");
+                 setType(node, Type.UNKNOWN);
             } else {
-                setType(node, "unknown");
+                setType(node, Type.UNKNOWN);
             }
         } else {
             reportError(node, "Undefined identifier: " + node.name);
-            setType(node, "unknown");
+            setType(node, Type.UNKNOWN);
         }
         return null;
     }
@@ -325,41 +391,36 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
     @Override
     public Void visitLiteralNode(LiteralNode node) {
         if (node.value.matches("-?\\d+")) {
-            setType(node, "int");
+            setType(node, Type.INT);
         } else if (node.value.equals("true") || node.value.equals("false")) {
-            setType(node, "boolean");
+            setType(node, Type.BOOLEAN);
         } else if (node.value.equals("null")) {
-            setType(node, "null");
+            setType(node, Type.NULL);
         } else {
-            setType(node, "String");
+            setType(node, Type.STRING);
         }
         return null;
     }
 
     @Override
     public Void visitMethodCallNode(MethodCallNode node) {
-        String className = null;
+        Type objType = null;
 
         // 1. Resolve Object
         if (node.object != null) {
             node.object.accept(this);
-            String objType = getType(node.object);
+            objType = getType(node.object);
             if (objType == null || isPrimitive(objType)) {
                 reportError(node.object, "Cannot call method on primitive or null type: " + objType);
                 return null;
             }
-            className = objType;
         } else {
             // Implicit 'this' or local function
-            if (currentClassName != null) {
-                Optional<Symbol> classSym = table.lookup(currentClassName);
-                if (classSym.isPresent()) {
-                    ClassDeclNode classDecl = (ClassDeclNode) classSym.get().declaration();
-                    FunctionDeclNode method = findMethod(classDecl, node.methodName);
-                    if (method != null) {
-                         checkMethodCall(node, method);
-                         return null;
-                    }
+            if (currentClass != null) {
+                FunctionDeclNode method = findMethod(currentClass, node.methodName);
+                if (method != null) {
+                     checkMethodCall(node, method);
+                     return null;
                 }
             }
 
@@ -374,19 +435,18 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
             return null;
         }
 
-        // 2. Lookup Class
-        if (className != null) {
-            Optional<Symbol> classSym = table.lookup(className);
-            if (!classSym.isPresent() || classSym.get().kind() != Kind.TYPE) {
-                reportError(node, "Undefined class: " + className);
+        // 2. Lookup Class: a class type knows its declaration
+        if (objType != null) {
+            if (!(objType instanceof ClassType)) {
+                reportError(node, "Undefined class: " + objType);
                 return null;
             }
-            ClassDeclNode classDecl = (ClassDeclNode) classSym.get().declaration();
+            ClassDeclNode classDecl = ((ClassType) objType).declaration();
 
             // 3. Lookup Method in Class
             FunctionDeclNode method = findMethod(classDecl, node.methodName);
             if (method == null) {
-                reportError(node, "Method " + node.methodName + " not found in class " + className);
+                reportError(node, "Method " + node.methodName + " not found in class " + objType);
                 return null;
             }
 
@@ -404,15 +464,15 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
         for (int i = 0; i < node.args.size(); i++) {
             ExpressionNode arg = node.args.get(i);
             arg.accept(this);
-            String argType = getType(arg);
-            String paramType = method.params.get(i).type;
+            Type argType = getType(arg);
+            Type paramType = declaredType(method.params.get(i));
 
             if (!isCompatible(paramType, argType)) {
                 reportError(arg, "Argument " + (i+1) + " type mismatch: expected " + paramType + ", got " + argType);
             }
         }
 
-        setType(node, method.returnType);
+        setType(node, returnType(method));
     }
 
     private FunctionDeclNode findMethod(ClassDeclNode classDecl, String methodName) {
@@ -424,14 +484,13 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visitNewExprNode(NewExprNode node) {
-        Optional<Symbol> sym = table.lookup(node.className);
-        if (!sym.isPresent() || sym.get().kind() != Kind.TYPE) {
+        ClassDeclNode classDecl = lookupClass(node.className);
+        if (classDecl == null) {
             reportError(node, "Undefined class: " + node.className);
-            setType(node, "unknown");
+            setType(node, Type.UNKNOWN);
             return null;
         }
 
-        ClassDeclNode classDecl = (ClassDeclNode) sym.get().declaration();
         FunctionDeclNode constructor = findMethod(classDecl, node.className); // Constructor has same name as class? Usually yes in Java.
         // Wait, the grammar uses ConstructorDecl which sets name=id.image.
         // Let's verify if ConstructorDecl correctly sets the name.
@@ -444,8 +503,8 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
                  for (int i = 0; i < node.args.size(); i++) {
                     ExpressionNode arg = node.args.get(i);
                     arg.accept(this);
-                    String argType = getType(arg);
-                    String paramType = constructor.params.get(i).type;
+                    Type argType = getType(arg);
+                    Type paramType = declaredType(constructor.params.get(i));
                     if (!isCompatible(paramType, argType)) {
                          reportError(arg, "Constructor Argument " + (i+1) + " type mismatch.");
                     }
@@ -457,36 +516,35 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
             }
         }
 
-        setType(node, node.className);
+        setType(node, classDecl.type());
         return null;
     }
 
     @Override
     public Void visitMemberAccessNode(MemberAccessNode node) {
         node.object.accept(this);
-        String objType = getType(node.object);
+        Type objType = getType(node.object);
 
         if (objType == null || isPrimitive(objType)) {
             reportError(node, "Cannot access member of non-object type: " + objType);
             return null;
         }
 
-        Optional<Symbol> classSym = table.lookup(objType);
-        if (!classSym.isPresent()) {
+        if (!(objType instanceof ClassType)) {
              reportError(node, "Class not found: " + objType);
              return null;
         }
 
-        ClassDeclNode classDecl = (ClassDeclNode) classSym.get().declaration();
+        ClassDeclNode classDecl = ((ClassType) objType).declaration();
         for (VarDeclNode field : classDecl.fields) {
             if (field.name.equals(node.memberName)) {
-                setType(node, field.type);
+                setType(node, declaredType(field));
                 return null;
             }
         }
 
         reportError(node, "Field " + node.memberName + " not found in class " + objType);
-        setType(node, "unknown");
+        setType(node, Type.UNKNOWN);
         return null;
     }
 
@@ -495,12 +553,12 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
         if (currentMethodReturnType != null) {
             if (node.getExpr() != null) {
                 node.getExpr().accept(this);
-                String actual = getType(node.getExpr());
+                Type actual = getType(node.getExpr());
                 if (!isCompatible(currentMethodReturnType, actual)) {
                     reportError(node, "Return type mismatch: expected " + currentMethodReturnType + ", got " + actual);
                 }
             } else {
-                if (!"void".equals(currentMethodReturnType)) {
+                if (currentMethodReturnType != Type.VOID) {
                     reportError(node, "Missing return value for non-void function.");
                 }
             }
@@ -508,8 +566,8 @@ public class TypeCheckingVisitor implements ASTVisitor<Void> {
         return null;
     }
 
-    private String currentClassName = null;
-    private String currentMethodReturnType = null;
+    private ClassDeclNode currentClass = null;
+    private Type currentMethodReturnType = null;
 
     @Override public Void visitIfNode(IfNode node) {
         node.getCond().accept(this);
@@ -0,0 +1,15 @@
+package compiler.infra;
+
+/**
+ * Pieces of CompilerContext state that passes read and produce.
+ * The orchestrator uses these declarations to order passes and to
+ * skip passes whose results are not needed.
+ */
+public enum Artifact {
+    SOURCE,        // the input stream
+    AST,           // the parsed frontend AST
+    SYMBOL_TABLE,  // the populated symbol table
+    TYPED_AST,     // resolved ExpressionNode types on the AST
+    TAC,           // three-address code instructions
+    CLASS_FILES    // generated JVM class bytes
+}
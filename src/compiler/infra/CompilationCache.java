@@ -0,0 +1,271 @@
+package compiler.infra;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed on-disk cache of compilation results, shared by every
+ * compiler process that points at the same directory.
+ *
+ * The key is a SHA-256 of the compiler's code (see {@link CompilerVersion}), the
+ * passes that run and the source bytes. An entry is a directory holding the generated .class files and
+ * a diagnostics file. Entries are written into a private temporary directory and
+ * published with an atomic rename, so readers only ever see complete entries.
+ * Writers of the same key are serialized with a file lock so the work is done once;
+ * the lock file is removed again once the entry is published.
+ * An entry that cannot be read in full is a miss and leaves the context untouched.
+ *
+ * Layout: root/ab/abcdef.../{ClassName.class, diagnostics.tsv}
+ */
+public class CompilationCache {
+    private static final String DIAGNOSTICS_FILE = "diagnostics.tsv";
+    private static final String CLASS_SUFFIX = ".class";
+
+    private static final Object[] STRIPES = new Object[64];
+    static {
+        for (int i = 0; i < STRIPES.length; i++) STRIPES[i] = new Object();
+    }
+
+    private final Path root;
+
+    public CompilationCache(Path root) {
+        this.root = root;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Computes the cache key for a source.
+     * @param source the raw source bytes
+     * @param options anything else that changes the output (the passes that run)
+     */
+    public static String key(byte[] source, String options) {
+        return key(ByteBuffer.wrap(source), options);
+    }
+
+    /**
+     * Computes the cache key for the bytes between the buffer's position and limit,
+     * without copying them (the buffer's position is not changed).
+     */
+    public static String key(ByteBuffer source, String options) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(CompilerVersion.HASH.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(options.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(source.duplicate());
+            StringBuilder sb = new StringBuilder(64);
+            for (byte b : md.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Returns the cache key of the context's source, or null if it has no input.
+     * A stream source is read into memory and a fresh stream left in its place.
+     */
+    public static String key(CompilerContext context, String options) throws IOException {
+        ByteBuffer mapped = context.getSource();
+        if (mapped != null) return key(mapped, options);
+        InputStream in = context.getInputStream();
+        if (in == null) return null;
+        byte[] source = in.readAllBytes();
+        context.setInputStream(new ByteArrayInputStream(source));
+        return key(source, options);
+    }
+
+    private Path entryDir(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    /**
+     * On a hit, replays the cached diagnostics into the context, records the class
+     * files in it and writes them to its output directory. The entry is read in full
+     * first, so the context is not touched if it is damaged.
+     * @return true if the entry existed and was restored
+     * @throws IOException if the entry cannot be read or is damaged
+     */
+    public boolean restore(String key, CompilerContext context) throws IOException {
+        Path entry = entryDir(key);
+        if (!Files.isDirectory(entry)) return false;
+
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> files = Files.list(entry)) {
+            files.filter(p -> p.getFileName().toString().endsWith(CLASS_SUFFIX))
+                 .sorted()
+                 .forEach(paths::add);
+        }
+        Map<String, byte[]> classFiles = new LinkedHashMap<>();
+        for (Path p : paths) classFiles.put(p.getFileName().toString(), Files.readAllBytes(p));
+        List<CachedDiagnostic> diagnostics = readDiagnostics(entry.resolve(DIAGNOSTICS_FILE), context.getSourceName());
+
+        for (CachedDiagnostic d : diagnostics) context.getDiagnostics().report(d.severity, d.message, d.location);
+        Path outDir = context.getOutputDirectory();
+        if (outDir != null) Files.createDirectories(outDir);
+        for (Map.Entry<String, byte[]> cls : classFiles.entrySet()) {
+            String fileName = cls.getKey();
+            context.addClassFile(fileName.substring(0, fileName.length() - CLASS_SUFFIX.length()), cls.getValue());
+            Files.write(outDir != null ? outDir.resolve(fileName) : Path.of(fileName), cls.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Publishes the context's class files and diagnostics under the key.
+     * Does nothing if another process already published the same key.
+     */
+    public void store(String key, CompilerContext context) throws IOException {
+        Path entry = entryDir(key);
+        if (Files.isDirectory(entry)) return;
+
+        Path shard = entry.getParent();
+        Files.createDirectories(shard);
+        Path lockFile = shard.resolve(key + ".lock");
+        // FileLock only excludes other processes; threads of this process take the stripe first
+        synchronized (STRIPES[Math.floorMod(key.hashCode(), STRIPES.length)]) {
+            publish(key, entry, shard, lockFile, context);
+        }
+    }
+
+    private void publish(String key, Path entry, Path shard, Path lockFile, CompilerContext context) throws IOException {
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                if (Files.isDirectory(entry)) return; // published while we waited
+
+                Path tmp = Files.createTempDirectory(shard, key + ".tmp");
+                try {
+                    for (Map.Entry<String, byte[]> cls : context.getClassFiles().entrySet()) {
+                        Files.write(tmp.resolve(cls.getKey() + CLASS_SUFFIX), cls.getValue());
+                    }
+                    writeDiagnostics(tmp.resolve(DIAGNOSTICS_FILE), context.getDiagnostics());
+                    try {
+                        Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(tmp, entry);
+                    }
+                } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                    // another process without lock support won the race; its entry is equivalent
+                } finally {
+                    deleteRecursively(tmp);
+                }
+            } finally {
+                // waiters find the entry published and leave it; later writers make a new lock file
+                if (Files.isDirectory(entry)) Files.deleteIfExists(lockFile);
+                lock.release();
+            }
+        }
+    }
+
+    // The key covers the content, not the path, so an entry is shared by identical files.
+    // Locations are stored without their file, which is the one being compiled when replayed.
+    private static void writeDiagnostics(Path file, Diagnostics diagnostics) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Diagnostics.Diagnostic d : diagnostics.getDiagnostics()) {
+            SourceLocation loc = d.getLocation();
+            sb.append(d.getSeverity()).append('\t');
+            if (loc != null) {
+                sb.append('\t')
+                  .append(loc.getLine()).append('\t')
+                  .append(loc.getColumn()).append('\t')
+                  .append(escape(loc.getContext()));
+            } else {
+                sb.append("\t\t\t");
+            }
+            sb.append('\t').append(escape(d.getMessage())).append('\n');
+        }
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class CachedDiagnostic {
+        final Diagnostics.Severity severity;
+        final String message;
+        final SourceLocation location;
+
+        CachedDiagnostic(Diagnostics.Severity severity, String message, SourceLocation location) {
+            this.severity = severity;
+            this.message = message;
+            this.location = location;
+        }
+    }
+
+    private static List<CachedDiagnostic> readDiagnostics(Path file, String sourceName) throws IOException {
+        List<CachedDiagnostic> diagnostics = new ArrayList<>();
+        if (!Files.exists(file)) return diagnostics;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) continue;
+            String[] f = line.split("\t", -1);
+            try {
+                if (f.length != 6) throw new IllegalArgumentException(f.length + " fields");
+                Diagnostics.Severity severity = Diagnostics.Severity.valueOf(f[0]);
+                SourceLocation loc = null;
+                if (!f[2].isEmpty()) {
+                    loc = new SourceLocation(sourceName, Integer.parseInt(f[2]), Integer.parseInt(f[3]), unescape(f[4]));
+                }
+                diagnostics.add(new CachedDiagnostic(severity, unescape(f[5]), loc));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Damaged diagnostics in cache entry " + file.getParent() + ": " + e.getMessage(), e);
+            }
+        }
+        return diagnostics;
+    }
+
+    // null is written as the empty field; "\0" marks an empty (non-null) string
+    private static String escape(String s) {
+        if (s == null) return "";
+        if (s.isEmpty()) return "\\0";
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String s) {
+        if (s.isEmpty()) return null;
+        if (s.equals("\\0")) return "";
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException ignored) {
+            // leftover temp directories are harmless
+        }
+    }
+}
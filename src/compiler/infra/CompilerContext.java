@@ -1,8 +1,17 @@
 package compiler.infra;
 
 import compiler.frontend.ast.ASTNode;
+import compiler.frontend.ast.AstArena;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import compiler.middle.SymbolTable;
 import compiler.middle.SymbolTableImpl;
 
@@ -12,9 +21,29 @@ import compiler.middle.SymbolTableImpl;
  */
 public class CompilerContext {
     private InputStream inputStream;
+    // in-memory source (e.g. a mapped file); used instead of inputStream when set
+    private ByteBuffer source;
+    // file the source was mapped from by setSource(Path), if any
+    private Path sourceFile;
+    // whether the front end may load and store parsed ASTs next to sourceFile
+    private boolean astCaching;
+    // display name of the source being compiled (file path or "<stdin>")
+    private String sourceName;
+    // directory generated .class files are written to (null means the working directory)
+    private Path outputDirectory;
+    // generated class files keyed by class name, in generation order
+    private final Map<String, byte[]> classFiles = new LinkedHashMap<>();
     private final Diagnostics diagnostics = new Diagnostics();
+    // span recorder for pass timings; disabled unless tracing was requested
+    private Tracer tracer = Tracer.disabled();
+    // where passes fork their parallel work; null for the common pool
+    private ForkJoinPool pool;
     // Hold a reference to the frontend AST (may be null if parsing hasn't run)
     private ASTNode ast;
+    // chunks the AST's child lists were taken from; created by the first getAstArena()
+    private AstArena astArena;
+    // line map of the source in the FileTable, which AST and diagnostic locations point into
+    private LineMap lines;
     // optional symbol table built by semantic passes
     private SymbolTable symbolTable;
     // TAC instructions
@@ -30,12 +59,107 @@ public class CompilerContext {
 
     public void setInputStream(InputStream inputStream) {
         this.inputStream = inputStream;
+        this.source = null;
+        this.sourceFile = null;
     }
 
     public InputStream getInputStream() {
         return inputStream;
     }
 
+    /**
+     * Use the source bytes between the buffer's position and limit as input.
+     * The front end lexes them in place, so the buffer must not change afterwards.
+     */
+    public void setSource(ByteBuffer source) {
+        this.source = source;
+        this.inputStream = null;
+        this.sourceFile = null;
+    }
+
+    /**
+     * Use an in-memory copy of the source as input.
+     */
+    public void setSource(byte[] source) {
+        setSource(ByteBuffer.wrap(source));
+    }
+
+    /**
+     * Memory-map a source file read-only and use it as input.
+     */
+    public void setSource(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            setSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        this.sourceFile = file;
+    }
+
+    /**
+     * The file set by setSource(Path), or null when the source came from elsewhere.
+     */
+    public Path getSourceFile() {
+        return sourceFile;
+    }
+
+    /**
+     * Let the front end keep parsed ASTs beside a source file and load them instead of
+     * parsing when the file has not changed (see compiler.frontend.AstCache).
+     */
+    public void setAstCaching(boolean astCaching) {
+        this.astCaching = astCaching;
+    }
+
+    public boolean isAstCaching() {
+        return astCaching;
+    }
+
+    /**
+     * The in-memory source set by setSource (null when input comes from a stream).
+     * Each call returns an independent view, so readers cannot disturb each other.
+     */
+    public ByteBuffer getSource() {
+        return source != null ? source.duplicate() : null;
+    }
+
+    public void setSourceName(String sourceName) {
+        this.sourceName = sourceName;
+    }
+
+    /**
+     * Name of the source being compiled (may be null for anonymous input).
+     */
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    /**
+     * Set the directory that code generation writes class files into.
+     */
+    public void setOutputDirectory(Path outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Directory for generated class files (may be null for the working directory).
+     */
+    public Path getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /**
+     * Record the bytes of a generated class file.
+     */
+    public void addClassFile(String className, byte[] bytes) {
+        classFiles.put(className, bytes);
+    }
+
+    /**
+     * Generated class files keyed by class name, in the order they were produced.
+     */
+    public Map<String, byte[]> getClassFiles() {
+        return classFiles;
+    }
+
     /**
      * Returns the Diagnostics collector for the current compilation.
      */
@@ -43,6 +167,36 @@ public class CompilerContext {
         return diagnostics;
     }
 
+    /**
+     * Returns the Tracer that passes record their timing spans into.
+     */
+    public Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Replace the tracer (e.g. to share one enabled tracer across a batch).
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer != null ? tracer : Tracer.disabled();
+    }
+
+    /**
+     * Returns the pool that passes run their parallel work on: the batch's own pool
+     * while the context is compiled in a batch, otherwise the common pool.
+     */
+    public ForkJoinPool getPool() {
+        return pool != null ? pool : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Set the pool passes fork onto (null for the common pool), so that a batch
+     * limited to -j threads does not also fill the common pool.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
     /**
      * Store the AST produced by the front-end.
      */
@@ -57,6 +211,42 @@ public class CompilerContext {
         return ast;
     }
 
+    /**
+     * The arena the front end takes this compilation's AST child lists from.
+     */
+    public AstArena getAstArena() {
+        if (astArena == null) astArena = new AstArena();
+        return astArena;
+    }
+
+    /**
+     * Register the line map of this compilation's source with the FileTable under the
+     * source name, in place of any registered before, and return its file id.
+     */
+    public int registerLines(LineMap lines) {
+        if (this.lines != null && this.lines != lines) FileTable.release(this.lines);
+        this.lines = lines;
+        return FileTable.register(getSourceName(), lines);
+    }
+
+    /**
+     * Drop the AST with its arena, the symbol table and the TAC, and free the source's
+     * FileTable entry, keeping only what a caller reports once the passes have run:
+     * class files and diagnostics, whose locations are resolved first.
+     * Call it when a compilation is done with but its context is still referenced.
+     */
+    public void release() {
+        if (lines != null) {
+            diagnostics.resolveLocations();
+            FileTable.release(lines);
+            lines = null;
+        }
+        ast = null;
+        astArena = null;
+        symbolTable = null;
+        tacInstructions = null;
+    }
+
     /**
      * Store the symbol table produced by the semantic analysis pass.
      */
@@ -1,7 +1,19 @@
 package compiler.infra;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 /**
  * Coordinates the execution of all compiler passes.
@@ -9,14 +21,44 @@ import java.util.List;
  */
 public class CompilerOrchestrator {
 
-    private final List<CompilerPass> passes = new ArrayList<>();
+    // Each entry yields the pass to run; shared instances always yield the same object.
+    private final List<Supplier<? extends CompilerPass>> passes = new ArrayList<>();
+    // true once a pass instance (rather than a factory) has been registered
+    private boolean hasSharedPasses;
+    private boolean verbose = true;
+    // optional shared cache of compilation results
+    private CompilationCache cache;
 
     /**
      * Adds a compiler pass to the pipeline.
      * @param pass the CompilerPass to add
      */
     public void addPass(CompilerPass pass) {
-        passes.add(pass);
+        passes.add(() -> pass);
+        hasSharedPasses = true;
+    }
+
+    /**
+     * Adds a compiler pass factory to the pipeline.
+     * A fresh pass is created for every compilation, which is required by
+     * {@link #runBatch} because passes keep per-compilation state.
+     * @param factory creates the CompilerPass to run
+     */
+    public void addPass(Supplier<? extends CompilerPass> factory) {
+        passes.add(factory);
+    }
+
+    /** Control whether pass start/end banners are printed (true by default). */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Use a compilation cache. On a hit every pass is skipped and the cached
+     * class files and diagnostics are restored into the context instead.
+     */
+    public void setCache(CompilationCache cache) {
+        this.cache = cache;
     }
 
     /**
@@ -24,16 +66,259 @@ public class CompilerOrchestrator {
      * Each pass may read and modify the shared CompilerContext.
      */
     public void runPasses(CompilerContext context) {
-        for (CompilerPass pass : passes) {
+        List<CompilerPass> pipeline = instantiate();
+        String key = lookupCache(context, pipeline);
+        if (key != null && key.isEmpty()) return; // cache hit
+
+        boolean ok = true;
+        for (CompilerPass pass : pipeline) {
+            if (!runPass(pass, context)) {
+                ok = false;
+                break; // stop pipeline on fatal error
+            }
+        }
+        if (ok) storeCache(key, context);
+    }
+
+    private List<CompilerPass> instantiate() {
+        List<CompilerPass> pipeline = new ArrayList<>(passes.size());
+        for (Supplier<? extends CompilerPass> factory : passes) {
+            pipeline.add(factory.get());
+        }
+        return pipeline;
+    }
+
+    /**
+     * Looks the context up in the cache, restoring it on a hit. The key covers the
+     * passes that run, so runPasses and runScheduled share entries for the same pipeline.
+     * @param pipeline the passes that will run
+     * @return null if caching is off or failed, "" on a hit, otherwise the key to store under
+     */
+    private String lookupCache(CompilerContext context, List<CompilerPass> pipeline) {
+        if (cache == null) return null;
+        Tracer.Span span = context.getTracer().span("cache lookup");
+        try {
+            StringBuilder opts = new StringBuilder();
+            for (CompilerPass pass : pipeline) opts.append('|').append(pass.getClass().getName());
+            String key = CompilationCache.key(context, opts.toString());
+            if (key == null) return null;
+            if (cache.restore(key, context)) {
+                if (verbose) System.out.println("♻️ Cache hit: " + key);
+                return "";
+            }
+            return key;
+        } catch (IOException | RuntimeException e) {
+            // a damaged entry is a miss: restore leaves the context untouched, so compile as usual
+            context.getDiagnostics().log("Compilation cache unavailable: " + e.getMessage());
+            return null;
+        } finally {
+            span.close();
+        }
+    }
+
+    private void storeCache(String key, CompilerContext context) {
+        if (key == null || key.isEmpty()) return;
+        Tracer.Span span = context.getTracer().span("cache store");
+        try {
+            cache.store(key, context);
+        } catch (IOException e) {
+            context.getDiagnostics().log("Could not store compilation result in cache: " + e.getMessage());
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Runs one pass, logging its start and end.
+     * @return false if the pass failed with an exception
+     */
+    private boolean runPass(CompilerPass pass, CompilerContext context) {
+        try {
+            if (verbose) System.out.println("🟢 Running pass: " + pass.name());
+            Tracer.Span span = context.getTracer().span(pass.name());
             try {
-                System.out.println("🟢 Running pass: " + pass.name());
                 pass.execute(context);
-                System.out.println("✅ Completed pass: " + pass.name());
-            } catch (Exception e) {
-                System.err.println("❌ Pass failed: " + pass.name());
-                e.printStackTrace();
-                break; // stop pipeline on fatal error
+            } finally {
+                span.close();
+            }
+            if (verbose) System.out.println("✅ Completed pass: " + pass.name());
+            return true;
+        } catch (Exception e) {
+            System.err.println("❌ Pass failed: " + pass.name());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Runs every pass, scheduled by the artifacts they declare.
+     * @see #runScheduled(CompilerContext, Set, Executor)
+     */
+    public void runScheduled(CompilerContext context) {
+        runScheduled(context, EnumSet.allOf(Artifact.class), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs the passes needed to produce the requested artifacts.
+     * @see #runScheduled(CompilerContext, Set, Executor)
+     */
+    public void runScheduled(CompilerContext context, Set<Artifact> requested) {
+        runScheduled(context, requested, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs passes as a dependency graph built from their declared {@link Artifact}s.
+     * A pass waits for the last earlier producer of everything it reads. Before it
+     * overwrites an artifact, it also waits for that artifact's earlier producer and
+     * for every pass that read the old value. Passes with no such edge between them
+     * run concurrently on the executor. Passes whose products are not (transitively)
+     * needed for {@code requested} are skipped. Passes that declare nothing are
+     * barriers: they always run, after everything before them and before everything
+     * after them. As with {@link #runPasses}, a failed pass stops all passes that
+     * have not started yet.
+     * @param context the shared compilation context
+     * @param requested artifacts the caller wants produced
+     * @param executor runs independent passes
+     */
+    public void runScheduled(CompilerContext context, Set<Artifact> requested, Executor executor) {
+        List<CompilerPass> pipeline = instantiate();
+        boolean[] needed = selectNeeded(pipeline, requested);
+        // only runs that produce class files are worth caching
+        String key = null;
+        if (requested.contains(Artifact.CLASS_FILES)) {
+            List<CompilerPass> running = new ArrayList<>();
+            for (int i = 0; i < pipeline.size(); i++) if (needed[i]) running.add(pipeline.get(i));
+            key = lookupCache(context, running);
+        }
+        if (key != null && key.isEmpty()) return; // cache hit
+
+        List<List<Integer>> deps = buildDependencies(pipeline, needed);
+
+        AtomicBoolean failed = new AtomicBoolean();
+        List<CompletableFuture<Void>> done = new ArrayList<>(pipeline.size());
+        for (int i = 0; i < pipeline.size(); i++) {
+            CompilerPass pass = pipeline.get(i);
+            if (!needed[i]) {
+                if (verbose) System.out.println("⏭️ Skipping pass: " + pass.name() + " (outputs not requested)");
+                done.add(CompletableFuture.completedFuture(null));
+                continue;
+            }
+            CompletableFuture<?>[] before = deps.get(i).stream().map(done::get).toArray(CompletableFuture<?>[]::new);
+            done.add(CompletableFuture.allOf(before).thenRunAsync(() -> {
+                if (!failed.get() && !runPass(pass, context)) {
+                    failed.set(true);
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).join();
+        if (!failed.get()) storeCache(key, context);
+    }
+
+    private static boolean isBarrier(CompilerPass pass) {
+        return pass.reads().isEmpty() && pass.produces().isEmpty();
+    }
+
+    /** Walk backwards from the requested artifacts, keeping passes that contribute to them. */
+    private static boolean[] selectNeeded(List<CompilerPass> pipeline, Set<Artifact> requested) {
+        boolean[] needed = new boolean[pipeline.size()];
+        Set<Artifact> wanted = EnumSet.noneOf(Artifact.class);
+        wanted.addAll(requested);
+        for (int i = pipeline.size() - 1; i >= 0; i--) {
+            CompilerPass pass = pipeline.get(i);
+            if (isBarrier(pass) || pass.produces().stream().anyMatch(wanted::contains)) {
+                needed[i] = true;
+                wanted.addAll(pass.reads());
+            }
+        }
+        return needed;
+    }
+
+    /** For each needed pass, the indices of the needed passes it must wait for. */
+    private static List<List<Integer>> buildDependencies(List<CompilerPass> pipeline, boolean[] needed) {
+        List<List<Integer>> deps = new ArrayList<>(pipeline.size());
+        Map<Artifact, Integer> lastWriter = new EnumMap<>(Artifact.class);
+        Map<Artifact, List<Integer>> readersSinceWrite = new EnumMap<>(Artifact.class);
+        List<Integer> scheduled = new ArrayList<>();
+        int lastBarrier = -1;
+
+        for (int i = 0; i < pipeline.size(); i++) {
+            List<Integer> mine = new ArrayList<>();
+            deps.add(mine);
+            if (!needed[i]) continue;
+
+            CompilerPass pass = pipeline.get(i);
+            if (isBarrier(pass)) {
+                mine.addAll(scheduled);
+                lastBarrier = i;
+            } else {
+                if (lastBarrier >= 0) mine.add(lastBarrier);
+                for (Artifact a : pass.reads()) {
+                    Integer w = lastWriter.get(a);
+                    if (w != null && !mine.contains(w)) mine.add(w);
+                }
+                for (Artifact a : pass.produces()) {
+                    Integer w = lastWriter.get(a);
+                    if (w != null && !mine.contains(w)) mine.add(w);
+                    for (Integer r : readersSinceWrite.getOrDefault(a, List.of())) {
+                        if (r != i && !mine.contains(r)) mine.add(r);
+                    }
+                }
+                for (Artifact a : pass.reads()) {
+                    readersSinceWrite.computeIfAbsent(a, k -> new ArrayList<>()).add(i);
+                }
+                for (Artifact a : pass.produces()) {
+                    lastWriter.put(a, i);
+                    readersSinceWrite.remove(a);
+                }
+            }
+            scheduled.add(i);
+        }
+        return deps;
+    }
+
+    /**
+     * Compiles many independent inputs on a work-stealing pool sized to the available cores.
+     * @see #runBatch(List, int)
+     */
+    public void runBatch(List<CompilerContext> contexts) {
+        runBatch(contexts, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Compiles many independent inputs concurrently, one CompilerContext per input.
+     * Every pass must have been registered as a factory so that no pass instance is
+     * shared between threads. Console echo and banners are suppressed while running;
+     * callers report each context's diagnostics afterwards, in list order, which keeps
+     * the output deterministic regardless of scheduling.
+     * @param contexts one context per input, in the order results should be reported
+     * @param parallelism number of worker threads
+     */
+    public void runBatch(List<CompilerContext> contexts, int parallelism) {
+        if (hasSharedPasses) {
+            throw new IllegalStateException("Batch compilation requires passes registered as factories");
+        }
+        boolean wasVerbose = verbose;
+        verbose = false;
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            List<Future<?>> futures = new ArrayList<>(contexts.size());
+            for (CompilerContext context : contexts) {
+                context.getDiagnostics().setConsoleEcho(false);
+                // the passes' own parallel work joins the batch's threads
+                context.setPool(pool);
+                futures.add(pool.submit(() -> runPasses(context)));
+            }
+            for (Future<?> f : futures) {
+                f.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch compilation failed", e.getCause());
+        } finally {
+            for (CompilerContext context : contexts) context.setPool(null);
+            pool.shutdown();
+            verbose = wasVerbose;
         }
     }
-}
\ No newline at end of file
+}
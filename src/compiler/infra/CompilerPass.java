@@ -1,5 +1,7 @@
 package compiler.infra;
 
+import java.util.Set;
+
 /**
  * Represents a single compiler phase or transformation.
  * Each CompilerPass should perform one logical task such as
@@ -19,4 +21,20 @@ public interface CompilerPass {
      * @throws Exception if this pass encounters an unrecoverable error
      */
     void execute(CompilerContext context) throws Exception;
+
+    /**
+     * Context artifacts this pass reads.
+     * Passes that declare neither reads nor products are treated as barriers
+     * by the scheduler and always run.
+     */
+    default Set<Artifact> reads() {
+        return Set.of();
+    }
+
+    /**
+     * Context artifacts this pass creates or modifies.
+     */
+    default Set<Artifact> produces() {
+        return Set.of();
+    }
 }
\ No newline at end of file
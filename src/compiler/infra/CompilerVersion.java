@@ -0,0 +1,55 @@
+package compiler.infra;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Identity of the compiler's own code, which the on-disk caches key their entries
+ * with so that a rebuilt compiler does not reuse what an older one produced.
+ *
+ * It is a SHA-256 of the compiler's class files, taken where this class was loaded
+ * from: every .class file under the compiler package when running from a class
+ * directory, or the whole jar. A change to any pass therefore invalidates both the
+ * compilation cache and the AST cache without anyone bumping a version number.
+ * If the code cannot be read, the identity is "unknown" and entries are only told
+ * apart by their content.
+ */
+public final class CompilerVersion {
+    /** Hex SHA-256 of the compiler's code, or "unknown". */
+    public static final String HASH = hash();
+
+    /** The first 8 bytes of the hash, or 0 if it is unknown. */
+    public static final long ID = HASH.length() == 64 ? Long.parseUnsignedLong(HASH.substring(0, 16), 16) : 0;
+
+    private CompilerVersion() { }
+
+    private static String hash() {
+        try {
+            Path code = Path.of(CompilerVersion.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            if (Files.isDirectory(code)) {
+                List<Path> classes;
+                try (Stream<Path> files = Files.walk(code.resolve("compiler"))) {
+                    classes = files.filter(p -> p.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+                }
+                for (Path p : classes) {
+                    md.update(code.relativize(p).toString().getBytes(StandardCharsets.UTF_8));
+                    md.update((byte) 0);
+                    md.update(Files.readAllBytes(p));
+                }
+            } else {
+                md.update(Files.readAllBytes(code));
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (Exception e) {
+            // no code source (e.g. a custom class loader) or unreadable: caches still key by content
+            return "unknown";
+        }
+    }
+}
@@ -2,51 +2,152 @@ package compiler.infra;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.io.PrintStream;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 /**
  * Comprehensive diagnostics collector and reporter for the compiler pipeline.
  * Supports errors and warnings with source locations and logging capabilities.
+ *
+ * Safe to use from concurrently running passes: every reporting thread appends
+ * to its own buffer without locking, and readers merge the buffers into one list
+ * ordered by source location, so the result does not depend on thread timing.
+ * The buffers are kept in a map owned by the instance rather than in thread-locals,
+ * so pooled threads that outlive a compilation hold nothing of it.
+ *
+ * Reporting is kept cheap for inputs with huge numbers of warnings: a diagnostic
+ * stores only a monotonic nano timestamp and is formatted when it is rendered,
+ * and severity counts are maintained as it is reported. A location reported as a
+ * packed FileTable long is likewise resolved only when the diagnostic is formatted
+ * or sorted.
  */
 public class Diagnostics {
     public enum Severity { WARNING, ERROR }
 
+    // wall-clock anchor used to turn System.nanoTime() stamps into dates when rendering
+    private static final Instant WALL_ORIGIN = Instant.now();
+    private static final long NANO_ORIGIN = System.nanoTime();
+
+    private static String formatTimestamp(long nanoTime) {
+        Instant when = WALL_ORIGIN.plusNanos(nanoTime - NANO_ORIGIN);
+        return LocalDateTime.ofInstant(when, ZoneId.systemDefault()).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
     /** Represents a single diagnostic message. */
-    private static class Diagnostic {
+    public static class Diagnostic {
         final Severity severity;
         final String message;
-        final SourceLocation location;
-        final LocalDateTime timestamp;
+        final long position; // packed by FileTable, or NO_LOCATION
+        private SourceLocation location; // resolved from position on first use; racy but idempotent
+        final long nanoTime;
+        private String rendered; // cached toString(); racy but idempotent
 
-        Diagnostic(Severity severity, String message, SourceLocation location, LocalDateTime timestamp) {
+        Diagnostic(Severity severity, String message, SourceLocation location, long nanoTime) {
             this.severity = severity;
             this.message = message;
+            this.position = FileTable.NO_LOCATION;
             this.location = location;
-            this.timestamp = timestamp;
+            this.nanoTime = nanoTime;
+        }
+
+        Diagnostic(Severity severity, String message, long position, long nanoTime) {
+            this.severity = severity;
+            this.message = message;
+            this.position = position;
+            this.nanoTime = nanoTime;
         }
+
+        public Severity getSeverity() { return severity; }
+        public String getMessage() { return message; }
+        public SourceLocation getLocation() {
+            SourceLocation l = location;
+            if (l == null && position != FileTable.NO_LOCATION) location = l = FileTable.resolve(position);
+            return l;
+        }
+        /** System.nanoTime() at the moment of reporting. */
+        public long getNanoTime() { return nanoTime; }
+
         @Override
         public String toString() {
+            String r = rendered;
+            if (r != null) return r;
             StringBuilder sb = new StringBuilder();
             // [YYYY-MM-DD HH:mm:ss] ERROR file:line:col: message
             sb.append('[')
-              .append(timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+              .append(formatTimestamp(nanoTime))
               .append("] ")
               .append(severity)
               .append(' ');
             
+            SourceLocation location = getLocation();
             if (location != null) {
                 sb.append(location).append(": ");
             }
             
             sb.append(message);
-            return sb.toString();
+            rendered = r = sb.toString();
+            return r;
+        }
+    }
+
+    /**
+     * Append-only buffer written by a single thread and readable from any thread.
+     * The writer stores the element before publishing the new size through the
+     * volatile field, so a reader that sees size n also sees the first n elements.
+     */
+    private static final class Buffer {
+        private volatile Diagnostic[] items = new Diagnostic[16];
+        private volatile int size;
+        // per-severity totals, including errors dropped by the cap; written only by the owner
+        private volatile int errors;
+        private volatile int warnings;
+
+        void count(Severity severity) {
+            if (severity == Severity.ERROR) errors = errors + 1;
+            else warnings = warnings + 1;
+        }
+
+        void add(Diagnostic d) {
+            Diagnostic[] a = items;
+            int n = size;
+            if (n == a.length) {
+                a = java.util.Arrays.copyOf(a, n * 2);
+                items = a;
+            }
+            a[n] = d;
+            size = n + 1;
+        }
+
+        void drainTo(List<Diagnostic> out) {
+            int n = size;          // read size first ...
+            Diagnostic[] a = items; // ... so this array holds at least n elements
+            for (int i = 0; i < n; i++) out.add(a[i]);
         }
     }
 
-    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    /** Location-less diagnostics first, then by file, line, column; ties broken by content. */
+    private static final Comparator<Diagnostic> ORDER = Comparator
+        .comparing((Diagnostic d) -> d.getLocation() != null)
+        .thenComparing(d -> d.getLocation() != null && d.getLocation().getFile() != null ? d.getLocation().getFile() : "")
+        .thenComparingInt(d -> d.getLocation() != null ? d.getLocation().getLine() : 0)
+        .thenComparingInt(d -> d.getLocation() != null ? d.getLocation().getColumn() : 0)
+        .thenComparing(d -> d.severity)
+        .thenComparing(d -> d.message);
+
+    // each reporting thread's buffer; replaced as a whole by clear()
+    private volatile ConcurrentHashMap<Thread, Buffer> buffers = new ConcurrentHashMap<>();
+    private volatile boolean errorSeen;
+    private volatile boolean warningSeen;
+    // 0 means unlimited; otherwise errors beyond this many are counted but not kept
+    private volatile int maxErrors;
+    private final AtomicInteger errorsKept = new AtomicInteger();
     private PrintStream logStream = System.out;  // default to stdout
     private boolean consoleEcho = true;          // echo to console by default
 
@@ -57,6 +158,13 @@ public class Diagnostics {
         report(Severity.ERROR, message, location);
     }
 
+    /**
+     * Report an error at a location packed by FileTable.
+     */
+    public void reportError(String message, long location) {
+        report(Severity.ERROR, message, location);
+    }
+
     /**
      * Report an error without location info.
      */
@@ -71,6 +179,13 @@ public class Diagnostics {
         report(Severity.WARNING, message, location);
     }
 
+    /**
+     * Report a warning at a location packed by FileTable.
+     */
+    public void reportWarning(String message, long location) {
+        report(Severity.WARNING, message, location);
+    }
+
     /**
      * Report a warning without location info.
      */
@@ -85,9 +200,39 @@ public class Diagnostics {
         reportError(message);
     }
 
-    private void report(Severity severity, String message, SourceLocation location) {
-        Diagnostic d = new Diagnostic(severity, message, location, LocalDateTime.now());
-        diagnostics.add(d);
+    private Buffer localBuffer() {
+        ConcurrentHashMap<Thread, Buffer> map = buffers;
+        Thread thread = Thread.currentThread();
+        Buffer b = map.get(thread);
+        return b != null ? b : map.computeIfAbsent(thread, t -> new Buffer());
+    }
+
+    /** Report a diagnostic of the given severity (also used to replay cached results). */
+    public void report(Severity severity, String message, SourceLocation location) {
+        report(severity, message, location, FileTable.NO_LOCATION);
+    }
+
+    /** Report a diagnostic at a location packed by FileTable, resolved only when it is formatted. */
+    public void report(Severity severity, String message, long location) {
+        report(severity, message, null, location);
+    }
+
+    private void report(Severity severity, String message, SourceLocation location, long position) {
+        Buffer buffer = localBuffer();
+        buffer.count(severity);
+        if (severity == Severity.ERROR) {
+            errorSeen = true;
+            int cap = maxErrors;
+            if (cap > 0 && errorsKept.incrementAndGet() > cap) {
+                return; // counted in the summary, but not kept or echoed
+            }
+        } else {
+            warningSeen = true;
+        }
+        Diagnostic d = location != null || position == FileTable.NO_LOCATION
+            ? new Diagnostic(severity, message, location, System.nanoTime())
+            : new Diagnostic(severity, message, position, System.nanoTime());
+        buffer.add(d);
         if (consoleEcho) {
             logStream.println(d);
             logStream.flush();
@@ -96,35 +241,50 @@ public class Diagnostics {
 
     /** Log a general message (non-error) to the output. */
     public void log(String message) {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-        String formatted = String.format("[%s] %s", timestamp, message);
         if (consoleEcho) {
+            String formatted = "[" + formatTimestamp(System.nanoTime()) + "] " + message;
             logStream.println(formatted);
             logStream.flush();
         }
     }
 
+    /** Cheap enough to poll from any thread, e.g. to stop parallel passes early. */
     public boolean hasErrors() {
-        return diagnostics.stream().anyMatch(d -> d.severity == Severity.ERROR);
+        return errorSeen;
     }
 
     public boolean hasWarnings() {
-        return diagnostics.stream().anyMatch(d -> d.severity == Severity.WARNING);
+        return warningSeen;
+    }
+
+    /** Merge all per-thread buffers into one list in source-location order. */
+    private List<Diagnostic> merged() {
+        List<Diagnostic> all = new ArrayList<>();
+        for (Buffer b : buffers.values()) {
+            b.drainTo(all);
+        }
+        all.sort(ORDER);
+        return all;
+    }
+
+    /** Resolve every packed location now, so the diagnostics outlive their FileTable entries. */
+    void resolveLocations() {
+        for (Diagnostic d : merged()) d.getLocation();
     }
 
     public List<Diagnostic> getDiagnostics() {
-        return Collections.unmodifiableList(diagnostics);
+        return Collections.unmodifiableList(merged());
     }
 
     public List<String> getErrors() {
-        return diagnostics.stream()
+        return merged().stream()
             .filter(d -> d.severity == Severity.ERROR)
             .map(Diagnostic::toString)
             .collect(java.util.stream.Collectors.toList());
     }
 
     public List<String> getWarnings() {
-        return diagnostics.stream()
+        return merged().stream()
             .filter(d -> d.severity == Severity.WARNING)
             .map(Diagnostic::toString)
             .collect(java.util.stream.Collectors.toList());
@@ -135,20 +295,49 @@ public class Diagnostics {
         this.logStream = stream != null ? stream : System.out;
     }
 
+    /**
+     * Keep at most this many errors (0, the default, keeps all). Later errors
+     * still count towards hasErrors() and the summary.
+     */
+    public void setMaxErrors(int maxErrors) {
+        this.maxErrors = Math.max(0, maxErrors);
+    }
+
+    /** Number of errors reported past the cap and therefore not kept. */
+    public int getSuppressedErrorCount() {
+        int cap = maxErrors;
+        return cap > 0 ? Math.max(0, errorCount() - cap) : 0;
+    }
+
+    private int errorCount() {
+        int n = 0;
+        for (Buffer b : buffers.values()) n += b.errors;
+        return n;
+    }
+
+    private int warningCount() {
+        int n = 0;
+        for (Buffer b : buffers.values()) n += b.warnings;
+        return n;
+    }
+
     /** Control whether messages are echoed to console (true by default). */
     public void setConsoleEcho(boolean echo) {
         this.consoleEcho = echo;
     }
 
-    /** Clear all accumulated diagnostics. */
+    /** Clear all accumulated diagnostics. Reports racing with clear() may be lost. */
     public void clear() {
-        diagnostics.clear();
+        buffers = new ConcurrentHashMap<>();
+        errorSeen = false;
+        warningSeen = false;
+        errorsKept.set(0);
     }
 
     /** Return a summary string of all diagnostics. */
     public String getSummary() {
-        long errors = diagnostics.stream().filter(d -> d.severity == Severity.ERROR).count();
-        long warnings = diagnostics.stream().filter(d -> d.severity == Severity.WARNING).count();
-        return String.format("%d error(s), %d warning(s)", errors, warnings);
+        String summary = errorCount() + " error(s), " + warningCount() + " warning(s)";
+        int suppressed = getSuppressedErrorCount();
+        return suppressed > 0 ? summary + " (" + suppressed + " error(s) not shown)" : summary;
     }
 }
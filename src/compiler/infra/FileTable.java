@@ -0,0 +1,115 @@
+package compiler.infra;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Compiler-wide registry of source files, so that a source location fits in a long.
+ *
+ * Every LineMap that AST nodes point into is given a small file id, and a location
+ * is packed as the file id (high 32 bits) and the source offset (low 32 bits).
+ * Nodes store only that long; the file's path and line map are looked up here, and
+ * a {@link SourceLocation} is built, only when a diagnostic is formatted.
+ *
+ * Every line map gets an id of its own, so compilations of the same path, even
+ * concurrent ones, each resolve their locations against the text they read. An
+ * entry stays until {@link #release} frees it for reuse, which a compilation's
+ * context does when it is released (see CompilerContext.release).
+ */
+public final class FileTable {
+    /** The location of a node the parser did not place. */
+    public static final long NO_LOCATION = -1L;
+
+    private static final Map<LineMap, Integer> IDS = new IdentityHashMap<>();
+    private static final ArrayDeque<Integer> FREE = new ArrayDeque<>();
+
+    // indexed by file id and replaced when grown, so resolving never takes the lock
+    private static volatile Entry[] entries = new Entry[16];
+    private static int next;
+
+    private static final class Entry {
+        final String path;
+        final LineMap lines;
+
+        Entry(String path, LineMap lines) {
+            this.path = path;
+            this.lines = lines;
+        }
+    }
+
+    private FileTable() { }
+
+    /** Registers lines as the line map of the file at path (null if it has none) and returns its id. */
+    public static synchronized int register(String path, LineMap lines) {
+        Integer id = IDS.get(lines);
+        if (id == null) {
+            id = allocate();
+            IDS.put(lines, id);
+        }
+        entries[id] = new Entry(path, lines);
+        return id;
+    }
+
+    /** Id of the file lines belongs to, registering it without a path if it is new. */
+    public static synchronized int idOf(LineMap lines) {
+        Integer id = IDS.get(lines);
+        return id != null ? id : register(null, lines);
+    }
+
+    /** Frees the entry of lines; locations in it no longer resolve. */
+    public static synchronized void release(LineMap lines) {
+        Integer id = IDS.remove(lines);
+        if (id == null) return;
+        entries[id] = null;
+        FREE.push(id);
+    }
+
+    private static int allocate() {
+        if (!FREE.isEmpty()) return FREE.pop();
+        if (next == entries.length) entries = Arrays.copyOf(entries, next * 2);
+        return next++;
+    }
+
+    public static long location(int file, int offset) {
+        return (long) file << 32 | (offset & 0xFFFFFFFFL);
+    }
+
+    public static int fileOf(long location) {
+        return (int) (location >> 32);
+    }
+
+    public static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /** Path the file was registered under, or null. */
+    public static String path(int file) {
+        Entry entry = entry(file);
+        return entry != null ? entry.path : null;
+    }
+
+    /** The file's line map, or null if the id is not registered. */
+    public static LineMap lines(int file) {
+        Entry entry = entry(file);
+        return entry != null ? entry.lines : null;
+    }
+
+    /** The location as a SourceLocation, or null for NO_LOCATION and released files. */
+    public static SourceLocation resolve(long location) {
+        Entry entry = entry(fileOf(location));
+        if (entry == null) return null;
+        return new SourceLocation(entry.path, entry.lines, offsetOf(location));
+    }
+
+    private static Entry entry(int file) {
+        Entry[] e = entries;
+        return file >= 0 && file < e.length ? e[file] : null;
+    }
+
+    /** Number of files registered and not released. */
+    public static synchronized int size() {
+        return IDS.size();
+    }
+}
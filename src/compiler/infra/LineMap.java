@@ -0,0 +1,177 @@
+package compiler.infra;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Sorted table of the offsets at which source lines start, used to turn a
+ * character offset into a line and column only when one is actually needed.
+ *
+ * The table is filled by feeding it every character of the source once, in order.
+ * A line ends after "\n", "\r\n" or a lone "\r". Columns count characters from the
+ * start of the line, so a tab is one column.
+ *
+ * A UTF-8 source may be fed byte by byte instead, with {@link #advanceByte}; offsets
+ * then count bytes. The offsets of continuation bytes are recorded, so columns still
+ * count characters (code points) on lines that are not pure ASCII.
+ */
+public class LineMap {
+    private int[] starts;
+    private int count = 1;        // starts[0] == 0
+    private int length;           // characters fed so far
+    private boolean prevCharIsCR;
+    // offsets of UTF-8 continuation bytes, ascending; only a non-ASCII byte source has any
+    private int[] continuations;
+    private int continuationCount;
+
+    public LineMap() {
+        this(64);
+    }
+
+    protected LineMap(int capacity) {
+        starts = new int[Math.max(1, capacity)];
+    }
+
+    /** Feed the next character of the source. */
+    public void advance(char c) {
+        int offset = length++;
+        if (c == '\n') {
+            if (prevCharIsCR) {
+                starts[count - 1] = offset + 1; // "\r\n" is one line break
+            } else {
+                add(offset + 1);
+            }
+            prevCharIsCR = false;
+        } else {
+            prevCharIsCR = c == '\r';
+            if (prevCharIsCR) add(offset + 1);
+        }
+    }
+
+    /** Feed the next byte of a UTF-8 source. */
+    public void advanceByte(byte b) {
+        if ((b & 0xC0) != 0x80) {
+            advance((char) (b & 0xFF));
+            return;
+        }
+        addContinuation(length++);
+        prevCharIsCR = false;
+    }
+
+    private void addContinuation(int offset) {
+        if (continuations == null) continuations = new int[16];
+        else if (continuationCount == continuations.length) continuations = Arrays.copyOf(continuations, continuationCount * 2);
+        continuations[continuationCount++] = offset;
+    }
+
+    private void add(int lineStart) {
+        if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+        starts[count++] = lineStart;
+    }
+
+    /** Writes the table, to be read back by {@link #readFrom} without rescanning the source. */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(length);
+        out.writeBoolean(prevCharIsCR);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) out.writeInt(starts[i]);
+        out.writeInt(continuationCount);
+        for (int i = 0; i < continuationCount; i++) out.writeInt(continuations[i]);
+    }
+
+    /**
+     * Reads a table written by {@link #writeTo}, advancing the buffer past it.
+     * @throws IllegalArgumentException if the counts read do not fit the buffer
+     */
+    public static LineMap readFrom(ByteBuffer in) {
+        int length = in.getInt();
+        boolean prevCharIsCR = in.get() != 0;
+        int count = in.getInt();
+        if (length < 0 || count < 1 || count > in.remaining() / 4) throw new IllegalArgumentException("Malformed line map");
+        LineMap lines = new LineMap(count);
+        in.asIntBuffer().get(lines.starts, 0, count);
+        in.position(in.position() + 4 * count);
+        lines.count = count;
+        lines.length = length;
+        lines.prevCharIsCR = prevCharIsCR;
+        int continuationCount = in.getInt();
+        if (continuationCount < 0 || continuationCount > in.remaining() / 4) throw new IllegalArgumentException("Malformed line map");
+        if (continuationCount > 0) {
+            lines.continuations = new int[continuationCount];
+            in.asIntBuffer().get(lines.continuations);
+            in.position(in.position() + 4 * continuationCount);
+            lines.continuationCount = continuationCount;
+        }
+        return lines;
+    }
+
+    /** Number of characters fed so far. */
+    public int length() {
+        return length;
+    }
+
+    /** Offset at which the 1-based line starts. */
+    public int startOf(int line) {
+        return starts[line - 1];
+    }
+
+    /**
+     * Line map of a UTF-8 source after an edit, built without rescanning unchanged
+     * bytes. The old bytes from..to-1 became window in the new source; from must be a
+     * line start, and the old byte at to-1 must not be a '\r' unless to is the end of
+     * the source. Line starts up to from are kept, window is scanned, and the starts
+     * and continuation bytes after to are shifted by the change in length.
+     */
+    public LineMap edit(int from, int to, byte[] window) {
+        int delta = window.length - (to - from);
+        LineMap edited = new LineMap(count + 16);
+        edited.count = lineOf(from);
+        System.arraycopy(starts, 0, edited.starts, 0, edited.count);
+        edited.length = from;
+        int kept = continuationsThrough(from - 1);
+        if (kept > 0) {
+            edited.continuations = Arrays.copyOf(continuations, kept + 16);
+            edited.continuationCount = kept;
+        }
+        for (byte b : window) {
+            edited.advanceByte(b);
+        }
+        // starts[lineOf(to)] is the first start after to; those up to to came from the window
+        for (int i = lineOf(to); i < count; i++) {
+            edited.add(starts[i] + delta);
+        }
+        for (int i = continuationsThrough(to - 1); i < continuationCount; i++) {
+            edited.addContinuation(continuations[i] + delta);
+        }
+        if (to < length) {
+            edited.length = length + delta;
+            edited.prevCharIsCR = prevCharIsCR;
+        }
+        return edited;
+    }
+
+    /** 1-based line containing the character at offset. */
+    public int lineOf(int offset) {
+        if (offset < 0) return 1; // e.g. the EOF token of an empty source
+        int i = Arrays.binarySearch(starts, 0, count, offset);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    /** 1-based column of the character at offset. */
+    public int columnOf(int offset) {
+        int start = starts[lineOf(offset) - 1];
+        int column = offset - start + 1;
+        if (continuationCount == 0) return column;
+        // the character's own continuation bytes count too when offset is on one of them
+        return column - (continuationsThrough(offset) - continuationsThrough(start - 1));
+    }
+
+    /** Number of continuation bytes at offsets up to and including offset. */
+    private int continuationsThrough(int offset) {
+        if (continuationCount == 0) return 0;
+        int i = Arrays.binarySearch(continuations, 0, continuationCount, offset);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+}
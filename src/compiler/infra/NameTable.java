@@ -0,0 +1,29 @@
+package compiler.infra;
+
+/**
+ * Canonical identifier names.
+ *
+ * The lexer passes every identifier through {@link #intern}, so each distinct name
+ * is a single String instance shared by tokens, AST nodes, symbols, TAC operands and
+ * the code generator's maps, however often it occurs in the source. Canonical names
+ * are the JVM's interned strings, so they are also identical to string literals in
+ * compiler code such as "this" or "main". The JVM's string table does not keep a
+ * name alive once nothing refers to it, so a long-running daemon does not
+ * accumulate the names of every program it has compiled.
+ *
+ * Names are not replaced by dense int ids, and the symbol, type and TAC/backend
+ * maps keep String keys compared with equals rather than by identity: those maps
+ * are also queried with names built at run time (mangled method names, "this",
+ * descriptors), which an identity map would miss. Strings cache their hash code and
+ * String.equals checks identity first, so a lookup with a canonical name already
+ * costs little more than an identity compare.
+ */
+public final class NameTable {
+
+    private NameTable() { }
+
+    /** Returns the canonical instance of name. */
+    public static String intern(String name) {
+        return name.intern();
+    }
+}
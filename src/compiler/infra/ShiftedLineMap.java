@@ -0,0 +1,61 @@
+package compiler.infra;
+
+/**
+ * View of a LineMap for offsets recorded against an earlier version of the source.
+ *
+ * Text inserted or removed before a stretch of source moves every offset in it by
+ * the same amount. Tokens and locations of that stretch keep their recorded offsets
+ * and resolve them through this view, which adds the accumulated shift and looks
+ * the result up in the current line map. Moving the whole stretch is then one call
+ * to {@link #rebase} rather than an update of every location in it.
+ */
+public class ShiftedLineMap extends LineMap {
+    private LineMap base;
+    private int shift;
+
+    public ShiftedLineMap(LineMap base) {
+        super(1);
+        this.base = base;
+    }
+
+    /** Resolve through base from now on, with recorded offsets moved by delta more. */
+    public void rebase(LineMap base, int delta) {
+        this.base = base;
+        this.shift += delta;
+    }
+
+    /** Current offset of a recorded one. */
+    public int offsetOf(int recorded) {
+        return recorded + shift;
+    }
+
+    @Override
+    public void advance(char c) {
+        throw new UnsupportedOperationException("A shifted view is not fed characters");
+    }
+
+    @Override
+    public void advanceByte(byte b) {
+        throw new UnsupportedOperationException("A shifted view is not fed characters");
+    }
+
+    @Override
+    public int length() {
+        return base.length();
+    }
+
+    @Override
+    public int lineOf(int offset) {
+        return base.lineOf(offset + shift);
+    }
+
+    @Override
+    public int columnOf(int offset) {
+        return base.columnOf(offset + shift);
+    }
+
+    @Override
+    public int startOf(int line) {
+        return base.startOf(line);
+    }
+}
@@ -8,29 +8,52 @@ public class SourceLocation {
     private final int line;        // 1-based line number
     private final int column;      // 1-based column number
     private final String context;  // optional contextual string (e.g., current function/class)
+    private final LineMap lines;   // when set, line and column are computed from offset
+    private final int offset;
 
-    public SourceLocation(String file, int line, int column, String context) {
+    private SourceLocation(String file, int line, int column, String context, LineMap lines, int offset) {
         this.file = file;
         this.line = line;
         this.column = column;
         this.context = context;
+        this.lines = lines;
+        this.offset = offset;
+    }
+
+    public SourceLocation(String file, int line, int column, String context) {
+        this(file, line, column, context, null, -1);
     }
     /** Create a location with empty context. */
     public SourceLocation(String file, int line, int column) {
         this(file, line, column, null);
     }
 
+    /**
+     * Create a location for a character offset; line and column are looked up
+     * in the line map only when asked for.
+     */
+    public SourceLocation(String file, LineMap lines, int offset) {
+        this(file, 0, 0, null, lines, offset);
+    }
+
     /** Create a location from another, with new context. */
     public SourceLocation withContext(String newContext) {
-        return new SourceLocation(file, line, column, newContext);
+        return new SourceLocation(file, line, column, newContext, lines, offset);
     }
 
+    public String getFile() { return file; }
+    public int getLine() { return lines != null ? lines.lineOf(offset) : line; }
+    public int getColumn() { return lines != null ? lines.columnOf(offset) : column; }
+    public String getContext() { return context; }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append(file == null ? "<unknown>" : file);
+        int line = getLine();
         if (line > 0) {
             sb.append(':').append(line);
+            int column = getColumn();
             if (column > 0) sb.append(':').append(column);
         }
         if (context != null && !context.isEmpty()) {
@@ -0,0 +1,137 @@
+package compiler.infra;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records timed spans (wall time, thread CPU time and allocated bytes) for
+ * compiler passes and their sub-phases, and writes them out in the Chrome
+ * trace event format understood by chrome://tracing and Perfetto.
+ *
+ * A disabled tracer hands out a shared no-op span, so instrumented code
+ * costs almost nothing unless tracing was requested.
+ */
+public class Tracer {
+
+    /**
+     * A running span; closing it records the measurement. Close it in a finally
+     * block. It is not AutoCloseable, since a try-with-resources would never refer
+     * to the span in its body.
+     */
+    public interface Span {
+        void close();
+    }
+
+    private static final Span NO_OP = () -> { };
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /** One completed span. */
+    private static final class Event {
+        final String name;
+        final long threadId;
+        final long startNanos;
+        final long wallNanos;
+        final long cpuNanos;
+        final long allocatedBytes;
+
+        Event(String name, long threadId, long startNanos, long wallNanos, long cpuNanos, long allocatedBytes) {
+            this.name = name;
+            this.threadId = threadId;
+            this.startNanos = startNanos;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    private final boolean enabled;
+    private final long originNanos = System.nanoTime();
+    private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+
+    public Tracer(boolean enabled) {
+        this.enabled = enabled;
+        if (enabled && THREADS.isThreadCpuTimeSupported()) {
+            THREADS.setThreadCpuTimeEnabled(true);
+        }
+    }
+
+    /** A tracer that records nothing. */
+    public static Tracer disabled() {
+        return new Tracer(false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start a span; close it in a finally block so it is closed on every path.
+     */
+    public Span span(String name) {
+        if (!enabled) return NO_OP;
+
+        Thread thread = Thread.currentThread();
+        long threadId = thread.getId();
+        long cpuStart = cpuTime();
+        long allocStart = allocatedBytes(threadId);
+        long start = System.nanoTime();
+        return () -> {
+            long wall = System.nanoTime() - start;
+            long cpu = cpuTime() - cpuStart;
+            long alloc = allocatedBytes(threadId) - allocStart;
+            events.add(new Event(name, threadId, start - originNanos, wall, cpu, alloc));
+        };
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0L;
+    }
+
+    private static long allocatedBytes(long threadId) {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(threadId);
+        }
+        return 0L;
+    }
+
+    /**
+     * Write all recorded spans as a Chrome trace JSON file.
+     */
+    public void writeChromeTrace(Path file) throws IOException {
+        List<Event> snapshot = new ArrayList<>(events);
+        snapshot.sort((a, b) -> Long.compare(a.startNanos, b.startNanos));
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("{\"traceEvents\":[\n");
+            for (int i = 0; i < snapshot.size(); i++) {
+                Event e = snapshot.get(i);
+                w.write(String.format(Locale.ROOT,
+                    "{\"name\":\"%s\",\"cat\":\"compiler\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,"
+                        + "\"ts\":%.3f,\"dur\":%.3f,\"args\":{\"cpu_us\":%.3f,\"alloc_bytes\":%d}}%s\n",
+                    escape(e.name), e.threadId,
+                    e.startNanos / 1000.0, e.wallNanos / 1000.0, e.cpuNanos / 1000.0, e.allocatedBytes,
+                    i + 1 < snapshot.size() ? "," : ""));
+            }
+            w.write("],\"displayTimeUnit\":\"ms\"}\n");
+        }
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.toString();
+    }
+}
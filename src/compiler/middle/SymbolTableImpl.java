@@ -14,13 +14,24 @@ public class SymbolTableImpl implements SymbolTable {
     private final List<Map<String, Symbol>> scopes;
     // Tracks the current nesting level. 0 is the global scope.
     private int currentLevel;
+    // Searched by lookup() after every scope of this table; never modified. May be null.
+    private final SymbolTable enclosing;
 
     /**
      * Initializes the symbol table with an empty stack.
      */
     public SymbolTableImpl() {
+        this(null);
+    }
+
+    /**
+     * Initializes an empty symbol table whose lookups fall back to enclosing, so a
+     * pass can push its own scopes over a shared table without modifying it.
+     */
+    public SymbolTableImpl(SymbolTable enclosing) {
         this.scopes = new ArrayList<>();
         this.currentLevel = -1; // -1 means no scope entered yet
+        this.enclosing = enclosing;
     }
 
     /**
@@ -93,7 +104,7 @@ public class SymbolTableImpl implements SymbolTable {
                 return Optional.of(symbol);
             }
         }
-        return Optional.empty();
+        return enclosing != null ? enclosing.lookup(name) : Optional.empty();
     }
 
     /**
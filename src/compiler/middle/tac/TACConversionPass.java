@@ -4,11 +4,27 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
+import compiler.infra.Artifact;
 import compiler.infra.CompilerContext;
 import compiler.infra.CompilerPass;
+import compiler.infra.NameTable;
+import compiler.infra.Tracer;
 import compiler.frontend.ast.*;
-
+import compiler.frontend.visitor.ParallelASTVisitor;
+
+/**
+ * Lowers the typed AST to three-address code.
+ *
+ * Classes and functions are lowered in parallel by a ParallelASTVisitor: each
+ * unit gets an emitter of its own (an instance of this class) with its own
+ * instruction list and temp and label counters, and a unit's instructions are
+ * spliced into its parent's where the parent met it. Temps and labels of nested
+ * units are prefixed with the unit's path, e.g. t2_0 is temp 0 of the second unit
+ * forked by the root, so names never clash and do not depend on scheduling.
+ */
 public class TACConversionPass implements CompilerPass, ASTVisitor<String> {
 
     private final List<TACInstruction> instructions = new ArrayList<>();
@@ -16,38 +32,100 @@ public class TACConversionPass implements CompilerPass, ASTVisitor<String> {
     private int labelCount = 0;
     private String currentClass;
 
-    // Map<ClassName, Map<MethodName, Signature>>
-    private Map<String, Map<String, String>> methodSignatures = new HashMap<>();
+    // Map<ClassName, Map<MethodName, Signature>>, shared read-only by all emitters
+    private final Map<String, Map<String, String>> methodSignatures;
+
+    // "" for the root unit; see the class comment
+    private final String prefix;
+    // the class whose method this emitter lowers, if its unit is a method
+    private final ClassDeclNode owner;
+    private ParallelASTVisitor.Forks<TACConversionPass> forks;
+    // index in instructions at which each forked unit's instructions belong
+    private final List<Integer> forkPositions = new ArrayList<>();
+
+    public TACConversionPass() {
+        this("", null, null, new HashMap<>());
+    }
+
+    private TACConversionPass(String prefix, ClassDeclNode owner, String currentClass,
+                              Map<String, Map<String, String>> methodSignatures) {
+        this.prefix = prefix;
+        this.owner = owner;
+        this.currentClass = currentClass;
+        this.methodSignatures = methodSignatures;
+    }
 
     private String newTemp() {
-        return "t" + (tempCount++);
+        return "t" + prefix + (tempCount++);
     }
 
     private String newLabel() {
-        return "L" + (labelCount++);
+        return "L" + prefix + (labelCount++);
+    }
+
+    /** Hands unit to a task of its own, to be lowered by a fresh emitter. */
+    private void fork(ASTNode unit, ClassDeclNode owner) {
+        forkPositions.add(instructions.size());
+        String nested = prefix + forkPositions.size() + "_";
+        forks.fork(unit, new TACConversionPass(nested, owner, currentClass, methodSignatures));
     }
 
     @Override
     public String name() { return "TACConversionPass"; }
 
-    private String getDescriptor(String type) {
-        if (type.equals("int")) return "I";
-        if (type.equals("boolean")) return "Z";
-        if (type.equals("void")) return "V";
-        if (type.equals("String")) return "Ljava/lang/String;";
-        return "L" + type + ";";
+    @Override
+    public Set<Artifact> reads() { return Set.of(Artifact.AST, Artifact.TYPED_AST); }
+
+    @Override
+    public Set<Artifact> produces() { return Set.of(Artifact.TAC); }
+
+    // The type checker resolved every declaration; its types carry their descriptors
+    private static String getDescriptor(VarDeclNode var) {
+        return var.declaredType.descriptor();
+    }
+
+    /** The method descriptor of function; a constructor (returning its own class) returns V. */
+    private static String getSignature(FunctionDeclNode function, ClassDeclNode owner) {
+        StringBuilder sig = new StringBuilder("(");
+        for (VarDeclNode param : function.getParams()) {
+            sig.append(getDescriptor(param));
+        }
+        sig.append(")");
+        boolean constructor = owner != null && function.declaredReturnType == owner.type();
+        return sig.append(constructor ? "V" : function.declaredReturnType.descriptor()).toString();
     }
 
     @Override
     public void execute(CompilerContext context) {
         ASTNode root = context.getAst();
         if (root != null) {
-            buildSignatureMap(root);
-            root.accept(this);
+            Tracer tracer = context.getTracer();
+            Tracer.Span span = tracer.span("buildSignatureMap");
+            try {
+                buildSignatureMap(root);
+            } finally {
+                span.close();
+            }
+            span = tracer.span("emitTAC");
+            try {
+                new Lowering().run(root, this, context.getPool());
+            } finally {
+                span.close();
+            }
             context.setTacInstructions(instructions);
         }
     }
 
+    /**
+     * Lowers a type-checked tree, on pool or, if pool is null, on the calling thread.
+     * The result is the same either way. A pass instance lowers one tree.
+     */
+    public List<TACInstruction> lower(ASTNode root, ForkJoinPool pool) {
+        buildSignatureMap(root);
+        new Lowering().run(root, this, pool);
+        return instructions;
+    }
+
     private void buildSignatureMap(ASTNode root) {
         if (root instanceof BlockNode) {
             for (ASTNode stmt : ((BlockNode)root).getStatements()) {
@@ -55,21 +133,7 @@ public class TACConversionPass implements CompilerPass, ASTVisitor<String> {
                     ClassDeclNode c = (ClassDeclNode) stmt;
                     Map<String, String> methods = new HashMap<>();
                     for (FunctionDeclNode m : c.methods) {
-                         StringBuilder sig = new StringBuilder("(");
-                         for (VarDeclNode p : m.getParams()) {
-                             sig.append(getDescriptor(p.type));
-                         }
-                         sig.append(")").append(getDescriptor(m.returnType));
-
-                         // Constructor return type fix
-                         if (m.returnType.equals(c.className)) {
-                             int idx = sig.lastIndexOf(")");
-                             if (idx != -1) {
-                                 sig.replace(idx + 1, sig.length(), "V");
-                             }
-                         }
-
-                         methods.put(m.name, sig.toString());
+                         methods.put(m.name, getSignature(m, c));
                     }
                     methodSignatures.put(c.className, methods);
                 }
@@ -150,7 +214,7 @@ public class TACConversionPass implements CompilerPass, ASTVisitor<String> {
             String obj = man.object.accept(this);
             String fieldName = man.memberName;
             if (man.object.type != null) {
-                fieldName = man.object.type + ":" + fieldName;
+                fieldName = man.object.type.name() + ":" + fieldName;
             }
             emit(OpCode.PUT_FIELD, obj, fieldName, value);
             return value;
@@ -161,28 +225,29 @@ public class TACConversionPass implements CompilerPass, ASTVisitor<String> {
 
     @Override
     public String visitFunctionDeclNode(FunctionDeclNode node) {
-        StringBuilder sig = new StringBuilder("(");
-        for (VarDeclNode param : node.getParams()) {
-            sig.append(getDescriptor(param.type));
-        }
-        sig.append(")").append(getDescriptor(node.returnType));
+        fork(node, null);
+        return null;
+    }
 
-        emit(OpCode.FUNC_ENTRY, node.name, String.valueOf(node.getParams().size()), sig.toString());
+    private void emitFunction(FunctionDeclNode node) {
+        if (owner != null) {
+            emitMethod(owner, node);
+            return;
+        }
+        emit(OpCode.FUNC_ENTRY, node.name, String.valueOf(node.getParams().size()), getSignature(node, null));
 
         for (VarDeclNode param : node.getParams()) {
-             emit(OpCode.PARAM_DECL, param.name, getDescriptor(param.type), null);
+             emit(OpCode.PARAM_DECL, param.name, getDescriptor(param), null);
         }
 
         emit(OpCode.LABEL, node.name, null, null);
 
         node.body.accept(this);
 
-        if (node.returnType.equals("void")) {
+        if (node.declaredReturnType == Type.VOID) {
              emit(OpCode.RETURN, null, null, null);
         }
         emit(OpCode.FUNC_EXIT, node.name, null, null);
-
-        return null;
     }
 
     @Override
@@ -317,7 +382,11 @@ public class TACConversionPass implements CompilerPass, ASTVisitor<String> {
 
     @Override
     public String visitClassDeclNode(ClassDeclNode node) {
-        String prevClass = currentClass;
+        fork(node, null);
+        return null;
+    }
+
+    private void emitClass(ClassDeclNode node) {
         currentClass = node.className;
 
         for (VarDeclNode field : node.fields) {
@@ -325,40 +394,36 @@ public class TACConversionPass implements CompilerPass, ASTVisitor<String> {
         }
 
         for (FunctionDeclNode method : node.methods) {
-            String mangledName = node.className + "." + method.name;
-            int paramCount = 1 + method.getParams().size(); // +1 for this
+            fork(method, node);
+        }
+    }
 
-            StringBuilder sig = new StringBuilder("(");
-            for (VarDeclNode param : method.getParams()) {
-                sig.append(getDescriptor(param.type));
-            }
-            sig.append(")").append(getDescriptor(method.returnType));
+    private void emitMethod(ClassDeclNode node, FunctionDeclNode method) {
+        currentClass = node.className;
+        String mangledName = NameTable.intern(node.className + "." + method.name);
+        int paramCount = 1 + method.getParams().size(); // +1 for this
 
-            if (method.returnType.equals(node.className)) {
-                 int closeParen = sig.lastIndexOf(")");
-                 sig.replace(closeParen + 1, sig.length(), "V");
-            }
+        // built by buildSignatureMap for top-level classes
+        Map<String, String> signatures = methodSignatures.get(node.className);
+        String sig = signatures != null && signatures.containsKey(method.name)
+            ? signatures.get(method.name) : getSignature(method, node);
 
-            emit(OpCode.FUNC_ENTRY, mangledName, String.valueOf(paramCount), sig.toString());
+        emit(OpCode.FUNC_ENTRY, mangledName, String.valueOf(paramCount), sig);
 
-            emit(OpCode.PARAM_DECL, "this", "L" + node.className + ";", null);
+        emit(OpCode.PARAM_DECL, "this", node.type().descriptor(), null);
 
-            for (VarDeclNode param : method.getParams()) {
-                 emit(OpCode.PARAM_DECL, param.name, getDescriptor(param.type), null);
-            }
+        for (VarDeclNode param : method.getParams()) {
+             emit(OpCode.PARAM_DECL, param.name, getDescriptor(param), null);
+        }
 
-            emit(OpCode.LABEL, mangledName, null, null);
+        emit(OpCode.LABEL, mangledName, null, null);
 
-            method.body.accept(this);
+        method.body.accept(this);
 
-            if (method.returnType.equals("void")) {
-                 emit(OpCode.RETURN, null, null, null);
-            }
-            emit(OpCode.FUNC_EXIT, mangledName, null, null);
+        if (method.declaredReturnType == Type.VOID) {
+             emit(OpCode.RETURN, null, null, null);
         }
-
-        currentClass = prevClass;
-        return null;
+        emit(OpCode.FUNC_EXIT, mangledName, null, null);
     }
 
     @Override
@@ -394,7 +459,9 @@ public class TACConversionPass implements CompilerPass, ASTVisitor<String> {
 
         if (node.object != null) {
             obj = node.object.accept(this);
-            className = node.object.type;
+            Type type = node.object.type;
+            // built-in types have no methods of ours
+            if (type != null && !type.isPrimitive() && type != Type.STRING) className = type.name();
         } else {
             obj = "this";
             className = currentClass;
@@ -403,7 +470,7 @@ public class TACConversionPass implements CompilerPass, ASTVisitor<String> {
         String methodName = node.methodName;
         String signature = "()I";
 
-        if (className != null && !className.equals("int") && !className.equals("boolean") && !className.equals("string")) {
+        if (className != null) {
              methodName = className + "." + node.methodName;
              if (methodSignatures.containsKey(className)) {
                  Map<String, String> methods = methodSignatures.get(className);
@@ -435,9 +502,38 @@ public class TACConversionPass implements CompilerPass, ASTVisitor<String> {
         String temp = newTemp();
         String fieldName = node.memberName;
         if (node.object.type != null) {
-            fieldName = node.object.type + ":" + fieldName;
+            fieldName = node.object.type.name() + ":" + fieldName;
         }
         emit(OpCode.GET_FIELD, temp, obj, fieldName);
         return temp;
     }
+
+    /** Lowers each unit with its own emitter and splices the results in source order. */
+    private static final class Lowering extends ParallelASTVisitor<TACConversionPass, TACConversionPass> {
+        @Override
+        protected TACConversionPass visitUnit(ASTNode unit, TACConversionPass emitter, Forks<TACConversionPass> forks) {
+            emitter.forks = forks;
+            if (unit instanceof ClassDeclNode) emitter.emitClass((ClassDeclNode) unit);
+            else if (unit instanceof FunctionDeclNode) emitter.emitFunction((FunctionDeclNode) unit);
+            else unit.accept(emitter);
+            return emitter;
+        }
+
+        @Override
+        protected TACConversionPass combine(ASTNode unit, TACConversionPass own, List<TACConversionPass> forked) {
+            if (forked.isEmpty()) return own;
+            List<TACInstruction> merged = new ArrayList<>(own.instructions.size());
+            int from = 0;
+            for (int i = 0; i < forked.size(); i++) {
+                int at = own.forkPositions.get(i);
+                merged.addAll(own.instructions.subList(from, at));
+                merged.addAll(forked.get(i).instructions);
+                from = at;
+            }
+            merged.addAll(own.instructions.subList(from, own.instructions.size()));
+            own.instructions.clear();
+            own.instructions.addAll(merged);
+            return own;
+        }
+    }
 }
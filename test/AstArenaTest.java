@@ -0,0 +1,107 @@
+import compiler.frontend.*;
+import compiler.frontend.ast.*;
+import compiler.infra.*;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AstArenaTest {
+
+    private static final String SOURCE =
+        "class A {\n"
+        + "  int v;\n"
+        + "  A(int v) { this.v = v; }\n"
+        + "  int w;\n"
+        + "  int add(int a, int b) { return a + b + v + w; }\n"
+        + "  void none() { }\n"
+        + "}\n"
+        + "A a = new A(1);\n"
+        + "int s = a.add(2, a.add(3, 4));\n"
+        + "if (s > 3) { s = s - 1; } else { }\n";
+
+    private static ASTNode parse(String source, AstArena arena) throws Exception {
+        MyParser parser = new MyParser(TokenBuffer.lex(new MappedCharStream(source.getBytes(StandardCharsets.UTF_8))).tokenManager());
+        parser.setArena(arena);
+        return parser.Program();
+    }
+
+    @Test
+    void testArenaTreeMatchesHeapTree() throws Exception {
+        AstArena arena = new AstArena();
+        BlockNode tree = (BlockNode) parse(SOURCE, arena);
+        assertEquals(parse(SOURCE, null).toASTTestTree().prettyPrint(), tree.toASTTestTree().prettyPrint());
+        assertEquals(1, arena.chunks());
+
+        // interleaved members are split by kind, each in source order
+        ClassDeclNode a = (ClassDeclNode) tree.statements.get(0);
+        assertEquals("v", a.fields.get(0).getName());
+        assertEquals("w", a.fields.get(1).getName());
+        assertEquals(3, a.methods.size());
+        assertEquals("add", a.methods.get(1).getName());
+        assertEquals(2, a.methods.get(1).getParams().size());
+        assertTrue(a.methods.get(2).getParams().isEmpty());
+    }
+
+    @Test
+    void testArenaListsAreFixedSizeButRootIsNot() throws Exception {
+        BlockNode tree = (BlockNode) parse(SOURCE, new AstArena());
+        ClassDeclNode a = (ClassDeclNode) tree.statements.get(0);
+        assertThrows(UnsupportedOperationException.class, () -> a.methods.remove(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> a.fields.get(2));
+        VarDeclNode w = a.fields.get(1);
+        assertSame(w, a.fields.set(1, a.fields.get(0)));
+        assertSame(a.fields.get(0), a.fields.get(1));
+
+        tree.statements.add(new EmptyNode());
+        assertEquals(4 + 1, tree.statements.size());
+    }
+
+    @Test
+    void testListsLargerThanAChunkGetTheirOwn() throws Exception {
+        StringBuilder source = new StringBuilder("void f() {\n");
+        for (int i = 0; i < AstArena.CHUNK + 10; i++) source.append("  int x").append(i).append(" = ").append(i).append(";\n");
+        source.append("}\n");
+        AstArena arena = new AstArena();
+        FunctionDeclNode f = (FunctionDeclNode) ((BlockNode) parse(source.toString(), arena)).statements.get(0);
+        assertEquals(AstArena.CHUNK + 10, f.body.statements.size());
+        assertEquals("x" + AstArena.CHUNK, ((VarDeclNode) f.body.statements.get(AstArena.CHUNK)).getName());
+        assertTrue(arena.capacity() >= AstArena.CHUNK + 10);
+    }
+
+    @Test
+    void testReleaseDropsTreeAndArena() {
+        CompilerContext context = new CompilerContext();
+        context.setSource(SOURCE.getBytes(StandardCharsets.UTF_8));
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.addPass(new FrontEndPass());
+        orchestrator.addPass(new SymbolTableBuilderPass());
+        orchestrator.addPass(new TypeCheckingPass());
+        orchestrator.runPasses(context);
+        assertFalse(context.getDiagnostics().hasErrors(), () -> context.getDiagnostics().getErrors().toString());
+        AstArena arena = context.getAstArena();
+        assertTrue(arena.chunks() > 0);
+
+        context.release();
+        assertNull(context.getAst());
+        assertNotSame(arena, context.getAstArena());
+        assertEquals(0, context.getAstArena().chunks());
+    }
+
+    @Test
+    void testParallelSlicesShareTheArena() throws Exception {
+        String program = SOURCE.repeat(200);
+        TokenBuffer tokens = TokenBuffer.lex(new MappedCharStream(program.getBytes(StandardCharsets.UTF_8)));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            AstArena arena = new AstArena();
+            ASTNode tree = ParallelParser.parse(tokens, pool, arena);
+            assertEquals(parse(program, null).toASTTestTree().prettyPrint(), tree.toASTTestTree().prettyPrint());
+            assertTrue(arena.chunks() > 1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
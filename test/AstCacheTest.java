@@ -0,0 +1,178 @@
+import compiler.frontend.*;
+import compiler.frontend.ast.*;
+import compiler.infra.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AstCacheTest {
+
+    // class A mentions B before B is declared
+    private static final String SOURCE =
+        "class A {\n"
+        + "  B b;\n"
+        + "  int get() { return b.v + 1; }\n"
+        + "}\n"
+        + "class B { int v; B(int v) { this.v = v; } }\n"
+        + "B made = new B(2);\n"
+        + "string s = \"hé\";\n"
+        + "for (int i = 0; i < 3; i++) { made.v = made.v * i; }\n";
+
+    private static CompilerContext typeCheck(String source) {
+        CompilerContext context = new CompilerContext();
+        context.setSource(source.getBytes(StandardCharsets.UTF_8));
+        context.setSourceName("cached.src");
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.addPass(new FrontEndPass());
+        orchestrator.addPass(new SymbolTableBuilderPass());
+        orchestrator.addPass(new TypeCheckingPass());
+        orchestrator.runPasses(context);
+        assertFalse(context.getDiagnostics().hasErrors(), () -> context.getDiagnostics().getErrors().toString());
+        return context;
+    }
+
+    @Test
+    void testTreeRoundTripsWithLocationsAndTypes() throws Exception {
+        CompilerContext context = typeCheck(SOURCE);
+        BlockNode tree = (BlockNode) context.getAst();
+        LineMap lines = FileTable.lines(FileTable.fileOf(tree.statements.get(0).getLocation()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AstCache.encode(tree, lines, out);
+        BlockNode back = (BlockNode) AstCache.decode(ByteBuffer.wrap(out.toByteArray()), "copy.src");
+
+        assertEquals(tree.toASTTestTree().prettyPrint(), back.toASTTestTree().prettyPrint());
+
+        ForNode loop = (ForNode) back.statements.get(4);
+        assertEquals("copy.src", loop.getSourceLocation().getFile());
+        assertEquals(8, loop.getSourceLocation().getLine());
+        assertEquals(1, loop.getSourceLocation().getColumn());
+
+        ClassDeclNode a = (ClassDeclNode) back.statements.get(0);
+        ClassDeclNode b = (ClassDeclNode) back.statements.get(1);
+        // the field's type was written before B itself
+        assertSame(b.type(), a.fields.get(0).declaredType);
+        VarDeclNode made = (VarDeclNode) back.statements.get(2);
+        assertSame(b.type(), made.declaredType);
+        assertSame(b.type(), made.initializer.type);
+        assertSame(Type.STRING, ((VarDeclNode) back.statements.get(3)).declaredType);
+        assertEquals("\"hé\"", ((LiteralNode) ((VarDeclNode) back.statements.get(3)).initializer).value);
+        assertSame(Type.BOOLEAN, loop.cond.type);
+        assertSame(Type.INT, a.methods.get(0).declaredReturnType);
+    }
+
+    @Test
+    void testUnchangedSourceIsLoadedFromCache(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("prog.src");
+        Files.writeString(file, SOURCE);
+
+        String parsed = compile(file).toASTTestTree().prettyPrint();
+        List<Path> entries = entries(dir);
+        assertEquals(1, entries.size());
+
+        // a different tree in the entry shows that the second compile reads it rather than the source
+        Files.write(entries.get(0), encodedProgram("int fromCache = 1;"));
+        assertEquals("VAR_DECL int fromCache", firstStatement(compile(file)));
+
+        Files.writeString(file, SOURCE + "int more = 2;\n");
+        assertNotEquals(parsed, compile(file).toASTTestTree().prettyPrint());
+        assertEquals(2, entries(dir).size());
+    }
+
+    @Test
+    void testUnreadableEntryIsReparsed(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("prog.src");
+        Files.writeString(file, SOURCE);
+        compile(file);
+        Path entry = entries(dir).get(0);
+        Files.write(entry, new byte[] { 'A', 'S', 'T', 1, 0, 0 });
+
+        assertNull(AstCache.load(entry, file.toString()));
+        assertEquals("ClassDecl: A", firstStatement(compile(file)));
+    }
+
+    @Test
+    void testDamagedOrTruncatedEntryIsAMiss(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("prog.src");
+        Files.writeString(file, SOURCE);
+        compile(file);
+        Path entry = entries(dir).get(0);
+        byte[] good = Files.readAllBytes(entry);
+
+        byte[] flipped = good.clone();
+        flipped[good.length / 2] ^= 0x10;
+        Files.write(entry, flipped);
+        assertNull(AstCache.load(entry, file.toString()));
+
+        Files.write(entry, java.util.Arrays.copyOf(good, good.length - 7));
+        assertNull(AstCache.load(entry, file.toString()));
+
+        // the damaged entry is reparsed and replaced by a good one
+        assertEquals("ClassDecl: A", firstStatement(compile(file)));
+        assertArrayEquals(good, Files.readAllBytes(entry));
+    }
+
+    @Test
+    void testCorruptionBehindAValidChecksumIsRejected() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompilerContext context = typeCheck(SOURCE);
+        BlockNode tree = (BlockNode) context.getAst();
+        AstCache.encode(tree, FileTable.lines(FileTable.fileOf(tree.statements.get(0).getLocation())), out);
+        byte[] good = out.toByteArray();
+
+        for (int i = 8; i < good.length; i++) {
+            for (int bits : new int[] { 0x01, 0x80, 0xFF }) {
+                byte[] bad = good.clone();
+                bad[i] ^= bits;
+                // recompute the checksum so that decoding gets past it and must check the rest itself
+                java.util.zip.CRC32C crc = new java.util.zip.CRC32C();
+                crc.update(bad, 8, bad.length - 8);
+                ByteBuffer.wrap(bad).putInt(4, (int) crc.getValue());
+                try {
+                    AstCache.decode(ByteBuffer.wrap(bad), "fuzz.src");
+                } catch (RuntimeException expected) {
+                    // a miss
+                }
+            }
+        }
+    }
+
+    private static ASTNode compile(Path file) throws Exception {
+        CompilerContext context = new CompilerContext();
+        context.setSource(file);
+        context.setSourceName(file.toString());
+        context.setAstCaching(true);
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.addPass(new FrontEndPass());
+        orchestrator.runPasses(context);
+        return context.getAst();
+    }
+
+    private static String firstStatement(ASTNode ast) {
+        return ((BlockNode) ast).statements.get(0).toASTTestTree().prettyPrint().split("\n")[0];
+    }
+
+    private static byte[] encodedProgram(String source) throws Exception {
+        MappedCharStream stream = new MappedCharStream(source.getBytes(StandardCharsets.UTF_8));
+        ASTNode tree = new MyParser(TokenBuffer.lex(stream).tokenManager()).Program();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AstCache.encode(tree, stream.getLineMap(), out);
+        return out.toByteArray();
+    }
+
+    private static List<Path> entries(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir.resolve(AstCache.DIRECTORY))) {
+            return files.collect(Collectors.toList());
+        }
+    }
+}
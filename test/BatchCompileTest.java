@@ -0,0 +1,125 @@
+import compiler.infra.CompilerContext;
+import compiler.infra.CompilerOrchestrator;
+import compiler.infra.CompilerPass;
+import compiler.frontend.FrontEndPass;
+import compiler.frontend.SymbolTableBuilderPass;
+import compiler.frontend.TypeCheckingPass;
+import compiler.middle.tac.TACConversionPass;
+import compiler.backend.BytecodeGeneratorPass;
+import compiler.cli.Main;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchCompileTest {
+
+    @TempDir
+    Path outDir;
+
+    private CompilerContext context(String name, String source) {
+        CompilerContext context = new CompilerContext();
+        context.setSourceName(name);
+        context.setOutputDirectory(outDir.resolve(name));
+        context.setInputStream(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+        return context;
+    }
+
+    private CompilerOrchestrator pipeline() {
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.addPass(FrontEndPass::new);
+        orchestrator.addPass(SymbolTableBuilderPass::new);
+        orchestrator.addPass(TypeCheckingPass::new);
+        orchestrator.addPass(TACConversionPass::new);
+        orchestrator.addPass(BytecodeGeneratorPass::new);
+        return orchestrator;
+    }
+
+    @Test
+    void testEachInputGetsItsOwnOutput() throws Exception {
+        List<CompilerContext> contexts = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            contexts.add(context("unit" + i, "class C" + i + " { int f; }\nvoid main() { int x = " + i + "; }"));
+        }
+
+        pipeline().runBatch(contexts, 4);
+
+        for (int i = 0; i < contexts.size(); i++) {
+            CompilerContext c = contexts.get(i);
+            assertFalse(c.getDiagnostics().hasErrors(), "unexpected errors: " + c.getDiagnostics().getErrors());
+            assertTrue(c.getClassFiles().containsKey("C" + i));
+            assertTrue(Files.exists(outDir.resolve("unit" + i).resolve("Main.class")));
+            assertTrue(Files.exists(outDir.resolve("unit" + i).resolve("C" + i + ".class")));
+        }
+    }
+
+    @Test
+    void testDiagnosticsStayWithTheirInput() {
+        List<CompilerContext> contexts = new ArrayList<>();
+        contexts.add(context("good", "int x = 1;"));
+        contexts.add(context("bad", "int x = ;"));
+        contexts.add(context("good2", "int y = 2;"));
+
+        pipeline().runBatch(contexts);
+
+        assertFalse(contexts.get(0).getDiagnostics().hasErrors());
+        assertTrue(contexts.get(1).getDiagnostics().hasErrors());
+        assertFalse(contexts.get(2).getDiagnostics().hasErrors());
+    }
+
+    @Test
+    void testSharedPassInstancesAreRejected() {
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.addPass(new FrontEndPass());
+        List<CompilerContext> contexts = List.of(context("a", "int x = 1;"));
+        assertThrows(IllegalStateException.class, () -> orchestrator.runBatch(contexts));
+    }
+
+    @Test
+    void testSameNamedSourcesGetSeparateOutputDirectories() {
+        List<Path> dirs = Main.outputDirectories(List.of("a/Foo.src", "b/Foo.src", "Foo.src"), outDir);
+        assertEquals(List.of(outDir.resolve("a/Foo"), outDir.resolve("b/Foo"), outDir.resolve("Foo")), dirs);
+
+        IllegalArgumentException twice = assertThrows(IllegalArgumentException.class,
+            () -> Main.outputDirectories(List.of("a/Foo.src", "a/../a/Foo.src"), outDir));
+        assertTrue(twice.getMessage().contains("more than once"), twice.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> Main.outputDirectories(List.of("a/Foo.src", "a/Foo.txt"), outDir));
+    }
+
+    @Test
+    void testPassesForkOntoTheBatchPool() {
+        Map<CompilerContext, ForkJoinPool> seen = new ConcurrentHashMap<>();
+        CompilerOrchestrator orchestrator = pipeline();
+        orchestrator.addPass(() -> new CompilerPass() {
+            @Override
+            public String name() {
+                return "PoolProbe";
+            }
+
+            @Override
+            public void execute(CompilerContext context) {
+                // the pool a pass forks onto is the one running the batch
+                assertSame(ForkJoinTask.getPool(), context.getPool());
+                seen.put(context, context.getPool());
+            }
+        });
+        List<CompilerContext> contexts = List.of(context("a", "int x = 1;"), context("b", "int y = 2;"));
+
+        orchestrator.runBatch(contexts, 2);
+
+        assertEquals(2, seen.size());
+        assertNotSame(ForkJoinPool.commonPool(), seen.get(contexts.get(0)));
+        assertSame(ForkJoinPool.commonPool(), contexts.get(0).getPool(), "outside the batch, passes use the common pool");
+    }
+}
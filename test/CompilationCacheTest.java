@@ -0,0 +1,155 @@
+import compiler.infra.*;
+import compiler.frontend.FrontEndPass;
+import compiler.frontend.SymbolTableBuilderPass;
+import compiler.frontend.TypeCheckingPass;
+import compiler.middle.tac.TACConversionPass;
+import compiler.backend.BytecodeGeneratorPass;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompilationCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger frontEndRuns = new AtomicInteger();
+
+    private CompilerOrchestrator pipeline(CompilationCache cache) {
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.setVerbose(false);
+        orchestrator.setCache(cache);
+        orchestrator.addPass(() -> new FrontEndPass() {
+            @Override
+            public void execute(CompilerContext context) throws Exception {
+                frontEndRuns.incrementAndGet();
+                super.execute(context);
+            }
+        });
+        orchestrator.addPass(SymbolTableBuilderPass::new);
+        orchestrator.addPass(TypeCheckingPass::new);
+        orchestrator.addPass(TACConversionPass::new);
+        orchestrator.addPass(BytecodeGeneratorPass::new);
+        return orchestrator;
+    }
+
+    private CompilerContext compile(CompilerOrchestrator orchestrator, String source, String out) {
+        return compile(orchestrator, source, out, null);
+    }
+
+    private CompilerContext compile(CompilerOrchestrator orchestrator, String source, String out, String name) {
+        CompilerContext context = new CompilerContext();
+        context.setSourceName(name);
+        context.getDiagnostics().setConsoleEcho(false);
+        context.setOutputDirectory(dir.resolve(out));
+        context.setInputStream(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+        orchestrator.runPasses(context);
+        return context;
+    }
+
+    @Test
+    void testHitSkipsPassesAndRestoresOutputs() throws Exception {
+        CompilationCache cache = new CompilationCache(dir.resolve("cache"));
+        String source = "class P { int x; }\nvoid main() { int y = 1; }";
+
+        CompilerContext first = compile(pipeline(cache), source, "out1");
+        CompilerContext second = compile(pipeline(cache), source, "out2");
+
+        assertEquals(1, frontEndRuns.get(), "second compilation should be served from the cache");
+        assertEquals(first.getClassFiles().keySet(), second.getClassFiles().keySet());
+        assertArrayEquals(
+            Files.readAllBytes(dir.resolve("out1").resolve("P.class")),
+            Files.readAllBytes(dir.resolve("out2").resolve("P.class")));
+    }
+
+    @Test
+    void testReplayedDiagnosticsNameTheFileBeingCompiled() {
+        CompilationCache cache = new CompilationCache(dir.resolve("cache"));
+        String source = "int x = 10;\nboolean y = x + 5;";
+
+        CompilerContext a = compile(pipeline(cache), source, "a", "a.src");
+        CompilerContext b = compile(pipeline(cache), source, "b", "b.src");
+
+        assertEquals(1, frontEndRuns.get());
+        assertEquals("a.src", a.getDiagnostics().getDiagnostics().get(0).getLocation().getFile());
+        assertEquals("b.src", b.getDiagnostics().getDiagnostics().get(0).getLocation().getFile());
+        assertFalse(b.getDiagnostics().getErrors().toString().contains("a.src"), b.getDiagnostics().getErrors().toString());
+    }
+
+    @Test
+    void testDiagnosticsAreReplayed() {
+        CompilationCache cache = new CompilationCache(dir.resolve("cache"));
+        String source = "int x = 10;\nboolean y = x + 5;";
+
+        CompilerContext first = compile(pipeline(cache), source, "a");
+        CompilerContext second = compile(pipeline(cache), source, "b");
+
+        assertEquals(1, frontEndRuns.get());
+        assertTrue(second.getDiagnostics().hasErrors());
+        assertEquals(first.getDiagnostics().getSummary(), second.getDiagnostics().getSummary());
+    }
+
+    @Test
+    void testChangedSourceMisses() {
+        CompilationCache cache = new CompilationCache(dir.resolve("cache"));
+        compile(pipeline(cache), "int x = 1;", "a");
+        compile(pipeline(cache), "int x = 2;", "b");
+        assertEquals(2, frontEndRuns.get());
+    }
+
+    @Test
+    void testDamagedEntryIsAMissThatLeavesTheContextAlone() throws Exception {
+        CompilationCache cache = new CompilationCache(dir.resolve("cache"));
+        String source = "int x = 10;\nboolean y = x + 5;";
+        CompilerContext first = compile(pipeline(cache), source, "a");
+
+        Path diagnostics = files(dir.resolve("cache"), "diagnostics.tsv").get(0);
+        Files.writeString(diagnostics, Files.readString(diagnostics) + "NOT A DIAGNOSTIC\n");
+        CompilerContext second = compile(pipeline(cache), source, "b");
+
+        assertEquals(2, frontEndRuns.get(), "a damaged entry must be compiled again");
+        assertEquals(first.getDiagnostics().getSummary(), second.getDiagnostics().getSummary());
+    }
+
+    @Test
+    void testScheduledRunSharesEntriesWithSequentialRun() {
+        CompilationCache cache = new CompilationCache(dir.resolve("cache"));
+        String source = "class P { int x; }\nvoid main() { int y = 1; }";
+        compile(pipeline(cache), source, "a");
+
+        CompilerContext context = new CompilerContext();
+        context.getDiagnostics().setConsoleEcho(false);
+        context.setOutputDirectory(dir.resolve("b"));
+        context.setInputStream(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+        pipeline(cache).runScheduled(context, EnumSet.of(Artifact.CLASS_FILES), Runnable::run);
+
+        assertEquals(1, frontEndRuns.get(), "the scheduled run should be served from the entry the sequential run stored");
+        assertTrue(context.getClassFiles().containsKey("P"));
+    }
+
+    @Test
+    void testLockFilesAreRemoved() throws Exception {
+        CompilationCache cache = new CompilationCache(dir.resolve("cache"));
+        compile(pipeline(cache), "int x = 1;", "a");
+        compile(pipeline(cache), "int x = 2;", "b");
+        assertEquals(List.of(), files(dir.resolve("cache"), ".lock"));
+        assertEquals(64, CompilerVersion.HASH.length(), "the cache should be keyed by the compiler's code");
+    }
+
+    private static List<Path> files(Path root, String suffix) throws Exception {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(p -> p.toString().endsWith(suffix)).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import compiler.cli.CompileDaemon;
+import compiler.cli.DaemonClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompileDaemonTest {
+
+    @Test
+    void testRoundTripReportsResultsAndErrors(@TempDir Path dir) throws Exception {
+        Path socket = dir.resolve("d.sock");
+        Thread daemon = new Thread(() -> {
+            try {
+                new CompileDaemon(socket).serve();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        daemon.setDaemon(true);
+        daemon.start();
+        // the socket appears once warm-up is done
+        for (int i = 0; i < 600 && !Files.exists(socket); i++) Thread.sleep(100);
+        assertTrue(Files.exists(socket), "daemon did not start");
+
+        try {
+            Path good = dir.resolve("good.src");
+            Files.writeString(good, "void main() { int x = 1; x = x + 2; }\n");
+            Path out = dir.resolve("out");
+            Files.createDirectories(out);
+            Client client = run(socket.toString(), "-d", out.toString(), good.toString());
+            assertEquals(0, client.status, client.err);
+            assertTrue(client.out.contains("good.src: 0 error(s)"), client.out);
+            assertTrue(Files.exists(out.resolve("Main.class")));
+
+            // a lexical error still ends in an error line and DONE, on a connection that keeps working
+            Path bad = dir.resolve("bad.src");
+            Files.writeString(bad, "int y = # ;\n");
+            client = run(socket.toString(), bad.toString(), good.toString());
+            assertEquals(1, client.status, client.err);
+            assertFalse(client.err.isEmpty());
+            assertTrue(client.out.contains("bad.src: 1 error(s)"), client.out);
+            assertTrue(client.out.contains("good.src: 0 error(s)"), client.out);
+
+            // a tab in a path is escaped, not taken for the end of the field
+            Path tabbed = dir.resolve("tab\tname.src");
+            Files.writeString(tabbed, "void main() { int x = 1; }\n");
+            client = run(socket.toString(), "-d", out.toString(), tabbed.toString());
+            assertEquals(0, client.status, client.err);
+            assertTrue(client.out.contains("tab\tname.src: 0 error(s)"), client.out);
+        } finally {
+            run(socket.toString(), "--shutdown");
+            daemon.join(10_000);
+        }
+        assertFalse(daemon.isAlive());
+    }
+
+    @Test
+    void testUnreachableDaemonExitsWithTwo(@TempDir Path dir) {
+        Client client = run(dir.resolve("none.sock").toString(), dir.resolve("x.src").toString());
+        assertEquals(2, client.status);
+        assertTrue(client.err.startsWith("Cannot reach compiler daemon"), client.err);
+    }
+
+    @Test
+    void testUnexpectedReplyIsAProtocolError(@TempDir Path dir) throws Exception {
+        Path socket = dir.resolve("fake.sock");
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Thread fake = new Thread(() -> {
+                try (SocketChannel client = server.accept()) {
+                    client.write(ByteBuffer.wrap("garbage\n".getBytes(StandardCharsets.UTF_8)));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            fake.start();
+            Client client = run(socket.toString(), dir.resolve("x.src").toString());
+            fake.join(10_000);
+            assertEquals(2, client.status);
+            assertTrue(client.err.contains("protocol error"), client.err);
+        }
+    }
+
+    private static final class Client {
+        int status;
+        String out;
+        String err;
+    }
+
+    private static Client run(String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Client client = new Client();
+        client.status = DaemonClient.run(args, new PrintStream(out, true, StandardCharsets.UTF_8),
+            new PrintStream(err, true, StandardCharsets.UTF_8));
+        client.out = out.toString(StandardCharsets.UTF_8);
+        client.err = err.toString(StandardCharsets.UTF_8);
+        return client;
+    }
+}
@@ -50,6 +50,23 @@ public class DiagnosticsTest {
         assertFalse(context.getDiagnostics().hasErrors(), "No errors expected for valid input");
     }
 
+    @Test
+    void testLexicalErrorIsADiagnostic() {
+        context.setSource("int y = # ;\n".getBytes(StandardCharsets.UTF_8));
+        context.getDiagnostics().setConsoleEcho(false);
+        orchestrator.setVerbose(false);
+        orchestrator.addPass(new FrontEndPass());
+        orchestrator.addPass(new SymbolTableBuilderPass());
+        orchestrator.addPass(new TypeCheckingPass());
+
+        orchestrator.runScheduled(context);
+
+        assertTrue(context.getDiagnostics().hasErrors());
+        assertTrue(context.getDiagnostics().getErrors().get(0).contains("Lexical error"),
+            context.getDiagnostics().getErrors().toString());
+        assertNull(context.getAst());
+    }
+
     @Test
     void testTypeCheckingReportsErrorFromFile() throws Exception {
         byte[] bytes = java.nio.file.Files.readAllBytes(java.nio.file.Path.of("test_inputs/type_error.src"));
@@ -97,4 +114,164 @@ public class DiagnosticsTest {
     assertNotNull(diag.getErrors());
     assertNotNull(diag.getWarnings());
     }
+
+    @Test
+    void testErrorLocationNamesSourceFile() throws Exception {
+        byte[] bytes = java.nio.file.Files.readAllBytes(java.nio.file.Path.of("test_inputs/undeclared.src"));
+        context.setInputStream(new ByteArrayInputStream(bytes));
+        context.setSourceName("test_inputs/undeclared.src");
+        context.getDiagnostics().setConsoleEcho(false);
+
+        orchestrator.addPass(new FrontEndPass());
+        orchestrator.addPass(new SymbolTableBuilderPass());
+        orchestrator.addPass(new TypeCheckingPass());
+        orchestrator.runPasses(context);
+
+        // nodes keep only a packed location; the path comes back from the FileTable
+        assertTrue(context.getDiagnostics().getErrors().stream()
+                .anyMatch(e -> e.contains("test_inputs/undeclared.src:4:")),
+            () -> context.getDiagnostics().getErrors().toString());
+    }
+
+    @Test
+    void testCompilationsOfOnePathKeepTheirOwnLocations() throws Exception {
+        orchestrator.setVerbose(false);
+        orchestrator.addPass(new FrontEndPass());
+        orchestrator.addPass(new SymbolTableBuilderPass());
+        orchestrator.addPass(new TypeCheckingPass());
+        int registered = FileTable.size();
+
+        CompilerContext first = new CompilerContext();
+        first.setSourceName("same.src");
+        first.getDiagnostics().setConsoleEcho(false);
+        first.setSource("\n\nboolean b = 1;\n".getBytes(StandardCharsets.UTF_8));
+        orchestrator.runPasses(first);
+
+        // the same path compiled again, before the first compilation is released
+        CompilerContext second = new CompilerContext();
+        second.setSourceName("same.src");
+        second.getDiagnostics().setConsoleEcho(false);
+        second.setSource("int aaaaaaaa = 1; boolean b = 1;\n".getBytes(StandardCharsets.UTF_8));
+        orchestrator.runPasses(second);
+
+        first.release();
+        second.release();
+        assertEquals(registered, FileTable.size(), "released compilations must free their FileTable entries");
+        assertTrue(first.getDiagnostics().getErrors().get(0).contains("same.src:3:"), () -> first.getDiagnostics().getErrors().toString());
+        assertTrue(second.getDiagnostics().getErrors().get(0).contains("same.src:1:"), () -> second.getDiagnostics().getErrors().toString());
+    }
+
+    private Diagnostics typeCheck(String source) {
+        context.setInputStream(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+        context.getDiagnostics().setConsoleEcho(false);
+        orchestrator.addPass(new FrontEndPass());
+        orchestrator.addPass(new SymbolTableBuilderPass());
+        orchestrator.addPass(new TypeCheckingPass());
+        orchestrator.runPasses(context);
+        return context.getDiagnostics();
+    }
+
+    @Test
+    void testTypesAreCanonical() throws Exception {
+        Diagnostics diag = typeCheck(
+            "class P { int v; P(int a) { this.v = a; } int get() { return v; } }\n"
+            + "P p = new P(1);\n"
+            + "string s = \"a\";\n"
+            + "int x = p.get() + p.v;\n"
+            + "boolean b = x;\n");
+
+        assertEquals(1, diag.getErrors().size(), () -> diag.getErrors().toString());
+        assertTrue(diag.getErrors().get(0).contains("expected boolean, got int"), diag.getErrors().get(0));
+
+        BlockNode program = (BlockNode) context.getAst();
+        ClassDeclNode p = (ClassDeclNode) program.statements.get(0);
+        VarDeclNode declared = (VarDeclNode) program.statements.get(1);
+        assertSame(p.type(), declared.declaredType);
+        assertSame(p.type(), declared.initializer.type);
+        assertSame(Type.STRING, ((VarDeclNode) program.statements.get(2)).declaredType);
+        assertEquals("LP;", p.type().descriptor());
+    }
+
+    @Test
+    void testConstructorDoesNotHideItsClass() throws Exception {
+        Diagnostics diag = typeCheck(
+            "class Node { int v; Node next; Node(int x) { this.v = x; } void link(Node n) { this.next = n; } }\n"
+            + "Node a = new Node(1);\n"
+            + "a.link(new Node(2));\n");
+
+        assertFalse(diag.hasErrors(), () -> diag.getErrors().toString());
+
+        BlockNode program = (BlockNode) context.getAst();
+        ClassDeclNode node = (ClassDeclNode) program.statements.get(0);
+        assertSame(node.type(), node.fields.get(1).declaredType);
+        assertSame(node.type(), ((VarDeclNode) program.statements.get(1)).declaredType);
+    }
+
+    @Test
+    void testPackedLocationIsResolvedWhenFormatted() {
+        LineMap lines = new LineMap();
+        for (char c : "ab\ncd\n".toCharArray()) lines.advance(c);
+        int file = FileTable.register("packed.src", lines);
+        Diagnostics diag = new Diagnostics();
+        diag.setConsoleEcho(false);
+        diag.reportWarning("late", FileTable.location(file, 4));
+
+        assertEquals("packed.src", FileTable.path(file));
+        assertTrue(diag.getWarnings().get(0).endsWith("packed.src:2:2: late"));
+        FileTable.release(lines);
+        assertNull(FileTable.resolve(FileTable.location(file, 4)));
+    }
+
+    @Test
+    void testConcurrentReportsAreAllKept() throws Exception {
+        Diagnostics diag = new Diagnostics();
+        diag.setConsoleEcho(false);
+        int threads = 8, perThread = 1000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    diag.reportWarning("w" + i, new SourceLocation("f" + id, i + 1, 1));
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+
+        assertEquals(threads * perThread, diag.getWarnings().size());
+        assertTrue(diag.hasWarnings());
+        assertFalse(diag.hasErrors());
+    }
+
+    @Test
+    void testDiagnosticsAreOrderedByLocation() {
+        Diagnostics diag = new Diagnostics();
+        diag.setConsoleEcho(false);
+        diag.reportError("third", new SourceLocation("a.src", 3, 1));
+        diag.reportError("first", new SourceLocation("a.src", 1, 5));
+        diag.reportError("second", new SourceLocation("a.src", 2, 1));
+        diag.reportError("global");
+
+        java.util.List<String> errors = diag.getErrors();
+        assertTrue(errors.get(0).endsWith("global"));
+        assertTrue(errors.get(1).endsWith("first"));
+        assertTrue(errors.get(2).endsWith("second"));
+        assertTrue(errors.get(3).endsWith("third"));
+    }
+
+    @Test
+    void testErrorCapKeepsCountingPastTheLimit() {
+        Diagnostics diag = new Diagnostics();
+        diag.setConsoleEcho(false);
+        diag.setMaxErrors(2);
+        for (int i = 0; i < 5; i++) {
+            diag.reportError("e" + i, new SourceLocation("a.src", i + 1, 1));
+        }
+        diag.reportWarning("w");
+
+        assertEquals(2, diag.getErrors().size());
+        assertEquals(3, diag.getSuppressedErrorCount());
+        assertEquals("5 error(s), 1 warning(s) (3 error(s) not shown)", diag.getSummary());
+    }
 }
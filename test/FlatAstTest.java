@@ -0,0 +1,60 @@
+import compiler.frontend.*;
+import compiler.frontend.ast.*;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlatAstTest {
+
+    private static final String SOURCE =
+        "class A {\n"
+        + "  public A(int a) { v = a; }\n"
+        + "  int v;\n"
+        + "  static int get(int b, C c) { return v + b * c.w; }\n"
+        + "  void none() { return; }\n"
+        + "}\n"
+        + "int x = 1;\n"
+        + "C c = new C(x, \"s\");\n"
+        + "if (x > 0) { x = 2; } else if (!done) { x = -3; } else { ; }\n"
+        + "for (int i = 0; i < 10; i++) { c.w = c.get(i).w + this.v; }\n"
+        + "for (x = 0; ; ) { }\n"
+        + "for (;;) { f(); }\n"
+        + "while (x > 0 || y != null && z == true) { x--; }\n"
+        + "int f(int a) {\n"
+        + "  int g(int b) { return b * 2 - (a + 1) / 3; }\n"
+        + "  return g(a);\n"
+        + "}\n"
+        + "{ f(1); g(); }\n";
+
+    private static TokenBuffer tokens(String source) {
+        return TokenBuffer.lex(new MappedCharStream(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testObjectTreeRoundTripsWithLocations() throws Exception {
+        BlockNode tree = (BlockNode) new MyParser(tokens(SOURCE).tokenManager()).Program();
+        FlatAst flat = FlatAst.of(tree);
+        BlockNode back = (BlockNode) flat.toNode(flat.root());
+
+        assertEquals(tree.toASTTestTree().prettyPrint(), back.toASTTestTree().prettyPrint());
+        ForNode loop = (ForNode) back.statements.get(4);
+        assertEquals(10, loop.getSourceLocation().getLine());
+        assertEquals(1, loop.getSourceLocation().getColumn());
+        assertNull(((ForNode) back.statements.get(6)).init);
+    }
+
+    @Test
+    void testCursorWalksInPreorder() throws Exception {
+        FlatAst flat = FlatAst.of(new MyParser(tokens("int x = a + 1;").tokenManager()).Program());
+        FlatAst.Cursor c = flat.cursor();
+        StringBuilder walk = new StringBuilder();
+        do {
+            byte kind = c.kind();
+            walk.append(c.depth()).append(':').append(kind == FlatAst.BLOCK ? "block" : c.string()).append(' ');
+        } while (c.next());
+        assertEquals("0:block 1:int 2:+ 3:a 3:1 ", walk.toString());
+        assertEquals(flat.root(), c.node());
+    }
+}
@@ -0,0 +1,172 @@
+import compiler.frontend.*;
+import compiler.frontend.ast.*;
+import compiler.infra.FileTable;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalParserTest {
+
+    private static final String SOURCE =
+        "class A {\n"
+        + "  int v;\r\n"
+        + "  A(int a) { v = a; }\n"
+        + "  int get() { return v; }\n"
+        + "}\n"
+        + "int x = 1;\n"
+        + "if (x > 0) { x = 2; } else { x = 3; }\r\n"
+        + "int f(int a) {\n"
+        + "  int g(int b) { return b * 2; }\n"
+        + "  return g(a);\n"
+        + "}\n"
+        + "/* comment */ while (x > 0) { x = x - 1; }\n"
+        + "class B { int w; }\n";
+
+    private static MappedCharStream stream(String text) throws Exception {
+        return new MappedCharStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Tree shape plus the line and column of every located class, method and statement. */
+    private static String describe(BlockNode program) {
+        StringBuilder sb = new StringBuilder(program.toASTTestTree().prettyPrint());
+        for (ASTNode statement : program.statements) locations(statement, sb);
+        return sb.toString();
+    }
+
+    private static void locations(ASTNode node, StringBuilder sb) {
+        if (node.getSourceLocation() != null) {
+            sb.append(node.getClass().getSimpleName()).append('@')
+              .append(node.getSourceLocation().getLine()).append(':')
+              .append(node.getSourceLocation().getColumn()).append('\n');
+        }
+        if (node instanceof BlockNode) {
+            for (ASTNode child : ((BlockNode) node).statements) locations(child, sb);
+        } else if (node instanceof ClassDeclNode) {
+            for (ASTNode child : ((ClassDeclNode) node).fields) locations(child, sb);
+            for (ASTNode child : ((ClassDeclNode) node).methods) locations(child, sb);
+        } else if (node instanceof FunctionDeclNode) {
+            locations(((FunctionDeclNode) node).getBody(), sb);
+        }
+    }
+
+    /** Result of parsing text from scratch, or the error it fails with. */
+    private static String fresh(String text) throws Exception {
+        try {
+            return describe((BlockNode) new MyParser(new Lexer(stream(text))).Program());
+        } catch (ParseException | TokenMgrError e) {
+            return "error";
+        }
+    }
+
+    private static String edited(IncrementalParser parser, int start, int end, String replacement) {
+        try {
+            return describe(parser.edit(start, end, replacement));
+        } catch (ParseException | TokenMgrError e) {
+            return "error";
+        }
+    }
+
+    private static int utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Test
+    void testNonAsciiReplacementKeepsLaterItems() throws Exception {
+        String text = "string s = \"a\";\nx=1;y=2;z=3;w=4;";
+        IncrementalParser parser = new IncrementalParser(stream("string s = \"a\";\nint x; int y; int z; int w;\n" + text));
+        String prefix = "string s = \"a\";\nint x; int y; int z; int w;\n";
+        int at = utf8Length(prefix) + text.indexOf('a');
+        String next = prefix + text.replace("\"a\"", "\"éééé\"");
+        assertEquals(fresh(next), edited(parser, at, at + 1, "éééé"));
+    }
+
+    @Test
+    void testEditInsideOneDeclaration() throws Exception {
+        IncrementalParser parser = new IncrementalParser(stream(SOURCE));
+        int at = SOURCE.indexOf("return b * 2;");
+        String text = SOURCE.substring(0, at) + "int c = 1;\r\n    " + SOURCE.substring(at);
+        assertEquals(fresh(text), edited(parser, at, at, "int c = 1;\r\n    "));
+        assertEquals(1, parser.getLastReparsedCount());
+
+        // lines after the edit moved down by one without their items being parsed again
+        WhileNode loop = (WhileNode) parser.getAst().statements.get(4);
+        assertEquals(13, loop.getSourceLocation().getLine());
+        assertEquals(15, loop.getSourceLocation().getColumn());
+    }
+
+    @Test
+    void testFailedEditIsRepairedFromTheDamagedItem() throws Exception {
+        int at = SOURCE.indexOf("1;");
+        String repaired = SOURCE.substring(0, at) + "5" + SOURCE.substring(at + 1);
+        String expected = fresh(repaired); // before counting, since a full parse registers its source
+
+        int registered = FileTable.size();
+        IncrementalParser parser = new IncrementalParser(stream(SOURCE));
+        int parsed = FileTable.size();
+        assertEquals("error", edited(parser, at, at + 1, ""));
+        assertEquals(parsed, FileTable.size(), "a failed edit must release what it parsed");
+
+        // the next edit parses only the damaged item, not the whole program
+        assertEquals(expected, edited(parser, at, at, "5"));
+        assertEquals(1, parser.getLastReparsedCount());
+
+        parser.close();
+        assertEquals(registered, FileTable.size());
+    }
+
+    @Test
+    void testEditsThatChangeItemBoundaries() throws Exception {
+        String text = SOURCE;
+        IncrementalParser parser = new IncrementalParser(stream(text));
+        String[][] edits = {
+            { "int x = 1;", "int x = 1; int y = 2;" },      // one item becomes two
+            { "int y = 2;", "" },                           // an item disappears
+            { "/* comment */", "/* comment" },              // swallows items up to the next "*/"...
+            { "class B { int w; }", "class B { int w; } */" },
+            { "/* comment", "/* comment */" },              // ...and lets them go again
+            { "} else { x = 3; }", "}" },                   // an else removed
+            { "{ x = 2; }", "{ x = 2; } else { x = 4; }" }, // and appended
+            { "class A {", "class AA {" },
+        };
+        for (String[] edit : edits) {
+            int at = text.indexOf(edit[0]);
+            assertTrue(at >= 0, edit[0]);
+            String next = text.substring(0, at) + edit[1] + text.substring(at + edit[0].length());
+            assertEquals(fresh(next), edited(parser, at, at + edit[0].length(), edit[1]), edit[0] + " -> " + edit[1]);
+            text = next;
+        }
+    }
+
+    @Test
+    void testRandomEditsMatchFullParse() throws Exception {
+        String[] inserts = { "", " ", "\n", "\r\n", "\r", "x", "1", ";", "{", "}", "int q;", "/*", "*/", "\"",
+            " else { }", "// c\n", "class C { }", "int h() { return 0; }",
+            "string s = \"éé\";", "\"ü€\"", "// ñ\n", "/* é */", "é" };
+        Random random = new Random(42);
+        String text = SOURCE;
+        IncrementalParser parser = new IncrementalParser(stream(text));
+        int parsed = 0;
+        for (int i = 0; i < 400; i++) {
+            int start = random.nextInt(text.length() + 1);
+            int end = Math.min(text.length(), start + random.nextInt(4));
+            String insert = inserts[random.nextInt(inserts.length)];
+            String next = text.substring(0, start) + insert + text.substring(end);
+            String expected = fresh(next);
+            // the parser edits byte offsets of the UTF-8 source
+            int from = utf8Length(text.substring(0, start));
+            int to = from + utf8Length(text.substring(start, end));
+            assertEquals(expected, edited(parser, from, to, insert), "edit " + i);
+            if (!expected.equals("error")) parsed++;
+            // keep the program valid by undoing edits that break it; the undo also reparses the broken state
+            if (expected.equals("error")) {
+                assertEquals(fresh(text), edited(parser, from, from + utf8Length(insert), text.substring(start, end)));
+            } else {
+                text = next;
+            }
+        }
+        assertTrue(parsed > 100, "only " + parsed + " edits parsed");
+    }
+}
@@ -0,0 +1,86 @@
+import compiler.frontend.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LexerTest {
+
+    private static final String SOURCE =
+        "class Point {\n"
+        + "  int x; int y;\r\n"
+        + "  Point(int a, int b) { this.x = a; this.y = b; }\n"
+        + "  /* block */ int sum() { return x + y; } // trailing\n"
+        + "}\n"
+        + "int i = 0;\n"
+        + "while (i < 10 && !(i == 5) || i != 7) { i++; i--; if (true) { } else { s = \"str\"; } }\n"
+        + "for (int j = 0; j > 1; j++) { p = new Point(1, 2); q = null; r = false; }\n"
+        + "public static void main() { int ifx = 42 * 3 / 2 - 1; integer = returned; _a1 = x.y; }\n";
+
+    private static List<String> tokens(MyParserTokenManager tm) {
+        List<String> out = new ArrayList<>();
+        for (Token t = tm.getNextToken(); ; t = tm.getNextToken()) {
+            out.add(t.kind + " '" + t.image + "' " + t.getBeginLine() + ":" + t.getBeginColumn() + "-" + t.getEndLine() + ":" + t.getEndColumn());
+            if (t.kind == MyParserConstants.EOF) return out;
+        }
+    }
+
+    private static Lexer lexer(String source) throws Exception {
+        return new Lexer(new MappedCharStream(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testMatchesGeneratedTokenManager() throws Exception {
+        List<String> expected = tokens(new MyParserTokenManager(new SimpleCharStream(new StringReader(SOURCE), 1, 1)));
+        assertEquals(expected, tokens(lexer(SOURCE)));
+    }
+
+    @Test
+    void testSkipsLongBlanksAndComments() throws Exception {
+        // runs of every length around the 8-byte word size, "*" and "/" straddling word edges
+        StringBuilder sb = new StringBuilder();
+        for (int n = 0; n < 20; n++) {
+            sb.append("x").append(" ".repeat(n)).append("\t\r\n".repeat(n % 3)).append("y");
+            sb.append("//").append("c".repeat(n)).append(n % 2 == 0 ? "\n" : "\r\n");
+            sb.append("/*").append("*".repeat(n % 4)).append("-".repeat(n)).append(" / * */");
+            sb.append("/*").append("a".repeat(n)).append("*/").append(n).append(";\n");
+        }
+        sb.append("/**/ z /* last */ ");
+        String source = sb.toString();
+        List<String> expected = tokens(new MyParserTokenManager(new SimpleCharStream(new StringReader(source), 1, 1)));
+        assertEquals(expected, tokens(lexer(source)));
+
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        assertEquals(expected, tokens(new Lexer(new MappedCharStream(direct))));
+
+        TokenMgrError e = assertThrows(TokenMgrError.class, () -> tokens(lexer("a /* never closed *")));
+        assertTrue(e.getMessage().contains("<EOF>"), e.getMessage());
+    }
+
+    @Test
+    void testKeywordsAndPunctuationShareImages() throws Exception {
+        Lexer lexer = lexer("while x while x ;;");
+        Token w1 = lexer.getNextToken(), x1 = lexer.getNextToken(), w2 = lexer.getNextToken(), x2 = lexer.getNextToken();
+        Token s1 = lexer.getNextToken(), s2 = lexer.getNextToken();
+        assertEquals(MyParserConstants.WHILE, w1.kind);
+        assertSame(w1.image, w2.image);
+        assertSame(x1.image, x2.image);
+        assertSame(s1.image, s2.image);
+    }
+
+    @Test
+    void testIllegalCharacterIsLexicalError() throws Exception {
+        Lexer lexer = lexer("int a;\n  # ");
+        lexer.getNextToken();
+        lexer.getNextToken();
+        lexer.getNextToken();
+        TokenMgrError e = assertThrows(TokenMgrError.class, lexer::getNextToken);
+        assertTrue(e.getMessage().contains("line 2, column 3"), e.getMessage());
+    }
+}
@@ -0,0 +1,112 @@
+import compiler.frontend.*;
+import compiler.frontend.ast.*;
+import compiler.infra.CompilerContext;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedCharStreamTest {
+
+    private static final String SOURCE =
+        "int x = 1;\r\n"
+        + "// comment\n"
+        + "class A {\n"
+        + "\tint f(int a) { return a + 42; }\r"
+        + "  /* block\n   comment */ void g() { x = x * 2; }\n"
+        + "}\n";
+
+    /** Renders every token with its kind, image and begin/end positions. */
+    private static List<String> tokens(CharStream stream) {
+        return tokens(new MyParserTokenManager(stream));
+    }
+
+    private static List<String> tokens(MyParserTokenManager tm) {
+        List<String> out = new ArrayList<>();
+        for (Token t = tm.getNextToken(); ; t = tm.getNextToken()) {
+            out.add(t.kind + " '" + t.image + "' " + t.getBeginLine() + ":" + t.getBeginColumn() + "-" + t.getEndLine() + ":" + t.getEndColumn());
+            if (t.kind == MyParserConstants.EOF) return out;
+        }
+    }
+
+    @Test
+    void testTokensMatchSimpleCharStream() throws Exception {
+        List<String> expected = tokens(new SimpleCharStream(new StringReader(SOURCE), 1, 1));
+        List<String> actual = tokens(new MappedCharStream(SOURCE.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testLineAndColumnComputedFromOffsets() throws Exception {
+        List<String> actual = tokens(new MappedCharStream("a\r\nbb\rc\n\td".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(actual.get(0).endsWith("'a' 1:1-1:1"), actual.get(0));
+        assertTrue(actual.get(1).endsWith("'bb' 2:1-2:2"), actual.get(1));
+        assertTrue(actual.get(2).endsWith("'c' 3:1-3:1"), actual.get(2));
+        assertTrue(actual.get(3).endsWith("'d' 4:2-4:2"), actual.get(3));
+    }
+
+    @Test
+    void testNonAsciiSourceIsDecoded() throws Exception {
+        // the grammar rejects non-ASCII input; both streams must report the same decoded character
+        String source = "int y = 2;\n  ☃ x";
+        TokenMgrError expected = assertThrows(TokenMgrError.class,
+            () -> tokens(new SimpleCharStream(new StringReader(source), 1, 1)));
+        TokenMgrError actual = assertThrows(TokenMgrError.class,
+            () -> tokens(new MappedCharStream(source.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertTrue(actual.getMessage().contains("\\u2603"), actual.getMessage());
+    }
+
+    @Test
+    void testUtf8SourceIsLexedAsBytes() throws Exception {
+        // the generated lexer takes no characters past U+00FF, even in strings
+        String source = "/* caf\u00e9 */ s = \"h\u00e9llo \u00fc\";\n// \u00fcber\n  t = s; \"\u00e9\" u\n";
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        List<String> expected = tokens(new SimpleCharStream(new StringReader(source), 1, 1));
+
+        MappedCharStream stream = new MappedCharStream(bytes);
+        assertEquals(bytes.length, stream.length());
+        assertEquals(expected, tokens(stream));
+        assertEquals(expected, tokens(new Lexer(new MappedCharStream(bytes))));
+
+        // an edit splices bytes; the line map keeps counting columns in characters
+        int at = bytes.length - 2; // before the final "u"
+        String edited = source.substring(0, source.length() - 2) + "\"\u00e4\" " + source.substring(source.length() - 2);
+        assertEquals(tokens(new SimpleCharStream(new StringReader(edited), 1, 1)),
+            tokens(new Lexer(stream.edit(at, at, "\"\u00e4\" "))));
+    }
+
+    @Test
+    void testLexerDecodesOnlyStringLiterals() throws Exception {
+        String source = "s = \"\u2603 \uD83D\uDE00\"; /* \u2603 */ t";
+        List<String> actual = tokens(new Lexer(new MappedCharStream(source.getBytes(StandardCharsets.UTF_8))));
+        assertTrue(actual.get(2).endsWith("'\"\u2603 \uD83D\uDE00\"' 1:5-1:9"), actual.get(2));
+        // columns count code points, so the emoji is one column
+        assertTrue(actual.get(4).endsWith("'t' 1:20-1:20"), actual.get(4));
+    }
+
+    @Test
+    void testFrontEndParsesMappedFile() throws Exception {
+        Path file = Files.createTempFile("mapped", ".src");
+        try {
+            Files.write(file, SOURCE.getBytes(StandardCharsets.UTF_8));
+            CompilerContext context = new CompilerContext();
+            context.getDiagnostics().setConsoleEcho(false);
+            context.setSource(file);
+
+            new FrontEndPass().execute(context);
+
+            assertFalse(context.getDiagnostics().hasErrors());
+            BlockNode program = (BlockNode) context.getAst();
+            assertEquals(2, program.statements.size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import compiler.frontend.*;
+import compiler.frontend.ast.*;
+import compiler.frontend.visitor.ParallelASTVisitor;
+import compiler.infra.*;
+import compiler.middle.tac.TACConversionPass;
+import compiler.middle.tac.TACInstruction;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelASTVisitorTest {
+
+    private static final String SOURCE =
+        "int x = 1;\n"
+        + "class A { int v; A(int v) { this.v = v; } int twice() { return v + v; } }\n"
+        + "int f(int n) { int g(int m) { return m * 2; } return g(n) + 1; }\n"
+        + "x = f(x);\n"
+        + "class B { int get() { return 3; } }\n"
+        + "x = x + 2;\n";
+
+    private static ASTNode typeCheck(String source) {
+        CompilerContext context = new CompilerContext();
+        context.setSource(source.getBytes(StandardCharsets.UTF_8));
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.addPass(new FrontEndPass());
+        orchestrator.addPass(new SymbolTableBuilderPass());
+        orchestrator.addPass(new TypeCheckingPass());
+        orchestrator.runPasses(context);
+        assertFalse(context.getDiagnostics().hasErrors(), () -> context.getDiagnostics().getErrors().toString());
+        return context.getAst();
+    }
+
+    private static List<String> lower(ASTNode tree, ForkJoinPool pool) {
+        return new TACConversionPass().lower(tree, pool).stream()
+            .map(TACInstruction::toString)
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void testPooledLoweringMatchesSequential() {
+        ASTNode tree = typeCheck(SOURCE);
+        List<String> sequential = lower(tree, null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 20; i++) {
+                assertEquals(sequential, lower(tree, pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testForkedUnitsAreSplicedInSourceOrder() {
+        List<String> tac = lower(typeCheck(SOURCE), ForkJoinPool.commonPool());
+        List<String> order = new ArrayList<>();
+        for (String line : tac) {
+            if (line.startsWith("x = ") || line.startsWith("FUNC_ENTRY")) order.add(line.split(",")[0]);
+        }
+        assertEquals(List.of("x = t0", "FUNC_ENTRY A.A", "FUNC_ENTRY A.twice", "FUNC_ENTRY f", "FUNC_ENTRY g",
+            "x = t2", "FUNC_ENTRY B.get", "x = t5"), order);
+
+        // temps of different units never collide
+        List<String> temps = tac.stream()
+            .filter(line -> line.startsWith("t") && line.contains(" = "))
+            .map(line -> line.substring(0, line.indexOf(' ')))
+            .collect(Collectors.toList());
+        assertEquals(temps.size(), temps.stream().distinct().count(), temps.toString());
+    }
+
+    @Test
+    void testUnitsAreCombinedInForkOrder() {
+        ASTNode tree = typeCheck(SOURCE);
+        ParallelASTVisitor<String, String> names = new ParallelASTVisitor<>() {
+            @Override
+            protected String visitUnit(ASTNode unit, String path, Forks<String> forks) {
+                List<ASTNode> body = unit instanceof BlockNode ? ((BlockNode) unit).statements
+                    : unit instanceof FunctionDeclNode ? ((FunctionDeclNode) unit).body.statements
+                    : List.of();
+                if (unit instanceof ClassDeclNode) {
+                    for (FunctionDeclNode method : ((ClassDeclNode) unit).methods) forks.fork(method, path);
+                }
+                for (ASTNode statement : body) {
+                    if (isUnit(statement)) forks.fork(statement, path);
+                }
+                return unit instanceof ClassDeclNode ? ((ClassDeclNode) unit).className
+                    : unit instanceof FunctionDeclNode ? ((FunctionDeclNode) unit).name : "root";
+            }
+
+            @Override
+            protected String combine(ASTNode unit, String own, List<String> forked) {
+                return forked.isEmpty() ? own : own + "(" + String.join(" ", forked) + ")";
+            }
+        };
+
+        String expected = "root(A(A twice) f(g) B(get))";
+        assertEquals(expected, names.run(tree, "", null));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 20; i++) assertEquals(expected, names.run(tree, "", pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
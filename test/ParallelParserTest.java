@@ -0,0 +1,65 @@
+import compiler.frontend.*;
+import compiler.frontend.ast.*;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelParserTest {
+
+    private static final String SOURCE =
+        "class A {\n"
+        + "  int v;\n"
+        + "  A(int a) { v = a; }\n"
+        + "  int get() { return v; }\n"
+        + "}\n"
+        + "int x = 1;\n"
+        + "if (x > 0) { x = 2; } else { x = 3; }\n"
+        + "if (x > 0) { x = 4; } else if (x < 0) { x = 5; } else { x = 6; }\n"
+        + "for (int i = 0; i < 10; i++) { x = x + i; }\n"
+        + "while (x > 0) { x = x - 1; }\n"
+        + "int f(int a) { int g(int b) { return b; } return g(a); }\n"
+        + ";\n"
+        + "{ int y = 7; }\n"
+        + "class B { int w; }\n"
+        + "A a = new A(f(x));\n";
+
+    private static TokenBuffer tokens(String source) throws Exception {
+        return TokenBuffer.lex(new MappedCharStream(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testSlicesAssembleInSourceOrder() throws Exception {
+        String expected = new MyParser(tokens(SOURCE).tokenManager()).Program().toASTTestTree().prettyPrint();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int slice = 1; slice <= 40; slice++) {
+                BlockNode program = (BlockNode) ParallelParser.parse(tokens(SOURCE), pool, slice);
+                assertEquals(expected, program.toASTTestTree().prettyPrint(), "slice " + slice);
+                assertEquals(11, program.statements.size());
+                // locations are those of the whole file, not of the slice
+                ClassDeclNode b = (ClassDeclNode) program.statements.get(9);
+                assertEquals(14, b.getSourceLocation().getLine());
+                assertEquals(7, b.getSourceLocation().getColumn());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testSyntaxErrorMatchesSequentialParser() throws Exception {
+        String source = SOURCE + "int z = ;\n" + SOURCE;
+        ParseException expected = assertThrows(ParseException.class,
+            () -> new MyParser(tokens(source).tokenManager()).Program());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParseException e = assertThrows(ParseException.class, () -> ParallelParser.parse(tokens(source), pool, 1));
+            assertEquals(expected.getMessage(), e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
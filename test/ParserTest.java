@@ -122,4 +122,77 @@ public class ParserTest {
          assertEquals(1, ((BlockNode) node).statements.size());
          assertTrue(((BlockNode) node).statements.get(0) instanceof BlockNode);
     }
+
+    @Test
+    void testDeclarationsDecidedByHeader() throws ParseException {
+        String input = """
+            class A {
+                int v;
+                A(int a) { v = a; }
+                public int get() {
+                    int twice(int x) { return x * 2; }
+                    for (i = 0; i < 1; i++) { }
+                    for (int j = 0; j < 1; j++) { }
+                    return twice(v);
+                }
+            }
+            int f() { return 1; }
+        """;
+        BlockNode program = (BlockNode) parse(input);
+        assertEquals(2, program.statements.size());
+        ClassDeclNode cls = (ClassDeclNode) program.statements.get(0);
+        assertEquals(1, cls.fields.size());
+        assertEquals(2, cls.methods.size());
+        assertEquals("A", cls.methods.get(0).getReturnType()); // constructor
+        FunctionDeclNode get = cls.methods.get(1);
+        assertTrue(get.getBody().statements.get(0) instanceof FunctionDeclNode);
+        assertTrue(program.statements.get(1) instanceof FunctionDeclNode);
+    }
+
+    @Test
+    void testIdentifiersAreCanonical() throws ParseException {
+        BlockNode program = (BlockNode) parse("int count = 1; count = count + 1;");
+        VarDeclNode decl = (VarDeclNode) program.statements.get(0);
+        AssignmentNode assign = (AssignmentNode) program.statements.get(1);
+        BinaryOpNode sum = (BinaryOpNode) assign.expression;
+        assertSame(decl.name, ((IdentifierNode) assign.target).name);
+        assertSame(decl.name, ((IdentifierNode) sum.left).name);
+        assertSame("count", decl.name); // shares the instance with string literals
+    }
+
+    /** Fully parenthesized rendering of an expression, to check tree shapes. */
+    private static String shape(ExpressionNode e) {
+        if (e instanceof BinaryOpNode) {
+            BinaryOpNode b = (BinaryOpNode) e;
+            return "(" + shape(b.left) + " " + b.op + " " + shape(b.right) + ")";
+        }
+        if (e instanceof UnaryOpNode) {
+            UnaryOpNode u = (UnaryOpNode) e;
+            return "(" + u.op + " " + shape(u.expr) + ")";
+        }
+        if (e instanceof MemberAccessNode) {
+            MemberAccessNode m = (MemberAccessNode) e;
+            return shape(m.object) + "." + m.memberName;
+        }
+        if (e instanceof IdentifierNode) return ((IdentifierNode) e).name;
+        if (e instanceof LiteralNode) return ((LiteralNode) e).value;
+        return e.getClass().getSimpleName();
+    }
+
+    private ExpressionNode expression(String source) throws ParseException {
+        BlockNode program = (BlockNode) parse("x = " + source + ";");
+        return ((AssignmentNode) program.statements.get(0)).expression;
+    }
+
+    @Test
+    void testOperatorPrecedenceAndAssociativity() throws ParseException {
+        assertEquals("((a || (b && (c == (d < (e + (f * g)))))) || h)",
+            shape(expression("a || b && c == d < e + f * g || h")));
+        assertEquals("((((a * b) / c) + d) - ((e * f) / g))", shape(expression("a * b / c + d - e * f / g")));
+        assertEquals("(((a - b) - c) - d)", shape(expression("a - b - c - d")));
+        assertEquals("(((a == b) != c) == (d > e))", shape(expression("a == b != c == d > e")));
+        assertEquals("(((- a) * (! b)) + (- (- c)))", shape(expression("-a * !b + - -c")));
+        assertEquals("((a + b) * (c.d - (post++ e)))", shape(expression("(a + b) * (c.d - e++)")));
+        assertEquals("(1 < 2)", shape(expression("1 < 2")));
+    }
 }
@@ -0,0 +1,134 @@
+import compiler.infra.*;
+import compiler.frontend.FrontEndPass;
+import compiler.frontend.SymbolTableBuilderPass;
+import compiler.frontend.TypeCheckingPass;
+import compiler.middle.tac.TACConversionPass;
+import compiler.backend.BytecodeGeneratorPass;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PassSchedulerTest {
+
+    /** Test pass that records when it ran and optionally waits on a latch. */
+    private static class RecordingPass implements CompilerPass {
+        private final String name;
+        private final Set<Artifact> reads;
+        private final Set<Artifact> produces;
+        private final List<String> log;
+        private final CountDownLatch latch;
+
+        RecordingPass(String name, Set<Artifact> reads, Set<Artifact> produces, List<String> log, CountDownLatch latch) {
+            this.name = name;
+            this.reads = reads;
+            this.produces = produces;
+            this.log = log;
+            this.latch = latch;
+        }
+
+        @Override public String name() { return name; }
+        @Override public Set<Artifact> reads() { return reads; }
+        @Override public Set<Artifact> produces() { return produces; }
+
+        @Override
+        public void execute(CompilerContext context) throws Exception {
+            if (latch != null) {
+                latch.countDown();
+                // both independent passes must be running at once for this to return true
+                assertTrue(latch.await(5, TimeUnit.SECONDS), name + " did not run concurrently");
+            }
+            log.add(name);
+        }
+    }
+
+    @Test
+    void testUnrequestedPassesAreSkipped() {
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.setVerbose(false);
+        orchestrator.addPass(new RecordingPass("parse", Set.of(Artifact.SOURCE), Set.of(Artifact.AST), log, null));
+        orchestrator.addPass(new RecordingPass("symbols", Set.of(Artifact.AST), Set.of(Artifact.SYMBOL_TABLE), log, null));
+        orchestrator.addPass(new RecordingPass("tac", Set.of(Artifact.AST), Set.of(Artifact.TAC), log, null));
+
+        orchestrator.runScheduled(new CompilerContext(), EnumSet.of(Artifact.SYMBOL_TABLE));
+
+        assertEquals(List.of("parse", "symbols"), log);
+    }
+
+    @Test
+    void testIndependentPassesRunConcurrently() {
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.setVerbose(false);
+        orchestrator.addPass(new RecordingPass("parse", Set.of(Artifact.SOURCE), Set.of(Artifact.AST), log, null));
+        orchestrator.addPass(new RecordingPass("symbols", Set.of(Artifact.AST), Set.of(Artifact.SYMBOL_TABLE), log, bothRunning));
+        orchestrator.addPass(new RecordingPass("tac", Set.of(Artifact.AST), Set.of(Artifact.TAC), log, bothRunning));
+        orchestrator.addPass(new RecordingPass("codegen", Set.of(Artifact.TAC, Artifact.SYMBOL_TABLE), Set.of(Artifact.CLASS_FILES), log, null));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            orchestrator.runScheduled(new CompilerContext(), EnumSet.of(Artifact.CLASS_FILES), executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(4, log.size());
+        assertEquals("parse", log.get(0));
+        assertEquals("codegen", log.get(3));
+    }
+
+    @Test
+    void testStandardPipelineThroughScheduler() {
+        String source = "int x = 1;\nvoid main() { x = x + 1; }";
+        CompilerContext context = new CompilerContext();
+        context.setInputStream(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+        context.getDiagnostics().setConsoleEcho(false);
+
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.setVerbose(false);
+        orchestrator.addPass(new FrontEndPass());
+        orchestrator.addPass(new SymbolTableBuilderPass());
+        orchestrator.addPass(new TypeCheckingPass());
+        orchestrator.addPass(new TACConversionPass());
+        orchestrator.addPass(new BytecodeGeneratorPass());
+
+        orchestrator.runScheduled(context, EnumSet.of(Artifact.TAC));
+
+        assertFalse(context.getDiagnostics().hasErrors());
+        assertNotNull(context.getTacInstructions());
+        assertTrue(context.getClassFiles().isEmpty(), "codegen should be skipped when only TAC is requested");
+    }
+
+    @Test
+    void testSymbolTableRequestSkipsTypeChecking() {
+        String source = "int x = 1;\nboolean b = x;";
+        CompilerContext context = new CompilerContext();
+        context.setInputStream(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+        context.getDiagnostics().setConsoleEcho(false);
+
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.setVerbose(false);
+        orchestrator.addPass(new FrontEndPass());
+        orchestrator.addPass(new SymbolTableBuilderPass());
+        orchestrator.addPass(new TypeCheckingPass());
+
+        orchestrator.runScheduled(context, EnumSet.of(Artifact.SYMBOL_TABLE));
+
+        // type checking only reads the table, so it is not needed to produce it
+        assertFalse(context.getDiagnostics().hasErrors(), () -> context.getDiagnostics().getErrors().toString());
+        assertEquals(1, context.getSymbolTable().getScopeInfo().size(), "the builder leaves its global scope");
+    }
+}
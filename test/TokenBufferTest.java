@@ -0,0 +1,124 @@
+import compiler.frontend.*;
+import compiler.frontend.ast.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBufferTest {
+
+    private static final String SOURCE =
+        "class Point {\n"
+        + "  int x; int y;\r\n"
+        + "  Point(int a, int b) { this.x = a; this.y = b; } // trailing\n"
+        + "}\n"
+        + "int i = 0;\n"
+        + "while (i < 10 && !(i == 5)) { i++; s = \"str\"; }\n";
+
+    // comments and strings that span lines and hide code-like text, so chunks start inside them
+    private static final String TRICKY =
+        "int a = 1; /* a comment\n"
+        + "   int hidden = \"not a string;\n"
+        + "   while (x) { y = 2; } */ int b = 2;\n"
+        + "s = \"a string\n"
+        + "  /* not a comment\r\n"
+        + "  int c = 3; \";\r\n"
+        + "// line comment with \" and /*\n"
+        + "\n"
+        + "while (a < b) { a = a + 1; t = \"\"; }\n";
+
+    private static MappedCharStream stream(String source) throws Exception {
+        return new MappedCharStream(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testTokensMatchLexer() throws Exception {
+        TokenBuffer buffer = TokenBuffer.lex(stream(SOURCE));
+        Lexer lexer = new Lexer(stream(SOURCE));
+        MyParserTokenManager cursor = buffer.tokenManager();
+        for (int i = 0; i < buffer.size(); i++) {
+            Token expected = lexer.getNextToken();
+            Token actual = cursor.getNextToken();
+            assertEquals(expected.kind, buffer.kind(i));
+            assertEquals(expected.image, buffer.image(i));
+            assertEquals(expected.kind, actual.kind);
+            assertEquals(expected.image, actual.image);
+            assertEquals(expected.getBeginLine(), actual.getBeginLine());
+            assertEquals(expected.getBeginColumn(), actual.getBeginColumn());
+            assertEquals(expected.getEndLine(), actual.getEndLine());
+            assertEquals(expected.getEndColumn(), actual.getEndColumn());
+        }
+        assertEquals(MyParserConstants.EOF, buffer.kind(buffer.size() - 1));
+        // the cursor stays on EOF
+        assertEquals(MyParserConstants.EOF, cursor.getNextToken().kind);
+    }
+
+    private static List<String> tokens(MyParserTokenManager tm) {
+        List<String> out = new ArrayList<>();
+        for (Token t = tm.getNextToken(); ; t = tm.getNextToken()) {
+            out.add(t.kind + " '" + t.image + "' " + t.getBeginLine() + ":" + t.getBeginColumn() + "-" + t.getEndLine() + ":" + t.getEndColumn());
+            if (t.kind == MyParserConstants.EOF) return out;
+        }
+    }
+
+    @Test
+    void testParallelLexMatchesGeneratedTokenManager() throws Exception {
+        String source = SOURCE + TRICKY + TRICKY + SOURCE;
+        List<String> expected = tokens(new MyParserTokenManager(new SimpleCharStream(new StringReader(source), 1, 1)));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunkSize = 1; chunkSize <= source.length(); chunkSize += chunkSize < 64 ? 1 : 37) {
+                TokenBuffer buffer = TokenBuffer.lex(stream(source), pool, chunkSize);
+                assertEquals(expected, tokens(buffer.tokenManager()), "chunk size " + chunkSize);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testParallelLexReportsFirstError() throws Exception {
+        String source = TRICKY + "int x;\n  # first\n" + TRICKY + "@ second\n";
+        TokenMgrError expected = assertThrows(TokenMgrError.class, () -> TokenBuffer.lex(stream(source)));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunkSize = 1; chunkSize < 64; chunkSize++) {
+                int size = chunkSize;
+                TokenMgrError e = assertThrows(TokenMgrError.class, () -> TokenBuffer.lex(stream(source), pool, size));
+                assertEquals(expected.getMessage(), e.getMessage());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testImagesAreCanonicalAndLazy() throws Exception {
+        TokenBuffer buffer = TokenBuffer.lex(stream("abc abc 42"));
+        assertEquals(4, buffer.size());
+        assertSame(buffer.image(0), buffer.image(1));
+        assertEquals("42", buffer.image(2));
+        assertEquals(8, buffer.start(2));
+        assertEquals(9, buffer.end(2));
+    }
+
+    @Test
+    void testParserConsumesBuffer() throws Exception {
+        ASTNode node = new MyParser(TokenBuffer.lex(stream(SOURCE)).tokenManager()).Program();
+        BlockNode program = (BlockNode) node;
+        assertEquals(3, program.statements.size());
+        ClassDeclNode point = (ClassDeclNode) program.statements.get(0);
+        assertEquals(2, point.fields.size());
+        assertEquals(1, point.methods.size());
+        assertEquals(1, point.getSourceLocation().getLine());
+        assertTrue(program.statements.get(1) instanceof VarDeclNode);
+        assertTrue(program.statements.get(2) instanceof WhileNode);
+        ASTNode fromLexer = new MyParser(new Lexer(stream(SOURCE))).Program();
+        assertEquals(fromLexer.toASTTestTree().prettyPrint(), node.toASTTestTree().prettyPrint());
+    }
+}
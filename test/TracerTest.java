@@ -0,0 +1,175 @@
+import compiler.frontend.FrontEndPass;
+import compiler.frontend.SymbolTableBuilderPass;
+import compiler.frontend.TypeCheckingPass;
+import compiler.infra.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TracerTest {
+
+    @Test
+    void testChromeTraceIsValidJson(@TempDir Path dir) throws Exception {
+        Tracer tracer = new Tracer(true);
+        String odd = "inner \"quoted\" \\ tab\t";
+        Tracer.Span outer = tracer.span("outer");
+        try {
+            Tracer.Span inner = tracer.span(odd);
+            try {
+                Thread.sleep(2);
+            } finally {
+                inner.close();
+            }
+        } finally {
+            outer.close();
+        }
+        Path file = dir.resolve("trace.json");
+        tracer.writeChromeTrace(file);
+
+        Map<?, ?> trace = (Map<?, ?>) new Json(Files.readString(file, StandardCharsets.UTF_8)).parse();
+        List<?> events = (List<?>) trace.get("traceEvents");
+        assertEquals(2, events.size());
+        Map<?, ?> first = (Map<?, ?>) events.get(0);
+        Map<?, ?> second = (Map<?, ?>) events.get(1);
+        assertEquals("outer", first.get("name"));
+        assertEquals(odd, second.get("name"));
+        for (Object e : events) {
+            Map<?, ?> event = (Map<?, ?>) e;
+            assertEquals("X", event.get("ph"));
+            assertTrue((Double) event.get("dur") >= 0);
+            Map<?, ?> args = (Map<?, ?>) event.get("args");
+            assertTrue(args.containsKey("cpu_us"));
+            assertTrue(args.containsKey("alloc_bytes"));
+        }
+        // the inner span lies within the outer one
+        double outerStart = (Double) first.get("ts"), outerEnd = outerStart + (Double) first.get("dur");
+        double innerStart = (Double) second.get("ts"), innerEnd = innerStart + (Double) second.get("dur");
+        assertTrue(innerStart >= outerStart && innerEnd <= outerEnd + 0.002, events.toString());
+        assertTrue((Double) second.get("dur") >= 2000, "slept 2 ms");
+    }
+
+    @Test
+    void testPipelineRecordsASpanPerPass(@TempDir Path dir) throws Exception {
+        CompilerContext context = new CompilerContext();
+        context.getDiagnostics().setConsoleEcho(false);
+        context.setTracer(new Tracer(true));
+        context.setSource("int x = 1;\n".getBytes(StandardCharsets.UTF_8));
+        CompilerOrchestrator orchestrator = new CompilerOrchestrator();
+        orchestrator.setVerbose(false);
+        orchestrator.addPass(new FrontEndPass());
+        orchestrator.addPass(new SymbolTableBuilderPass());
+        orchestrator.addPass(new TypeCheckingPass());
+        orchestrator.runPasses(context);
+
+        Path file = dir.resolve("trace.json");
+        context.getTracer().writeChromeTrace(file);
+        List<String> names = new ArrayList<>();
+        for (Object e : (List<?>) ((Map<?, ?>) new Json(Files.readString(file)).parse()).get("traceEvents")) {
+            names.add((String) ((Map<?, ?>) e).get("name"));
+        }
+        assertEquals(List.of(new FrontEndPass().name(), new SymbolTableBuilderPass().name(), new TypeCheckingPass().name()), names);
+    }
+
+    @Test
+    void testDisabledTracerWritesAnEmptyTrace(@TempDir Path dir) throws Exception {
+        Tracer tracer = Tracer.disabled();
+        tracer.span("ignored").close();
+        Path file = dir.resolve("trace.json");
+        tracer.writeChromeTrace(file);
+        assertEquals(List.of(), ((Map<?, ?>) new Json(Files.readString(file)).parse()).get("traceEvents"));
+    }
+
+    /** Just enough of a JSON reader to check the trace: objects, arrays, strings, numbers. */
+    private static final class Json {
+        private final String s;
+        private int i;
+
+        Json(String s) {
+            this.s = s;
+        }
+
+        Object parse() {
+            Object value = value();
+            skip();
+            assertEquals(s.length(), i, "trailing text");
+            return value;
+        }
+
+        private Object value() {
+            skip();
+            char c = s.charAt(i);
+            if (c == '{') {
+                Map<String, Object> map = new LinkedHashMap<>();
+                i++;
+                skip();
+                if (s.charAt(i) == '}') { i++; return map; }
+                do {
+                    skip();
+                    String key = string();
+                    skip();
+                    expect(':');
+                    map.put(key, value());
+                    skip();
+                } while (s.charAt(i++) == ',');
+                assertEquals('}', s.charAt(i - 1), "at " + i);
+                return map;
+            }
+            if (c == '[') {
+                List<Object> list = new ArrayList<>();
+                i++;
+                skip();
+                if (s.charAt(i) == ']') { i++; return list; }
+                do {
+                    list.add(value());
+                    skip();
+                } while (s.charAt(i++) == ',');
+                assertEquals(']', s.charAt(i - 1), "at " + i);
+                return list;
+            }
+            if (c == '"') return string();
+            int start = i;
+            while (i < s.length() && "+-0123456789.eE".indexOf(s.charAt(i)) >= 0) i++;
+            assertTrue(i > start, "value expected at " + start);
+            return Double.parseDouble(s.substring(start, i));
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            for (char c; (c = s.charAt(i++)) != '"'; ) {
+                assertTrue(c >= 0x20, "raw control character at " + (i - 1));
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char e = s.charAt(i++);
+                switch (e) {
+                    case 'u': sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16)); i += 4; break;
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    case '"': case '\\': case '/': sb.append(e); break;
+                    default: fail("bad escape \\" + e);
+                }
+            }
+            return sb.toString();
+        }
+
+        private void expect(char c) {
+            assertEquals(c, s.charAt(i), "at " + i);
+            i++;
+        }
+
+        private void skip() {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        }
+    }
+}